@@ -0,0 +1,363 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.SchemaRegistry;
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decoder por projeção de eventos de atividade (JSON) para a consolidação.
+ *
+ * Percorre o JSON com JsonParser (streaming) e extrai apenas os campos usados pelos
+ * acumuladores; metadata, repository, discoverySource e timestamps.window.start são
+ * pulados sem materialização. window.end é convertido direto para epoch millis
+ * (sem Instant), e service.id e callers são copiados para um buffer reutilizável:
+ * eventos com window.end anterior ao mínimo são descartados antes de qualquer String ser criada.
+ *
+ * Aceita os mesmos formatos de timestamp do JavaTimeModule: ISO-8601 (texto) ou
+ * segundos desde a época (numérico, com fração opcional).
+ *
+ * Não é thread-safe: cada thread de leitura/decoder usa sua própria instância.
+ */
+public class ActivityEventDecoder {
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final ServiceActivityEvent.ConfidenceLevel[] CONFIDENCE_LEVELS =
+            ServiceActivityEvent.ConfidenceLevel.values();
+
+    private final JsonFactory jsonFactory;
+
+    // Buffer com os caracteres de service.id e callers do evento corrente
+    private final StringBuilder scratch = new StringBuilder(256);
+    private int[] callerBounds = new int[32];
+    private int callerCount;
+
+    public ActivityEventDecoder(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Decodifica um evento.
+     * @param minWindowEndMillis Eventos com window.end anterior são descartados
+     * @return Projeção do evento, ou null se descartado pelo filtro de window.end
+     * @throws IOException JSON inválido, service.id ausente ou confidence.level desconhecido
+     */
+    public ActivityProjection decode(String json, long minWindowEndMillis) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            return decode(parser, minWindowEndMillis);
+        }
+    }
+
+    /**
+     * Decodifica um payload do tópico raw em qualquer wire format (JSON ou binário v1).
+     * O formato binário já é compacto: o evento é lido inteiro e projetado.
+     * @see #decode(String, long)
+     */
+    public ActivityProjection decode(byte[] payload, long minWindowEndMillis) throws IOException {
+        if (SchemaRegistry.isBinary(payload)) {
+            ServiceActivityEvent event = SchemaRegistry.decodeBinaryEvent(payload);
+            if (event.getServiceId() == null) {
+                throw new IOException("Evento sem service.id");
+            }
+            ActivityProjection projection = ActivityProjection.of(event);
+            long windowEnd = projection.getWindowEndMillis();
+            return windowEnd != ActivityProjection.NO_WINDOW_END && windowEnd < minWindowEndMillis ? null : projection;
+        }
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            return decode(parser, minWindowEndMillis);
+        }
+    }
+
+    /**
+     * Decodifica um envelope de eventos (SchemaRegistry.isEnvelope). A janela é compartilhada:
+     * se terminar antes do mínimo, o envelope inteiro é descartado.
+     * @param serviceId Se não nulo, apenas os eventos desse serviço são projetados
+     * @return Projeções dos eventos, na ordem do envelope (vazia se descartado)
+     */
+    public List<ActivityProjection> decodeEnvelope(byte[] payload, long minWindowEndMillis, String serviceId)
+            throws IOException {
+        List<ServiceActivityEvent> events = SchemaRegistry.decodeEnvelope(payload);
+        if (events.get(0).getWindow().getEnd().toEpochMilli() < minWindowEndMillis) {
+            return List.of();
+        }
+        List<ActivityProjection> projections = new ArrayList<>(events.size());
+        for (ServiceActivityEvent event : events) {
+            if (serviceId == null || serviceId.equals(event.getServiceId())) {
+                projections.add(ActivityProjection.of(event));
+            }
+        }
+        return projections;
+    }
+
+    /**
+     * Apenas o window.end (epoch millis) de um payload do tópico raw, sem projetar o evento:
+     * envelopes leem só o cabeçalho e JSON é percorrido apenas até timestamps.window.
+     * O formato binário é lido inteiro (o evento já é compacto).
+     * @return window.end, ou ActivityProjection.NO_WINDOW_END se ausente
+     */
+    public static long windowEndOf(byte[] payload, JsonFactory jsonFactory) throws IOException {
+        if (SchemaRegistry.isEnvelope(payload)) {
+            return SchemaRegistry.envelopeWindowEnd(payload);
+        }
+        if (SchemaRegistry.isBinary(payload)) {
+            ServiceActivityEvent.TimeWindow window = SchemaRegistry.decodeBinaryEvent(payload).getWindow();
+            return window != null && window.getEnd() != null
+                    ? window.getEnd().toEpochMilli() : ActivityProjection.NO_WINDOW_END;
+        }
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Evento não é um objeto JSON");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("timestamps.window".equals(field)) {
+                    return readWindowEnd(parser, value);
+                }
+                parser.skipChildren();
+            }
+            return ActivityProjection.NO_WINDOW_END;
+        }
+    }
+
+    private ActivityProjection decode(JsonParser parser, long minWindowEndMillis) throws IOException {
+        scratch.setLength(0);
+        callerCount = 0;
+        int serviceIdStart = -1;
+        int serviceIdEnd = -1;
+        long activityCount = 0;
+        long windowEnd = ActivityProjection.NO_WINDOW_END;
+        ServiceActivityEvent.ConfidenceLevel confidence = null;
+
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Evento não é um objeto JSON");
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "service.id" -> {
+                    if (value == JsonToken.VALUE_STRING) {
+                        serviceIdStart = scratch.length();
+                        copyText(parser);
+                        serviceIdEnd = scratch.length();
+                    }
+                }
+                case "activity.count" -> activityCount = readLong(parser, value);
+                case "dependencies.callers" -> readCallers(parser, value);
+                case "timestamps.window" -> {
+                    windowEnd = readWindowEnd(parser, value);
+                    if (windowEnd != ActivityProjection.NO_WINDOW_END && windowEnd < minWindowEndMillis) {
+                        return null;
+                    }
+                }
+                case "confidence.level" -> confidence = readConfidence(parser, value);
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (serviceIdStart < 0) {
+            throw new IOException("Evento sem service.id");
+        }
+
+        String[] callers = new String[callerCount];
+        for (int i = 0; i < callerCount; i++) {
+            callers[i] = scratch.substring(callerBounds[2 * i], callerBounds[2 * i + 1]);
+        }
+        return new ActivityProjection(scratch.substring(serviceIdStart, serviceIdEnd),
+                activityCount, windowEnd, List.of(callers), confidence);
+    }
+
+    private void copyText(JsonParser parser) throws IOException {
+        scratch.append(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    private static long readLong(JsonParser parser, JsonToken value) throws IOException {
+        return switch (value) {
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getLongValue();
+            case VALUE_STRING -> Long.parseLong(parser.getText().trim());
+            case VALUE_NULL -> 0L;
+            default -> throw new JsonParseException(parser, "activity.count inválido: " + value);
+        };
+    }
+
+    private void readCallers(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.VALUE_STRING) {
+                parser.skipChildren();
+                continue;
+            }
+            if (2 * callerCount + 1 >= callerBounds.length) {
+                callerBounds = Arrays.copyOf(callerBounds, callerBounds.length * 2);
+            }
+            callerBounds[2 * callerCount] = scratch.length();
+            copyText(parser);
+            callerBounds[2 * callerCount + 1] = scratch.length();
+            callerCount++;
+        }
+    }
+
+    private static long readWindowEnd(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return ActivityProjection.NO_WINDOW_END;
+        }
+        long end = ActivityProjection.NO_WINDOW_END;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("end".equals(field)) {
+                end = readTimestamp(parser, token);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return end;
+    }
+
+    private static ServiceActivityEvent.ConfidenceLevel readConfidence(JsonParser parser, JsonToken value)
+            throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            char[] text = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            for (ServiceActivityEvent.ConfidenceLevel level : CONFIDENCE_LEVELS) {
+                if (matches(level.name(), text, offset, length)) {
+                    return level;
+                }
+            }
+        }
+        throw new JsonParseException(parser, "confidence.level desconhecido: " + parser.getText());
+    }
+
+    private static boolean matches(String expected, char[] text, int offset, int length) {
+        if (expected.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (expected.charAt(i) != text[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Timestamp em epoch millis: ISO-8601 UTC ("2026-10-01T10:05:00Z", fração opcional) por
+     * caminho rápido sem alocação; demais formatos ISO via Instant.parse; numéricos em segundos.
+     */
+    static long readTimestamp(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_STRING -> {
+                long millis = parseIsoUtcMillis(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                if (millis != ActivityProjection.NO_WINDOW_END) {
+                    return millis;
+                }
+                try {
+                    return Instant.parse(parser.getText().trim()).toEpochMilli();
+                } catch (DateTimeParseException e) {
+                    throw new JsonParseException(parser, "Timestamp inválido: " + parser.getText(), e);
+                }
+            }
+            case VALUE_NUMBER_INT -> {
+                return Math.multiplyExact(parser.getLongValue(), 1000L);
+            }
+            case VALUE_NUMBER_FLOAT -> {
+                return parser.getDecimalValue().movePointRight(3).longValue();
+            }
+            case VALUE_NULL -> {
+                return ActivityProjection.NO_WINDOW_END;
+            }
+            default -> throw new JsonParseException(parser, "Timestamp inválido: " + token);
+        }
+    }
+
+    /**
+     * Converte "yyyy-MM-ddTHH:mm:ss[.fffffffff]Z" em epoch millis.
+     * @return epoch millis, ou NO_WINDOW_END se o texto não estiver nesse formato
+     */
+    static long parseIsoUtcMillis(char[] text, int offset, int length) {
+        if (length < 20 || text[offset + length - 1] != 'Z'
+                || text[offset + 4] != '-' || text[offset + 7] != '-' || text[offset + 10] != 'T'
+                || text[offset + 13] != ':' || text[offset + 16] != ':') {
+            return ActivityProjection.NO_WINDOW_END;
+        }
+        int year = digits(text, offset, 4);
+        int month = digits(text, offset + 5, 2);
+        int day = digits(text, offset + 8, 2);
+        int hour = digits(text, offset + 11, 2);
+        int minute = digits(text, offset + 14, 2);
+        int second = digits(text, offset + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return ActivityProjection.NO_WINDOW_END;
+        }
+
+        int millis = 0;
+        int fractionLength = length - 21;
+        if (fractionLength > 0) {
+            if (text[offset + 19] != '.' || fractionLength > 9) {
+                return ActivityProjection.NO_WINDOW_END;
+            }
+            for (int i = 0; i < fractionLength; i++) {
+                int digit = text[offset + 20 + i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return ActivityProjection.NO_WINDOW_END;
+                }
+                if (i < 3) {
+                    millis = millis * 10 + digit;
+                }
+            }
+            for (int i = fractionLength; i < 3; i++) {
+                millis *= 10;
+            }
+        } else if (length != 20) {
+            return ActivityProjection.NO_WINDOW_END;
+        }
+
+        long seconds = hour * 3600L + minute * 60L + second;
+        return epochDay(year, month, day) * MILLIS_PER_DAY + seconds * 1000L + millis;
+    }
+
+    private static int digits(char[] text, int offset, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            int digit = text[offset + i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Dias desde 1970-01-01 no calendário gregoriano proléptico (algoritmo days_from_civil).
+     */
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
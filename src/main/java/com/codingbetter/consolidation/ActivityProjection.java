@@ -0,0 +1,70 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+
+import java.util.List;
+
+/**
+ * Projeção de um ServiceActivityEvent com apenas os campos usados pela consolidação:
+ * service.id, activity.count, timestamps.window.end (epoch millis), dependencies.callers
+ * e confidence.level. Produzida pelo ActivityEventDecoder sem data-binding do evento completo.
+ */
+public class ActivityProjection {
+
+    /**
+     * Valor de windowEndMillis quando o evento não tem timestamps.window.end.
+     */
+    public static final long NO_WINDOW_END = Long.MIN_VALUE;
+
+    private final String serviceId;
+    private final long activityCount;
+    private final long windowEndMillis;
+    private final List<String> callers;
+    private final ServiceActivityEvent.ConfidenceLevel confidenceLevel;
+
+    public ActivityProjection(String serviceId, long activityCount, long windowEndMillis,
+                              List<String> callers, ServiceActivityEvent.ConfidenceLevel confidenceLevel) {
+        this.serviceId = serviceId;
+        this.activityCount = activityCount;
+        this.windowEndMillis = windowEndMillis;
+        this.callers = callers;
+        this.confidenceLevel = confidenceLevel;
+    }
+
+    public static ActivityProjection of(ServiceActivityEvent event) {
+        return new ActivityProjection(
+                event.getServiceId(),
+                event.getActivityCount() != null ? event.getActivityCount() : 0L,
+                event.getWindow() != null && event.getWindow().getEnd() != null
+                        ? event.getWindow().getEnd().toEpochMilli() : NO_WINDOW_END,
+                event.getCallers() != null ? event.getCallers() : List.of(),
+                event.getConfidenceLevel());
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    public long getActivityCount() {
+        return activityCount;
+    }
+
+    public boolean hasWindowEnd() {
+        return windowEndMillis != NO_WINDOW_END;
+    }
+
+    public long getWindowEndMillis() {
+        return windowEndMillis;
+    }
+
+    public List<String> getCallers() {
+        return callers;
+    }
+
+    /**
+     * Confiança do evento, ou null se ausente.
+     */
+    public ServiceActivityEvent.ConfidenceLevel getConfidenceLevel() {
+        return confidenceLevel;
+    }
+}
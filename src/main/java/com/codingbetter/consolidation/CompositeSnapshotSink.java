@@ -0,0 +1,79 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Fan-out: entrega cada lote a todos os destinos configurados. O lote só é confirmado
+ * quando todos os destinos o confirmam.
+ */
+public class CompositeSnapshotSink implements SnapshotSink {
+
+    private final List<SnapshotSink> sinks;
+
+    public CompositeSnapshotSink(List<SnapshotSink> sinks) {
+        this.sinks = List.copyOf(sinks);
+    }
+
+    @Override
+    public String getName() {
+        return sinks.stream().map(SnapshotSink::getName).collect(Collectors.joining(",", "[", "]"));
+    }
+
+    @Override
+    public PartitionWriter open(String runId, int partition) throws IOException {
+        List<PartitionWriter> writers = new ArrayList<>(sinks.size());
+        try {
+            for (SnapshotSink sink : sinks) {
+                writers.add(sink.open(runId, partition));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (PartitionWriter writer : writers) {
+                writer.close();
+            }
+            throw e;
+        }
+        return new CompositeWriter(writers);
+    }
+
+    public boolean isEmpty() {
+        return sinks.isEmpty();
+    }
+
+    private static final class CompositeWriter implements PartitionWriter {
+
+        private final List<PartitionWriter> writers;
+
+        private CompositeWriter(List<PartitionWriter> writers) {
+            this.writers = writers;
+        }
+
+        @Override
+        public CompletableFuture<Void> write(List<ServiceActivitySnapshot> batch) {
+            List<ServiceActivitySnapshot> readOnly = List.copyOf(batch);
+            return CompletableFuture.allOf(writers.stream()
+                    .map(writer -> writer.write(readOnly))
+                    .toArray(CompletableFuture[]::new));
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (PartitionWriter writer : writers) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
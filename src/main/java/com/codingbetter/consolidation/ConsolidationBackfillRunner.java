@@ -0,0 +1,57 @@
+package com.codingbetter.consolidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Ponto de entrada do backfill de snapshots históricos.
+ * Executado na inicialização quando consolidation.backfill.enabled=true, para o intervalo
+ * [from, to] de datas as-of (ex.: --consolidation.backfill.from=2026-09-01
+ * --consolidation.backfill.to=2026-09-30 para reconstruir 30 dias com uma leitura por partição).
+ */
+@Component
+@ConditionalOnProperty(name = "consolidation.backfill.enabled", havingValue = "true")
+public class ConsolidationBackfillRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsolidationBackfillRunner.class);
+
+    private final ConsolidationCoordinator coordinator;
+
+    @Value("${consolidation.backfill.from:}")
+    private String from;
+
+    // Padrão: ontem
+    @Value("${consolidation.backfill.to:}")
+    private String to;
+
+    public ConsolidationBackfillRunner(ConsolidationCoordinator coordinator) {
+        this.coordinator = coordinator;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (from == null || from.isBlank()) {
+            throw new IllegalArgumentException("consolidation.backfill.from é obrigatório");
+        }
+        LocalDate first = LocalDate.parse(from);
+        LocalDate last = to == null || to.isBlank() ? LocalDate.now().minusDays(1) : LocalDate.parse(to);
+        if (last.isBefore(first)) {
+            throw new IllegalArgumentException("Intervalo de backfill inválido: " + first + " > " + last);
+        }
+
+        List<LocalDate> asOfDates = Stream.iterate(first, date -> !date.isAfter(last), date -> date.plusDays(1))
+                .toList();
+        logger.info("Backfill solicitado: {} a {} ({} datas)", first, last, asOfDates.size());
+
+        coordinator.executeBackfill(asOfDates);
+    }
+}
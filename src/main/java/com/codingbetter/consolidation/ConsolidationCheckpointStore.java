@@ -0,0 +1,184 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.kafka.KafkaProducer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Armazena checkpoints de consolidação no tópico de controle compactado
+ * governance.consolidation.checkpoint (uma chave por execução e partição).
+ * Um coordenador reiniciado carrega os checkpoints da execução corrente e
+ * retoma apenas as partições não concluídas.
+ */
+@Component
+public class ConsolidationCheckpointStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsolidationCheckpointStore.class);
+
+    public static final String CHECKPOINT_TOPIC = "governance.consolidation.checkpoint";
+
+    private final ConsumerFactory<String, String> consumerFactory;
+    private final KafkaProducer kafkaProducer;
+    private final ObjectMapper objectMapper;
+
+    // Execução em cache de loadCached
+    private CachedRun cached;
+
+    @Value("${consolidation.checkpoint.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${consolidation.checkpoint.write-timeout-seconds:30}")
+    private long writeTimeoutSeconds = 30;
+
+    public ConsolidationCheckpointStore(
+            @Qualifier("replayConsumerFactory") ConsumerFactory<String, String> consumerFactory,
+            KafkaProducer kafkaProducer,
+            ObjectMapper objectMapper) {
+        this.consumerFactory = consumerFactory;
+        this.kafkaProducer = kafkaProducer;
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Persiste um checkpoint e aguarda confirmação do broker.
+     * Falhas são registradas mas não interrompem a consolidação.
+     */
+    public void save(ConsolidationCheckpoint checkpoint) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            String json = objectMapper.writeValueAsString(checkpoint);
+            kafkaProducer.send(CHECKPOINT_TOPIC, checkpoint.key(), json)
+                    .get(writeTimeoutSeconds, TimeUnit.SECONDS);
+            logger.debug("Checkpoint salvo: key={}, nextOffset={}, completed={}",
+                    checkpoint.key(), checkpoint.getNextOffset(), checkpoint.isCompleted());
+        } catch (Exception e) {
+            logger.warn("Erro ao salvar checkpoint: key={}", checkpoint.key(), e);
+        }
+    }
+
+    /**
+     * Carrega os checkpoints de uma execução, indexados por partição.
+     * Lê o tópico de controle do início até os end offsets atuais (última versão de cada chave).
+     */
+    public Map<Integer, ConsolidationCheckpoint> load(String runId, String topic) {
+        Map<Integer, ConsolidationCheckpoint> checkpoints = new HashMap<>();
+        if (!enabled) {
+            return checkpoints;
+        }
+        try {
+            read(runId + ":" + topic + ":", new HashMap<>(), checkpoints);
+        } catch (Exception e) {
+            logger.warn("Erro ao carregar checkpoints da execução {}, processando do zero", runId, e);
+            return Collections.emptyMap();
+        }
+        logger.info("Carregados {} checkpoints da execução {} ({} concluídos)", checkpoints.size(), runId,
+                checkpoints.values().stream().filter(ConsolidationCheckpoint::isCompleted).count());
+        return checkpoints;
+    }
+
+    /**
+     * Checkpoints de uma execução mantidos em cache para os pods de worker, que consultam a
+     * execução a cada item de trabalho: a primeira chamada lê o tópico de controle desde o início,
+     * as seguintes apenas os registros publicados desde a anterior. Só a execução mais recente
+     * fica em cache.
+     */
+    public synchronized Map<Integer, ConsolidationCheckpoint> loadCached(String runId, String topic) {
+        if (!enabled) {
+            return Collections.emptyMap();
+        }
+        String keyPrefix = runId + ":" + topic + ":";
+        if (cached == null || !cached.keyPrefix.equals(keyPrefix)) {
+            cached = new CachedRun(keyPrefix);
+        }
+        try {
+            read(keyPrefix, cached.positions, cached.checkpoints);
+        } catch (Exception e) {
+            // Cache descartado: a próxima chamada relê o tópico desde o início
+            cached = null;
+            logger.warn("Erro ao carregar checkpoints da execução {}, processando do zero", runId, e);
+            return Collections.emptyMap();
+        }
+        return new HashMap<>(cached.checkpoints);
+    }
+
+    /**
+     * Lê o tópico de controle das posições informadas (início, para partições ausentes) até os
+     * end offsets atuais, atualizando checkpoints e posições.
+     */
+    @SuppressWarnings("unchecked")
+    private void read(String keyPrefix, Map<TopicPartition, Long> positions,
+                      Map<Integer, ConsolidationCheckpoint> checkpoints) throws Exception {
+        try (KafkaConsumer<String, String> consumer = (KafkaConsumer<String, String>) consumerFactory.createConsumer()) {
+            List<PartitionInfo> partitionInfos = consumer.partitionsFor(CHECKPOINT_TOPIC);
+            if (partitionInfos == null || partitionInfos.isEmpty()) {
+                return;
+            }
+
+            List<TopicPartition> partitions = partitionInfos.stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            consumer.seekToBeginning(partitions);
+            positions.forEach(consumer::seek);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+            while (!reachedEnd(consumer, endOffsets)) {
+                ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(1));
+                for (ConsumerRecord<String, String> record : records) {
+                    if (record.key() == null || !record.key().startsWith(keyPrefix)) {
+                        continue;
+                    }
+                    if (record.value() == null) {
+                        checkpoints.remove(Integer.parseInt(record.key().substring(keyPrefix.length())));
+                        continue;
+                    }
+                    ConsolidationCheckpoint checkpoint = objectMapper.readValue(record.value(), ConsolidationCheckpoint.class);
+                    checkpoints.put(checkpoint.getPartition(), checkpoint);
+                }
+            }
+            partitions.forEach(partition -> positions.put(partition, consumer.position(partition)));
+        }
+    }
+
+    private boolean reachedEnd(KafkaConsumer<String, String> consumer, Map<TopicPartition, Long> endOffsets) {
+        return endOffsets.entrySet().stream()
+                .allMatch(entry -> consumer.position(entry.getKey()) >= entry.getValue());
+    }
+
+    /**
+     * Checkpoints de uma execução e posição de leitura do tópico de controle.
+     */
+    private static final class CachedRun {
+
+        private final String keyPrefix;
+        private final Map<TopicPartition, Long> positions = new HashMap<>();
+        private final Map<Integer, ConsolidationCheckpoint> checkpoints = new HashMap<>();
+
+        private CachedRun(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+        }
+    }
+}
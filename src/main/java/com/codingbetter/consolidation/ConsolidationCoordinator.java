@@ -1,6 +1,6 @@
 package com.codingbetter.consolidation;
 
-import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import com.codingbetter.kafka.KafkaProducer;
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.AdminClientConfig;
 import org.apache.kafka.clients.admin.DescribeTopicsResult;
@@ -11,37 +11,96 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.stream.IntStream;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Coordenador do job de consolidação diário.
- * Identifica partições do tópico raw e distribui trabalho entre workers.
+ * Identifica partições do tópico raw e distribui trabalho entre workers:
+ * - local: pool de threads no próprio pod do coordenador
+ * - distributed: publica um item de trabalho por partição em governance.consolidation.work,
+ *   consumido pelos pods de worker (ConsolidationWorkListener)
  */
 @Component
 public class ConsolidationCoordinator {
 
     private static final Logger logger = LoggerFactory.getLogger(ConsolidationCoordinator.class);
 
+    public static final String WORK_TOPIC = "governance.consolidation.work";
+
     private final ConsolidationWorker worker;
+    private final ConsolidationCheckpointStore checkpointStore;
+    private final PartitionStrategy partitionStrategy;
+    private final KafkaProducer kafkaProducer;
+    private final SnapshotChangePublisher snapshotPublisher;
     private final AdminClient adminClient;
 
     @Value("${consolidation.job.window-days:30}")
     private int windowDays;
 
-    @Value("${consolidation.workers.min:10}")
+    @Value("${consolidation.job.workers.min:10}")
     private int minWorkers;
 
-    @Value("${consolidation.workers.max:100}")
+    @Value("${consolidation.job.workers.max:100}")
     private int maxWorkers;
 
+    /**
+     * Tentativas por partição no modo local. Partições que falham são reprocessadas na mesma
+     * execução a partir do último checkpoint; esgotadas as tentativas, a execução falha.
+     */
+    @Value("${consolidation.job.partition-attempts:3}")
+    private int partitionAttempts = 3;
+
+    @Value("${consolidation.job.partition-retry-backoff-seconds:30}")
+    private long partitionRetryBackoffSeconds = 30;
+
+    @Value("${consolidation.job.source-topic:governance.activity.raw}")
+    private String sourceTopic;
+
+    // batch (job diário) | continuous (SnapshotStreamTopology)
+    @Value("${consolidation.mode:batch}")
+    private String consolidationMode;
+
+    // local (pool de threads no coordenador) | distributed (pods de worker)
+    @Value("${consolidation.execution-mode:local}")
+    private String executionMode;
+
+    /**
+     * Divisão de partições quentes (modo local, tópico raw): partições com mais registros
+     * a ler que a fatia média por worker são divididas em sub-faixas de offsets lidas em
+     * paralelo, e os acumuladores parciais são combinados antes de gerar os snapshots.
+     */
+    @Value("${consolidation.job.split.enabled:true}")
+    private boolean splitEnabled = true;
+
+    // Sub-faixas menores que isso não compensam o custo de combinação
+    @Value("${consolidation.job.split.min-sub-range-records:500000}")
+    private long minSubRangeRecords = 500_000;
+
+    @Value("${consolidation.job.split.max-sub-ranges:8}")
+    private int maxSubRanges = 8;
+
+    // Desabilitado nos pods de worker, que apenas consomem itens de trabalho
+    @Value("${consolidation.coordinator.enabled:true}")
+    private boolean coordinatorEnabled;
+
     public ConsolidationCoordinator(
             ConsolidationWorker worker,
+            ConsolidationCheckpointStore checkpointStore,
+            PartitionStrategy partitionStrategy,
+            KafkaProducer kafkaProducer,
+            SnapshotChangePublisher snapshotPublisher,
             @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers) {
         this.worker = worker;
+        this.checkpointStore = checkpointStore;
+        this.partitionStrategy = partitionStrategy;
+        this.kafkaProducer = kafkaProducer;
+        this.snapshotPublisher = snapshotPublisher;
         Map<String, Object> config = new HashMap<>();
         config.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         this.adminClient = AdminClient.create(config);
@@ -53,21 +112,133 @@ public class ConsolidationCoordinator {
      */
     @Scheduled(cron = "${consolidation.job.cron:0 2 * * *}")
     public void executeConsolidation() {
+        if (!coordinatorEnabled) {
+            return;
+        }
+        runConsolidation();
+    }
+
+    /**
+     * Executa a consolidação do dia, retomando partições com checkpoint não concluído.
+     * @return false se alguma partição não foi concluída após partition-attempts tentativas
+     *         (ou os itens de trabalho não foram publicados, no modo distribuído)
+     */
+    public boolean runConsolidation() {
+        if ("continuous".equalsIgnoreCase(consolidationMode)) {
+            logger.info("Modo de consolidação contínuo ativo, job diário ignorado");
+            return true;
+        }
+
         logger.info("Iniciando job de consolidação diário");
 
         try {
             // Descobre partições do tópico
-            List<Integer> partitions = discoverPartitions("governance.activity.raw");
+            List<Integer> partitions = discoverPartitions(sourceTopic);
+            if (partitions.isEmpty()) {
+                logger.error("Nenhuma partição encontrada em {}: job de consolidação não executado", sourceTopic);
+                return false;
+            }
             logger.info("Encontradas {} partições para processar", partitions.size());
 
-            // Distribui trabalho entre workers
-            List<ServiceActivitySnapshot> allSnapshots = processPartitions(partitions);
+            // Execução do dia: um coordenador reiniciado retoma a mesma execução
+            String runId = LocalDate.now().toString();
+            Map<Integer, ConsolidationCheckpoint> checkpoints = checkpointStore.load(runId, sourceTopic);
+
+            // Tombstones no tópico latest para serviços sem atividade prolongada
+            snapshotPublisher.retireInactive(runId);
+
+            List<Integer> pending = partitions.stream()
+                    .filter(partitionId -> {
+                        ConsolidationCheckpoint checkpoint = checkpoints.get(partitionId);
+                        return checkpoint == null || !checkpoint.isCompleted();
+                    })
+                    .toList();
+            if (pending.size() < partitions.size()) {
+                logger.info("{} partições já concluídas na execução {}, processando {} restantes",
+                        partitions.size() - pending.size(), runId, pending.size());
+            }
 
-            logger.info("Job de consolidação concluído: {} snapshots gerados", allSnapshots.size());
+            if ("distributed".equalsIgnoreCase(executionMode)) {
+                publishWorkItems(runId, pending);
+                return true;
+            }
 
+            // Distribui trabalho entre workers; partições com falha são retomadas dos checkpoints
+            long snapshots = 0;
+            List<Integer> remaining = pending;
+            Map<Integer, ConsolidationCheckpoint> resumeFrom = checkpoints;
+            for (int attempt = 1; ; attempt++) {
+                List<Integer> failedPartitions = new ArrayList<>();
+                snapshots += processPartitions(runId, remaining, resumeFrom, failedPartitions);
+                if (failedPartitions.isEmpty()) {
+                    break;
+                }
+                if (attempt >= partitionAttempts) {
+                    logger.error("Execução {}: {} partições falharam após {} tentativas: {}",
+                            runId, failedPartitions.size(), attempt, failedPartitions);
+                    return false;
+                }
+                logger.warn("Execução {}: {} partições falharam, tentativa {} de {} em {}s a partir dos checkpoints: {}",
+                        runId, failedPartitions.size(), attempt + 1, partitionAttempts,
+                        partitionRetryBackoffSeconds, failedPartitions);
+                Thread.sleep(TimeUnit.SECONDS.toMillis(partitionRetryBackoffSeconds));
+                resumeFrom = checkpointStore.load(runId, sourceTopic);
+                remaining = failedPartitions;
+            }
+
+            logger.info("Job de consolidação concluído: {} snapshots gerados", snapshots);
+            return true;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Job de consolidação interrompido", e);
+            return false;
         } catch (Exception e) {
             logger.error("Erro crítico no job de consolidação", e);
+            return false;
+        }
+    }
+
+    /**
+     * Backfill de snapshots históricos: uma leitura por partição gera os snapshots
+     * de todas as datas as-of (ver ConsolidationWorker#backfillPartition).
+     * Executa sempre no pool local, independente de execution-mode.
+     * @return Número de snapshots publicados
+     */
+    public long executeBackfill(List<LocalDate> asOfDates) {
+        logger.info("Iniciando backfill de consolidação para {} datas as-of", asOfDates.size());
+
+        List<Integer> partitions = discoverPartitions(sourceTopic);
+        if (partitions.isEmpty()) {
+            return 0;
+        }
+
+        int poolSize = Math.min(partitions.size(),
+                partitionStrategy.calculateOptimalWorkers(partitions.size(), minWorkers, maxWorkers));
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+
+        Map<Integer, CompletableFuture<Long>> futures = new LinkedHashMap<>();
+        for (Integer partitionId : partitions) {
+            futures.put(partitionId, CompletableFuture.supplyAsync(
+                    () -> worker.backfillPartition(partitionId, windowDays, asOfDates), executor));
+        }
+
+        long published = 0;
+        List<Integer> failedPartitions = new ArrayList<>();
+        for (Map.Entry<Integer, CompletableFuture<Long>> entry : futures.entrySet()) {
+            try {
+                published += entry.getValue().join();
+            } catch (Exception e) {
+                failedPartitions.add(entry.getKey());
+            }
         }
+        executor.shutdown();
+
+        if (!failedPartitions.isEmpty()) {
+            logger.error("Backfill: {} partições falharam: {}", failedPartitions.size(), failedPartitions);
+        }
+        logger.info("Backfill concluído: {} snapshots publicados para {} datas as-of", published, asOfDates.size());
+        return published;
     }
 
     /**
@@ -94,28 +265,155 @@ public class ConsolidationCoordinator {
         }
     }
 
+    /**
+     * Publica um item de trabalho por partição pendente.
+     * As partições são distribuídas em round-robin entre as partições do tópico de trabalho,
+     * de modo que cada pod de worker (dono de uma ou mais delas no consumer group)
+     * receba uma fatia equilibrada. Partições com checkpoint parcial são retomadas
+     * pelo pod que reivindicar o item.
+     */
+    private void publishWorkItems(String runId, List<Integer> partitions) throws Exception {
+        List<Integer> workPartitions = discoverPartitions(WORK_TOPIC);
+        if (workPartitions.isEmpty()) {
+            throw new IllegalStateException("Tópico de trabalho indisponível: " + WORK_TOPIC);
+        }
+
+        Map<Integer, List<Integer>> distribution =
+                partitionStrategy.distributePartitions(partitions, workPartitions.size());
+
+        List<CompletableFuture<?>> sends = new ArrayList<>();
+        for (Map.Entry<Integer, List<Integer>> entry : distribution.entrySet()) {
+            int workPartition = workPartitions.get(entry.getKey());
+            for (Integer partitionId : entry.getValue()) {
+                ConsolidationWorkItem item = new ConsolidationWorkItem(runId, sourceTopic, partitionId, windowDays);
+                sends.add(kafkaProducer.send(WORK_TOPIC, workPartition, item.key(),
+                        kafkaProducer.getObjectMapper().writeValueAsString(item)));
+            }
+        }
+        CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+
+        logger.info("Execução {}: {} itens de trabalho publicados em {} ({} partições de trabalho)",
+                runId, sends.size(), WORK_TOPIC, Math.min(partitions.size(), workPartitions.size()));
+    }
+
     /**
      * Processa todas as partições em paralelo.
+     * Partições com checkpoint não concluído são retomadas a partir dele.
+     * A falha de uma partição não descarta as demais: ela é devolvida em failedPartitions
+     * para nova tentativa (ver runConsolidation).
+     * Partições quentes (ver planHotPartitions) são lidas em sub-faixas no mesmo pool.
      */
-    private List<ServiceActivitySnapshot> processPartitions(List<Integer> partitions) {
-        ExecutorService executor = Executors.newFixedThreadPool(
-                Math.min(partitions.size(), maxWorkers));
-
-        List<CompletableFuture<List<ServiceActivitySnapshot>>> futures = partitions.stream()
-                .map(partitionId -> CompletableFuture.supplyAsync(() -> {
-                    logger.info("Worker iniciado para partição {}", partitionId);
-                    return worker.processPartition(partitionId, windowDays);
-                }, executor))
-                .toList();
+    private long processPartitions(String runId, List<Integer> partitions,
+                                   Map<Integer, ConsolidationCheckpoint> checkpoints, List<Integer> failedPartitions) {
+        if (partitions.isEmpty()) {
+            return 0;
+        }
 
-        // Aguarda conclusão de todos os workers
-        List<ServiceActivitySnapshot> allSnapshots = futures.stream()
-                .map(CompletableFuture::join)
-                .flatMap(List::stream)
-                .toList();
+        int poolSize = Math.min(partitions.size(),
+                partitionStrategy.calculateOptimalWorkers(partitions.size(), minWorkers, maxWorkers));
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        Map<Integer, PartitionRange> hotPartitions = planHotPartitions(partitions, checkpoints, poolSize);
+
+        Map<Integer, CompletableFuture<Long>> futures = new LinkedHashMap<>();
+        for (Integer partitionId : partitions) {
+            PartitionRange hot = hotPartitions.get(partitionId);
+            if (hot != null) {
+                futures.put(partitionId, processSplitPartition(runId, hot, poolSize, executor));
+                continue;
+            }
+            futures.put(partitionId, CompletableFuture.supplyAsync(() -> {
+                logger.info("Worker iniciado para partição {}", partitionId);
+                return worker.processPartition(runId, partitionId, windowDays, checkpoints.get(partitionId));
+            }, executor));
+        }
+
+        // Aguarda conclusão de todos os workers (snapshots já entregues aos destinos por partição)
+        long snapshots = 0;
+        for (Map.Entry<Integer, CompletableFuture<Long>> entry : futures.entrySet()) {
+            try {
+                snapshots += entry.getValue().join();
+            } catch (Exception e) {
+                failedPartitions.add(entry.getKey());
+            }
+        }
 
         executor.shutdown();
-        return allSnapshots;
+        return snapshots;
+    }
+
+    /**
+     * Identifica partições quentes: sem checkpoint parcial e com mais registros a ler que
+     * a fatia média por worker (respeitando min-sub-range-records).
+     * Tópicos de rollup não são divididos: a última versão de cada chave depende da ordem de leitura.
+     * @return Faixa planejada de cada partição quente
+     */
+    private Map<Integer, PartitionRange> planHotPartitions(
+            List<Integer> partitions, Map<Integer, ConsolidationCheckpoint> checkpoints, int poolSize) {
+        if (!splitEnabled || maxSubRanges < 2 || !"governance.activity.raw".equals(sourceTopic)) {
+            return Collections.emptyMap();
+        }
+
+        Map<Integer, PartitionRange> ranges = new LinkedHashMap<>();
+        long totalRecords = 0;
+        for (Integer partitionId : partitions) {
+            if (checkpoints.containsKey(partitionId)) {
+                continue;
+            }
+            try {
+                PartitionRange range = worker.planPartition(partitionId, windowDays);
+                ranges.put(partitionId, range);
+                totalRecords += range.getRecordCount();
+            } catch (Exception e) {
+                logger.warn("Erro ao planejar partição {}, processando sem divisão", partitionId, e);
+            }
+        }
+
+        long targetRecords = Math.max(minSubRangeRecords, (totalRecords + poolSize - 1) / poolSize);
+        Map<Integer, PartitionRange> hot = new LinkedHashMap<>();
+        ranges.forEach((partitionId, range) -> {
+            if (range.getRecordCount() > 2 * targetRecords) {
+                hot.put(partitionId, range);
+            }
+        });
+
+        if (!hot.isEmpty()) {
+            logger.info("{} partições quentes serão divididas (fatia alvo: {} registros): {}",
+                    hot.size(), targetRecords, hot.keySet());
+        }
+        return hot;
+    }
+
+    /**
+     * Lê as sub-faixas de uma partição quente em paralelo e combina os acumuladores parciais.
+     * A combinação é encadeada sem bloquear threads do pool enquanto as sub-faixas são lidas.
+     */
+    private CompletableFuture<Long> processSplitPartition(
+            String runId, PartitionRange range, int poolSize, ExecutorService executor) {
+        long targetRecords = Math.max(minSubRangeRecords, range.getRecordCount() / poolSize);
+        int parts = (int) Math.min(maxSubRanges, (range.getRecordCount() + targetRecords - 1) / targetRecords);
+        List<PartitionRange> subRanges = range.split(parts);
+        logger.info("Partição {} dividida em {} sub-faixas ({} registros)",
+                range.getPartition(), subRanges.size(), range.getRecordCount());
+
+        // Um único filtro de duplicatas para a partição: eventos repetidos em sub-faixas distintas são contados uma vez
+        EventIdFilter eventIds = worker.newEventIdFilter();
+        List<CompletableFuture<SpillingAccumulatorTable>> partials = subRanges.stream()
+                .map(subRange -> CompletableFuture.supplyAsync(
+                        () -> worker.accumulateRange(subRange, eventIds), executor))
+                .toList();
+
+        return CompletableFuture.allOf(partials.toArray(CompletableFuture[]::new))
+                .handleAsync((ignored, error) -> {
+                    List<SpillingAccumulatorTable> tables = partials.stream()
+                            .filter(partial -> !partial.isCompletedExceptionally())
+                            .map(CompletableFuture::join)
+                            .toList();
+                    if (error != null) {
+                        tables.forEach(SpillingAccumulatorTable::close);
+                        throw new CompletionException(error);
+                    }
+                    return worker.completeSplitPartition(runId, range, tables);
+                }, executor);
     }
 }
 
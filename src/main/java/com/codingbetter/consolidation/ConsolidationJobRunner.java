@@ -0,0 +1,39 @@
+package com.codingbetter.consolidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ponto de entrada do job de consolidação como processo de execução única (CronJob).
+ * Executado na inicialização quando consolidation.job.run-on-startup=true: roda a consolidação
+ * do dia e encerra o processo com exit code 0 (sucesso) ou 1 (partições não concluídas).
+ * Com restartPolicy: OnFailure, o reinício do pod retoma a mesma execução pelos checkpoints.
+ */
+@Component
+@ConditionalOnProperty(name = "consolidation.job.run-on-startup", havingValue = "true")
+public class ConsolidationJobRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsolidationJobRunner.class);
+
+    private final ConsolidationCoordinator coordinator;
+    private final ApplicationContext applicationContext;
+
+    public ConsolidationJobRunner(ConsolidationCoordinator coordinator, ApplicationContext applicationContext) {
+        this.coordinator = coordinator;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        boolean completed = coordinator.runConsolidation();
+        int exitCode = SpringApplication.exit(applicationContext, () -> completed ? 0 : 1);
+        logger.info("Job de consolidação encerrado com exit code {}", exitCode);
+        System.exit(exitCode);
+    }
+}
@@ -0,0 +1,68 @@
+package com.codingbetter.consolidation;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerGroupMetadata;
+
+/**
+ * Lease de uma partição no modo distribuído: a geração do consumer group em que o pod
+ * recebeu o item de trabalho.
+ *
+ * Se o processamento excede max.poll.interval.ms, o consumer sai do grupo (geração e member id
+ * são descartados) e o item é reatribuído, mas o pod original continua executando. O worker
+ * verifica o lease antes de cada checkpoint e de cada lote de snapshots: com o lease perdido,
+ * a partição é abandonada sem gravar nada, e apenas o novo dono escreve.
+ *
+ * O consumer não é thread-safe: verify() deve ser chamado na thread do listener, a mesma que
+ * executa a consolidação da partição.
+ */
+public final class ConsolidationLease {
+
+    /**
+     * Sem lease (modo local): verify() nunca falha.
+     */
+    public static final ConsolidationLease NONE = new ConsolidationLease(null, null, -1, null);
+
+    private final Consumer<?, ?> consumer;
+    private final String memberId;
+    private final int generationId;
+    private final String description;
+
+    private ConsolidationLease(Consumer<?, ?> consumer, String memberId, int generationId, String description) {
+        this.consumer = consumer;
+        this.memberId = memberId;
+        this.generationId = generationId;
+        this.description = description;
+    }
+
+    /**
+     * Registra a geração corrente do consumer que recebeu o item.
+     */
+    public static ConsolidationLease of(Consumer<?, ?> consumer, String description) {
+        ConsumerGroupMetadata metadata = consumer.groupMetadata();
+        return new ConsolidationLease(consumer, metadata.memberId(), metadata.generationId(), description);
+    }
+
+    /**
+     * @throws LostException se o consumer saiu do grupo ou mudou de geração desde a obtenção do lease
+     */
+    public void verify() {
+        if (consumer == null) {
+            return;
+        }
+        ConsumerGroupMetadata metadata = consumer.groupMetadata();
+        if (metadata.generationId() != generationId || !metadata.memberId().equals(memberId)) {
+            throw new LostException("Lease perdido para " + description + ": geração " + generationId
+                    + " -> " + metadata.generationId());
+        }
+    }
+
+    /**
+     * Lease expirado: outro pod pode já estar processando o item.
+     */
+    public static class LostException extends IllegalStateException {
+
+        public LostException(String message) {
+            super(message);
+        }
+    }
+}
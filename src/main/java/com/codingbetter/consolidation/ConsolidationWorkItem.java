@@ -0,0 +1,76 @@
+package com.codingbetter.consolidation;
+
+import java.time.Instant;
+
+/**
+ * Item de trabalho do modo distribuído: uma partição do tópico de origem
+ * a ser consolidada em uma execução.
+ * Publicado pelo coordenador em governance.consolidation.work e reivindicado
+ * pelos pods de worker via consumer group (ver ConsolidationWorkListener).
+ */
+public class ConsolidationWorkItem {
+
+    private String runId;
+    private String topic;
+    private int partition;
+    private int windowDays;
+    private Instant createdAt;
+
+    public ConsolidationWorkItem() {
+    }
+
+    public ConsolidationWorkItem(String runId, String topic, int partition, int windowDays) {
+        this.runId = runId;
+        this.topic = topic;
+        this.partition = partition;
+        this.windowDays = windowDays;
+        this.createdAt = Instant.now();
+    }
+
+    /**
+     * Mesma chave do checkpoint da partição na execução.
+     */
+    public String key() {
+        return ConsolidationCheckpoint.key(runId, topic, partition);
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public void setRunId(String runId) {
+        this.runId = runId;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public void setPartition(int partition) {
+        this.partition = partition;
+    }
+
+    public int getWindowDays() {
+        return windowDays;
+    }
+
+    public void setWindowDays(int windowDays) {
+        this.windowDays = windowDays;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
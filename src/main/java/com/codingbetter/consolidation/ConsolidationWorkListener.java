@@ -0,0 +1,117 @@
+package com.codingbetter.consolidation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Executor de itens de trabalho do modo distribuído, ativo nos pods de worker.
+ *
+ * O lease de cada partição é a própria atribuição do consumer group:
+ * - cada item só é entregue ao pod dono da partição do tópico de trabalho;
+ * - o offset é confirmado apenas após a consolidação (e o checkpoint de conclusão);
+ * - se o pod morre (session timeout) ou trava além do max.poll.interval.ms, o grupo
+ *   rebalanceia e o item não confirmado é reentregue a outro pod, que retoma a partir
+ *   do último checkpoint;
+ * - o pod que perdeu o lease por exceder o prazo continua executando: a geração do grupo
+ *   (ConsolidationLease) é verificada antes de cada checkpoint e lote de snapshots, e a
+ *   partição é abandonada sem novas gravações assim que ela muda.
+ *
+ * O worker lê o source-topic da sua própria configuração: itens de outro tópico (coordenador e
+ * workers com configurações divergentes, por exemplo durante um rollout) não são executados e
+ * voltam à fila após o backoff, até um pod compatível assumi-los ou o item expirar.
+ */
+@Component
+@ConditionalOnProperty(name = "consolidation.worker.enabled", havingValue = "true")
+public class ConsolidationWorkListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsolidationWorkListener.class);
+
+    private final ConsolidationWorker worker;
+    private final ConsolidationCheckpointStore checkpointStore;
+    private final ObjectMapper objectMapper;
+
+    // Itens mais antigos que isso pertencem a uma execução já substituída
+    @Value("${consolidation.worker.max-item-age-hours:20}")
+    private long maxItemAgeHours = 20;
+
+    @Value("${consolidation.worker.retry-backoff-seconds:30}")
+    private long retryBackoffSeconds = 30;
+
+    public ConsolidationWorkListener(
+            ConsolidationWorker worker,
+            ConsolidationCheckpointStore checkpointStore,
+            ObjectMapper objectMapper) {
+        this.worker = worker;
+        this.checkpointStore = checkpointStore;
+        this.objectMapper = objectMapper;
+    }
+
+    @KafkaListener(
+            topics = ConsolidationCoordinator.WORK_TOPIC,
+            groupId = "governance-consolidation-workers",
+            containerFactory = "consolidationWorkListenerContainerFactory"
+    )
+    public void onWorkItem(ConsumerRecord<String, String> record, Acknowledgment acknowledgment,
+                           Consumer<?, ?> consumer) {
+        ConsolidationWorkItem item;
+        try {
+            item = objectMapper.readValue(record.value(), ConsolidationWorkItem.class);
+        } catch (Exception e) {
+            logger.error("Item de trabalho inválido descartado: key={}, offset={}", record.key(), record.offset(), e);
+            acknowledgment.acknowledge();
+            return;
+        }
+
+        if (item.getCreatedAt() != null
+                && item.getCreatedAt().isBefore(Instant.now().minus(maxItemAgeHours, ChronoUnit.HOURS))) {
+            logger.warn("Item de trabalho expirado descartado: key={}, createdAt={}", item.key(), item.getCreatedAt());
+            acknowledgment.acknowledge();
+            return;
+        }
+
+        if (!worker.getSourceTopic().equals(item.getTopic())) {
+            logger.error("Item de trabalho do tópico {} recusado: este worker lê {}; nova tentativa em {}s (key={})",
+                    item.getTopic(), worker.getSourceTopic(), retryBackoffSeconds, item.key());
+            acknowledgment.nack(Duration.ofSeconds(retryBackoffSeconds));
+            return;
+        }
+
+        // Cache da execução: apenas os checkpoints gravados desde o item anterior são lidos
+        ConsolidationCheckpoint checkpoint = checkpointStore.loadCached(item.getRunId(), item.getTopic())
+                .get(item.getPartition());
+        if (checkpoint != null && checkpoint.isCompleted()) {
+            logger.info("Partição {} já concluída na execução {}, item ignorado", item.getPartition(), item.getRunId());
+            acknowledgment.acknowledge();
+            return;
+        }
+
+        try {
+            logger.info("Lease obtido para partição {} (execução {}{})", item.getPartition(), item.getRunId(),
+                    checkpoint != null ? ", retomando do offset " + checkpoint.getNextOffset() : "");
+            ConsolidationLease lease = ConsolidationLease.of(consumer,
+                    "partição " + item.getPartition() + " (execução " + item.getRunId() + ")");
+            worker.processPartition(item.getRunId(), item.getPartition(), item.getWindowDays(), checkpoint, lease);
+            acknowledgment.acknowledge();
+        } catch (ConsolidationLease.LostException e) {
+            // Sem ack nem nack: o item já pertence a outro pod; o consumer volta ao grupo no próximo poll
+            logger.warn("Partição {} (execução {}) abandonada: {}", item.getPartition(), item.getRunId(), e.getMessage());
+        } catch (Exception e) {
+            // Não confirma: o item é reentregue (a este ou a outro pod) e retomado do checkpoint
+            logger.error("Falha ao consolidar partição {} (execução {}), nova tentativa em {}s",
+                    item.getPartition(), item.getRunId(), retryBackoffSeconds, e);
+            acknowledgment.nack(Duration.ofSeconds(retryBackoffSeconds));
+        }
+    }
+}
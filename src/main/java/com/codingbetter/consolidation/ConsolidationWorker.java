@@ -1,22 +1,39 @@
 package com.codingbetter.consolidation;
 
 import com.codingbetter.kafka.KafkaProducer;
-import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import com.codingbetter.schemas.SchemaRegistry;
 import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
 import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.function.ObjLongConsumer;
 
 /**
  * Worker de consolidação que processa uma partição específica do Kafka.
@@ -27,103 +44,977 @@ public class ConsolidationWorker {
 
     private static final Logger logger = LoggerFactory.getLogger(ConsolidationWorker.class);
 
-    private final ConsumerFactory<String, String> consumerFactory;
+    private final ConsumerFactory<String, byte[]> consumerFactory;
     private final ObjectMapper objectMapper;
     private final SnapshotGenerator snapshotGenerator;
     private final KafkaProducer kafkaProducer;
+    private final ConsolidationCheckpointStore checkpointStore;
+    private final CompositeSnapshotSink snapshotSink;
+    private final ServiceOffsetIndex offsetIndex;
+    private final ExecutorService decodeExecutor;
+
+    /**
+     * Modo de posicionamento inicial na partição:
+     * - timestamp: usa offsetsForTimes no cutoff da janela (lê apenas dados da janela)
+     * - beginning: relê a partição desde o início (comportamento legado)
+     */
+    @Value("${consolidation.job.seek-mode:timestamp}")
+    private String seekMode = "timestamp";
+
+    /**
+     * Tópico de origem da consolidação:
+     * - governance.activity.raw: eventos de 5 minutos (padrão)
+     * - governance.activity.hourly / governance.activity.daily: rollups compactados
+     *   (ActivityRollupTopology), com ~24x / ~288x menos registros por serviço
+     */
+    @Value("${consolidation.job.source-topic:governance.activity.raw}")
+    private String sourceTopic = "governance.activity.raw";
+
+    /**
+     * Timeout de cada poll. Não determina o fim da leitura: o término é dado pelo
+     * end offset capturado no início do processamento da partição.
+     */
+    @Value("${consolidation.job.poll-timeout-ms:1000}")
+    private long pollTimeoutMs = 1000;
+
+    /**
+     * Tempo máximo sem receber registros antes de atingir o end offset.
+     * Protege contra partições indisponíveis (leitura travada indefinidamente).
+     */
+    @Value("${consolidation.job.idle-timeout-seconds:120}")
+    private long idleTimeoutSeconds = 120;
+
+    /**
+     * Orçamento de memória da tabela de acumuladores de uma partição.
+     * Acima dele, a tabela é gravada em disco em runs ordenados (SpillingAccumulatorTable).
+     * No modo local, várias partições são processadas no mesmo pod: o orçamento é por partição.
+     */
+    @Value("${consolidation.job.spill-threshold-mb:512}")
+    private long spillThresholdMb = 512;
+
+    @Value("${consolidation.job.spill-dir:${java.io.tmpdir}}")
+    private String spillDir = System.getProperty("java.io.tmpdir");
+
+    /**
+     * Modo de deserialização dos eventos:
+     * - pipelined: a thread de poll entrega cada lote de registros a decoders em virtual threads,
+     *   que deserializam e alimentam os acumuladores enquanto o próximo fetch já está em curso
+     * - inline: poll e deserialização na mesma thread (comportamento legado)
+     * Tópicos de rollup sempre usam inline (a última versão de cada chave depende da ordem).
+     */
+    @Value("${consolidation.job.decode-mode:pipelined}")
+    private String decodeMode = "pipelined";
+
+    /**
+     * Máximo de lotes em deserialização por partição. Atingido o limite, a thread de poll
+     * aguarda a conclusão do lote mais antigo antes do próximo poll.
+     */
+    @Value("${consolidation.job.decode-max-in-flight:4}")
+    private int decodeMaxInFlight = 4;
+
+    // Snapshots por lote entregue aos destinos (SnapshotSink)
+    @Value("${consolidation.sinks.batch-size:500}")
+    private int sinkBatchSize = 500;
+
+    // Lotes em curso por partição antes de a geração aguardar os destinos
+    @Value("${consolidation.sinks.max-in-flight-batches:8}")
+    private int sinkMaxInFlightBatches = 8;
+
+    // Intervalo mínimo entre checkpoints intermediários de uma partição
+    @Value("${consolidation.checkpoint.interval-seconds:60}")
+    private long checkpointIntervalSeconds = 60;
+
+    /**
+     * Supressão de eventos duplicados pelo header "event-id" (mesmo serviço, origem e janela
+     * publicados mais de uma vez). Conjunto exato por partição (compartilhado pelas sub-faixas
+     * e reconstruído na retomada), limitado a max-ids-per-partition ids (~8-16 bytes cada);
+     * acima disso os ids novos não são filtrados.
+     */
+    @Value("${consolidation.dedup.enabled:true}")
+    private boolean dedupEnabled = true;
+
+    @Value("${consolidation.dedup.max-ids-per-partition:2000000}")
+    private int dedupMaxIds = 2_000_000;
 
     public ConsolidationWorker(
-            ConsumerFactory<String, String> consumerFactory,
+            @Qualifier("replayPayloadConsumerFactory") ConsumerFactory<String, byte[]> consumerFactory,
             ObjectMapper objectMapper,
             SnapshotGenerator snapshotGenerator,
-            KafkaProducer kafkaProducer) {
+            KafkaProducer kafkaProducer,
+            ConsolidationCheckpointStore checkpointStore,
+            ObjectProvider<SnapshotSink> snapshotSinks,
+            ServiceOffsetIndex offsetIndex) {
         this.consumerFactory = consumerFactory;
         this.objectMapper = objectMapper;
         this.snapshotGenerator = snapshotGenerator;
         this.kafkaProducer = kafkaProducer;
+        this.checkpointStore = checkpointStore;
+        this.offsetIndex = offsetIndex;
+        this.snapshotSink = new CompositeSnapshotSink(snapshotSinks.orderedStream().toList());
+        if (snapshotSink.isEmpty()) {
+            logger.warn("Nenhum destino de snapshots habilitado (consolidation.sinks.*)");
+        }
+        // Deserialização é CPU-bound: o paralelismo efetivo é limitado pelos carriers das virtual threads
+        this.decodeExecutor = Executors.newVirtualThreadPerTaskExecutor();
     }
 
     /**
      * Processa uma partição específica do tópico raw.
      * @param partitionId ID da partição a processar
      * @param windowDays Número de dias para considerar (padrão: 30)
-     * @return Lista de snapshots gerados
+     * @return Número de snapshots gerados
+     */
+    public long processPartition(int partitionId, int windowDays) {
+        return processPartition(LocalDate.now().toString(), partitionId, windowDays, null);
+    }
+
+    public long processPartition(
+            String runId, int partitionId, int windowDays, ConsolidationCheckpoint resumeFrom) {
+        return processPartition(runId, partitionId, windowDays, resumeFrom, ConsolidationLease.NONE);
+    }
+
+    /**
+     * Processa uma partição registrando checkpoints de progresso.
+     * @param runId Identificador da execução (checkpoints são escopados por execução)
+     * @param partitionId ID da partição a processar
+     * @param windowDays Número de dias para considerar
+     * @param resumeFrom Checkpoint não concluído a partir do qual retomar (ou null)
+     * @param lease Lease da partição (modo distribuído), verificado antes de cada checkpoint e lote de snapshots
+     * @return Número de snapshots gerados
+     * @throws ConsolidationLease.LostException se o lease expirou durante o processamento
      */
-    public List<ServiceActivitySnapshot> processPartition(int partitionId, int windowDays) {
+    public long processPartition(String runId, int partitionId, int windowDays,
+                                 ConsolidationCheckpoint resumeFrom, ConsolidationLease lease) {
         logger.info("Iniciando processamento da partição {} (janela: {} dias)", partitionId, windowDays);
 
-        try (org.apache.kafka.clients.consumer.KafkaConsumer<String, String> consumer = createPartitionConsumer(partitionId)) {
-            // Calcula timestamp de início (30 dias atrás)
-            Instant cutoffTime = Instant.now().minus(windowDays, ChronoUnit.DAYS);
-            long cutoffTimestamp = cutoffTime.toEpochMilli();
+        try (org.apache.kafka.clients.consumer.KafkaConsumer<String, byte[]> consumer = createPartitionConsumer(partitionId);
+             SpillingAccumulatorTable accumulators = new SpillingAccumulatorTable(
+                     spillThresholdMb * 1024 * 1024, Path.of(spillDir))) {
+            long cutoffTimestamp;
+            long windowCutoffTimestamp;
+            PartitionStartOffset startOffset;
+            EventIdFilter eventIds = newEventIdFilter();
+            long readStartOffset;
 
-            // Lê eventos da partição
-            List<ServiceActivityEvent> events = readEventsFromPartition(consumer, cutoffTimestamp);
+            if (resumeFrom != null) {
+                // Retoma do offset e do estado salvos, com o mesmo cutoff e end offset da execução original
+                cutoffTimestamp = resumeFrom.getCutoffTimestamp();
+                windowCutoffTimestamp = resumeFrom.getWindowCutoffTimestamp() > 0
+                        ? resumeFrom.getWindowCutoffTimestamp() : cutoffTimestamp;
+                readStartOffset = resumeFrom.getStartOffset();
+                if (eventIds != null) {
+                    reseedEventIds(consumer, resumeFrom, eventIds);
+                }
+                startOffset = resumeFromCheckpoint(consumer, resumeFrom);
+                resumeFrom.decodeState().values().forEach(accumulators::merge);
+                logger.info("Retomando partição {} a partir do checkpoint: {} ({} serviços restaurados)",
+                        partitionId, startOffset, accumulators.inMemorySize());
+            } else {
+                windowCutoffTimestamp = windowCutoffFor(windowDays);
+                cutoffTimestamp = scanCutoffFor(windowCutoffTimestamp);
 
-            logger.info("Lidos {} eventos da partição {}", events.size(), partitionId);
+                // Posiciona o consumer no primeiro offset dentro da janela
+                startOffset = seekToWindowStart(consumer, partitionId, cutoffTimestamp);
+                readStartOffset = startOffset.getStartOffset();
+                logger.info("Offset inicial da partição {}: {}", partitionId, startOffset);
+            }
 
-            // Gera snapshots
-            List<ServiceActivitySnapshot> snapshots = snapshotGenerator.generateSnapshots(events);
+            ConsolidationCheckpoint checkpoint = new ConsolidationCheckpoint(runId, sourceTopic, partitionId,
+                    cutoffTimestamp, startOffset.getStartOffset(), startOffset.getEndOffset());
+            checkpoint.setWindowCutoffTimestamp(windowCutoffTimestamp);
+            checkpoint.setStartOffset(readStartOffset);
 
-            // Publica snapshots
-            snapshots.forEach(snapshot -> {
-                kafkaProducer.publishSnapshot(snapshot);
-                logger.debug("Snapshot publicado: serviceId={}, classification={}",
-                        snapshot.getServiceId(), snapshot.getClassification());
+            // Lê eventos da partição acumulando por serviço
+            // (checkpoints intermediários só enquanto o estado cabe em memória)
+            // O índice de offsets por serviço é atualizado a cada checkpoint e ao final da leitura
+            ObjLongConsumer<ActivityProjection> sink = windowSink(accumulators, windowCutoffTimestamp);
+            ServiceOffsetIndex.Recorder recorder = offsetRecorderFor(partitionId);
+            readEventsFromPartition(consumer, startOffset, cutoffTimestamp, sink, eventIds, recorder, nextOffset -> {
+                commitOffsetIndex(recorder);
+                if (!accumulators.hasSpilled()) {
+                    lease.verify();
+                    checkpoint.setNextOffset(nextOffset);
+                    checkpoint.setState(ConsolidationCheckpoint.encodeState(accumulators.inMemory()));
+                    checkpoint.setUpdatedAt(Instant.now());
+                    checkpointStore.save(checkpoint);
+                    checkpoint.setState(null);
+                }
             });
+            commitOffsetIndex(recorder);
 
-            logger.info("Partição {} processada: {} snapshots gerados", partitionId, snapshots.size());
+            if (accumulators.hasSpilled()) {
+                logger.info("Partição {} excedeu o orçamento de memória: {} runs em disco, merge k-way",
+                        partitionId, accumulators.getSpillCount());
+            } else {
+                logger.info("Lidos eventos de {} serviços da partição {}", accumulators.inMemorySize(), partitionId);
+            }
 
-            return snapshots;
+            return publishAndComplete(runId, accumulators, checkpoint, lease);
+        } catch (ConsolidationLease.LostException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Erro ao processar partição {}", partitionId, e);
             throw new RuntimeException("Erro ao processar partição", e);
         }
     }
 
+    /**
+     * Planeja a leitura de uma partição: fixa os cutoffs da execução e a faixa de offsets
+     * [início da janela, end offset atual). Usado pelo coordenador para dividir partições quentes.
+     */
+    public PartitionRange planPartition(int partitionId, int windowDays) {
+        long windowCutoffTimestamp = windowCutoffFor(windowDays);
+        long cutoffTimestamp = scanCutoffFor(windowCutoffTimestamp);
+        try (org.apache.kafka.clients.consumer.KafkaConsumer<String, byte[]> consumer = createPartitionConsumer(partitionId)) {
+            PartitionStartOffset startOffset = seekToWindowStart(consumer, partitionId, cutoffTimestamp);
+            return new PartitionRange(partitionId, cutoffTimestamp, windowCutoffTimestamp,
+                    startOffset.getStartOffset(), startOffset.getEndOffset());
+        }
+    }
+
+    /**
+     * Lê uma sub-faixa de offsets de uma partição e devolve os acumuladores parciais por serviço,
+     * sem gerar snapshots nem checkpoints. O chamador é responsável por fechar a tabela.
+     * @param eventIds Filtro de duplicatas compartilhado por todas as sub-faixas da partição
+     *                 (ver {@link #newEventIdFilter()}), ou null
+     */
+    public SpillingAccumulatorTable accumulateRange(PartitionRange range, EventIdFilter eventIds) {
+        SpillingAccumulatorTable accumulators = new SpillingAccumulatorTable(
+                spillThresholdMb * 1024 * 1024, Path.of(spillDir));
+        try (org.apache.kafka.clients.consumer.KafkaConsumer<String, byte[]> consumer =
+                     createPartitionConsumer(range.getPartition())) {
+            consumer.seek(new TopicPartition(sourceTopic, range.getPartition()), range.getStartOffset());
+            PartitionStartOffset startOffset = new PartitionStartOffset(range.getPartition(), "range",
+                    range.getCutoffTimestamp(), range.getStartOffset(), range.getStartOffset(), range.getEndOffset());
+
+            ServiceOffsetIndex.Recorder recorder = offsetRecorderFor(range.getPartition());
+            readEventsFromPartition(consumer, startOffset, range.getCutoffTimestamp(),
+                    windowSink(accumulators, range.getWindowCutoffTimestamp()), eventIds, recorder, null);
+            commitOffsetIndex(recorder);
+
+            logger.info("Sub-faixa {} lida: {} serviços em memória, {} runs em disco",
+                    range, accumulators.inMemorySize(), accumulators.getSpillCount());
+            return accumulators;
+        } catch (Exception e) {
+            accumulators.close();
+            logger.error("Erro ao ler sub-faixa {}", range, e);
+            throw new RuntimeException("Erro ao ler sub-faixa da partição", e);
+        }
+    }
+
+    /**
+     * Combina os acumuladores parciais das sub-faixas de uma partição (merge associativo e
+     * comutativo por serviço), gera e publica os snapshots e marca a partição como concluída.
+     * Fecha as tabelas parciais.
+     */
+    public long completeSplitPartition(
+            String runId, PartitionRange range, List<SpillingAccumulatorTable> partials) {
+        try (SpillingAccumulatorTable merged = new SpillingAccumulatorTable(
+                spillThresholdMb * 1024 * 1024, Path.of(spillDir))) {
+            for (SpillingAccumulatorTable partial : partials) {
+                partial.forEachMerged(merged::merge);
+                partial.close();
+            }
+            logger.info("Partição {} combinada a partir de {} sub-faixas: {} serviços em memória, {} runs em disco",
+                    range.getPartition(), partials.size(), merged.inMemorySize(), merged.getSpillCount());
+
+            ConsolidationCheckpoint checkpoint = new ConsolidationCheckpoint(runId, sourceTopic, range.getPartition(),
+                    range.getCutoffTimestamp(), range.getStartOffset(), range.getEndOffset());
+            checkpoint.setWindowCutoffTimestamp(range.getWindowCutoffTimestamp());
+            return publishAndComplete(runId, merged, checkpoint, ConsolidationLease.NONE);
+        } catch (Exception e) {
+            logger.error("Erro ao combinar sub-faixas da partição {}", range.getPartition(), e);
+            throw new RuntimeException("Erro ao combinar sub-faixas da partição", e);
+        } finally {
+            partials.forEach(SpillingAccumulatorTable::close);
+        }
+    }
+
+    /**
+     * Gera os snapshots da partição, entrega-os em lotes a todos os destinos (SnapshotSink)
+     * e salva o checkpoint como concluído. O lease é verificado antes de cada lote e da conclusão.
+     */
+    private long publishAndComplete(String runId, SpillingAccumulatorTable accumulators,
+                                    ConsolidationCheckpoint checkpoint, ConsolidationLease lease) throws IOException {
+        long snapshots;
+        lease.verify();
+        SnapshotSink.PartitionWriter sinkWriter = snapshotSink.open(runId, checkpoint.getPartition());
+        SnapshotSink.PartitionWriter fenced = new SnapshotSink.PartitionWriter() {
+            @Override
+            public CompletableFuture<Void> write(List<ServiceActivitySnapshot> batch) {
+                lease.verify();
+                return sinkWriter.write(batch);
+            }
+
+            @Override
+            public void close() throws IOException {
+                sinkWriter.close();
+            }
+        };
+        try (SnapshotBatchWriter writer = new SnapshotBatchWriter(fenced, sinkBatchSize, sinkMaxInFlightBatches)) {
+            snapshotGenerator.generateSnapshots(accumulators, writer);
+            // A partição só é marcada como concluída após confirmação de todos os lotes
+            snapshots = writer.finish();
+        }
+
+        lease.verify();
+        checkpoint.setNextOffset(checkpoint.getEndOffset());
+        checkpoint.setCompleted(true);
+        checkpoint.setUpdatedAt(Instant.now());
+        checkpointStore.save(checkpoint);
+
+        logger.info("Partição {} processada: {} snapshots entregues a {}",
+                checkpoint.getPartition(), snapshots, snapshotSink.getName());
+        return snapshots;
+    }
+
+    /**
+     * Eventos da janela alimentam o fold; anteriores (horizontes longos), apenas os buckets diários.
+     */
+    private static ObjLongConsumer<ActivityProjection> windowSink(
+            SpillingAccumulatorTable accumulators, long windowCutoffTimestamp) {
+        return (event, timestamp) -> {
+            if (timestamp >= windowCutoffTimestamp) {
+                accumulators.add(event);
+            } else {
+                accumulators.addHistory(event);
+            }
+        };
+    }
+
+    /**
+     * Tópico lido por este worker (consolidation.job.source-topic).
+     */
+    public String getSourceTopic() {
+        return sourceTopic;
+    }
+
+    /**
+     * Filtro de duplicatas para a leitura de uma partição do tópico raw, ou null se a supressão
+     * está desabilitada ou a origem é um tópico de rollup: as duplicatas já foram descartadas pela
+     * topologia de rollup antes da agregação horária (StreamEventIdFilter).
+     */
+    public EventIdFilter newEventIdFilter() {
+        if (!dedupEnabled || !"governance.activity.raw".equals(sourceTopic)) {
+            return null;
+        }
+        return new EventIdFilter(dedupMaxIds);
+    }
+
+    /**
+     * Reconstrói o filtro de duplicatas na retomada: relê [startOffset, nextOffset) do checkpoint
+     * registrando apenas os event-ids (headers e primeira coluna dos envelopes), sem deserializar
+     * eventos. Os ids não vão no checkpoint: o conjunto pode chegar a dezenas de MB por partição.
+     */
+    private void reseedEventIds(
+            org.apache.kafka.clients.consumer.KafkaConsumer<String, byte[]> consumer,
+            ConsolidationCheckpoint checkpoint,
+            EventIdFilter eventIds) {
+        TopicPartition partition = new TopicPartition(sourceTopic, checkpoint.getPartition());
+        long to = checkpoint.getNextOffset();
+        if (checkpoint.getStartOffset() >= to) {
+            return;
+        }
+        consumer.seek(partition, checkpoint.getStartOffset());
+        long lastProgress = System.nanoTime();
+        while (consumer.position(partition) < to) {
+            ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(pollTimeoutMs));
+            if (records.isEmpty()) {
+                if (System.nanoTime() - lastProgress > Duration.ofSeconds(idleTimeoutSeconds).toNanos()) {
+                    throw new IllegalStateException("Timeout reconstruindo event-ids da partição " + partition
+                            + ": posição " + consumer.position(partition) + " de " + to);
+                }
+                continue;
+            }
+            lastProgress = System.nanoTime();
+            distinct(records.records(partition), to, eventIds);
+        }
+        logger.info("Event-ids da partição {} reconstruídos até o offset {}: {} ids",
+                checkpoint.getPartition(), to, eventIds.size());
+    }
+
+    // Cutoff da janela de consolidação (ex.: 30 dias atrás)
+    private long windowCutoffFor(int windowDays) {
+        return Instant.now().minus(windowDays, ChronoUnit.DAYS).toEpochMilli();
+    }
+
+    /**
+     * Horizontes mais longos que a janela (ex.: 90 dias) estendem a leitura,
+     * apenas para os buckets diários.
+     */
+    private long scanCutoffFor(long windowCutoffTimestamp) {
+        long historyCutoff = LocalDate.now(ZoneOffset.UTC)
+                .minusDays(snapshotGenerator.getMaxHorizonDays())
+                .atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        return Math.min(windowCutoffTimestamp, historyCutoff);
+    }
+
+    // Só o tópico raw é indexado: é dele que o recálculo por serviço lê
+    private ServiceOffsetIndex.Recorder offsetRecorderFor(int partitionId) {
+        return offsetIndex.isEnabled() && "governance.activity.raw".equals(sourceTopic)
+                ? offsetIndex.recorder(partitionId) : null;
+    }
+
+    private void commitOffsetIndex(ServiceOffsetIndex.Recorder recorder) {
+        if (recorder != null) {
+            offsetIndex.commit(recorder);
+        }
+    }
+
+    /**
+     * Recalcula o snapshot de um único serviço sob demanda, lendo apenas as faixas de offsets
+     * do índice por serviço (ServiceOffsetIndex) dentro da janela e a cauda da partição ainda
+     * não indexada (registros posteriores à última consolidação).
+     * Mesmas regras do job: janela, horizontes longos e DecisionEngine. Não publica o snapshot.
+     * @return Snapshot recalculado, ou null se o serviço não consta do índice
+     */
+    public ServiceActivitySnapshot recomputeService(String serviceId, int windowDays) {
+        List<ServiceOffsetIndex.OffsetRange> ranges = offsetIndex.lookup(serviceId);
+        if (ranges.isEmpty()) {
+            return null;
+        }
+
+        long started = System.nanoTime();
+        long windowCutoffTimestamp = windowCutoffFor(windowDays);
+        long cutoffTimestamp = scanCutoffFor(windowCutoffTimestamp);
+        LocalDate cutoffDay = Instant.ofEpochMilli(cutoffTimestamp).atZone(ZoneOffset.UTC).toLocalDate();
+
+        ServiceActivityAccumulator accumulator = new ServiceActivityAccumulator(serviceId);
+        ActivityEventDecoder decoder = new ActivityEventDecoder(objectMapper.getFactory());
+        long scanned = 0;
+
+        Map<Integer, List<ServiceOffsetIndex.OffsetRange>> byPartition = new TreeMap<>();
+        ranges.stream()
+                .filter(range -> !range.getDay().isBefore(cutoffDay))
+                .forEach(range -> byPartition.computeIfAbsent(range.getPartition(), p -> new ArrayList<>()).add(range));
+
+        for (Map.Entry<Integer, List<ServiceOffsetIndex.OffsetRange>> entry : byPartition.entrySet()) {
+            int partitionId = entry.getKey();
+            TopicPartition partition = new TopicPartition(sourceTopic, partitionId);
+            try (org.apache.kafka.clients.consumer.KafkaConsumer<String, byte[]> consumer = createPartitionConsumer(partitionId)) {
+                long beginningOffset = consumer.beginningOffsets(List.of(partition)).getOrDefault(partition, 0L);
+                long endOffset = consumer.endOffsets(List.of(partition)).getOrDefault(partition, beginningOffset);
+
+                ObjLongConsumer<ActivityProjection> sink = (event, timestamp) -> {
+                    if (timestamp >= windowCutoffTimestamp) {
+                        accumulator.add(event);
+                    } else {
+                        accumulator.addHistory(event);
+                    }
+                };
+                // Mesma supressão de duplicatas do job, em todas as faixas lidas da partição
+                EventIdFilter eventIds = newEventIdFilter();
+
+                // Faixas ordenadas por offset: faixas sobrepostas (dias vizinhos) não são relidas
+                long position = beginningOffset;
+                for (ServiceOffsetIndex.OffsetRange range : entry.getValue()) {
+                    long from = Math.max(range.getStartOffset(), position);
+                    long to = Math.min(range.getLastOffset() + 1, endOffset);
+                    scanned += readServiceRange(consumer, partition, from, to, serviceId, cutoffTimestamp,
+                            decoder, eventIds, sink);
+                    position = Math.max(position, to);
+                }
+                long tail = Math.max(offsetIndex.indexedUntil(partitionId), position);
+                scanned += readServiceRange(consumer, partition, tail, endOffset, serviceId, cutoffTimestamp,
+                        decoder, eventIds, sink);
+            }
+        }
+
+        ServiceActivitySnapshot snapshot = snapshotGenerator.generateSnapshot(accumulator);
+        logger.info("Serviço {} recalculado: {} faixas, {} registros lidos em {} ms (classificação {})",
+                serviceId, ranges.size(), scanned, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started),
+                snapshot.getClassification());
+        return snapshot;
+    }
+
+    /**
+     * Lê [from, to) de uma partição entregando ao sink apenas os eventos do serviço,
+     * descartando os event-ids já vistos (se eventIds não for null).
+     * @return Registros lidos (de qualquer serviço)
+     */
+    private long readServiceRange(
+            org.apache.kafka.clients.consumer.KafkaConsumer<String, byte[]> consumer,
+            TopicPartition partition,
+            long from,
+            long to,
+            String serviceId,
+            long cutoffTimestamp,
+            ActivityEventDecoder decoder,
+            EventIdFilter eventIds,
+            ObjLongConsumer<ActivityProjection> sink) {
+        if (from >= to) {
+            return 0;
+        }
+        consumer.seek(partition, from);
+        long read = 0;
+        long lastProgress = System.nanoTime();
+        while (consumer.position(partition) < to) {
+            ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(pollTimeoutMs));
+            if (records.isEmpty()) {
+                if (System.nanoTime() - lastProgress > Duration.ofSeconds(idleTimeoutSeconds).toNanos()) {
+                    throw new IllegalStateException("Timeout lendo partição " + partition
+                            + ": posição " + consumer.position(partition) + " de " + to);
+                }
+                continue;
+            }
+            lastProgress = System.nanoTime();
+            for (ConsumerRecord<String, byte[]> record : records) {
+                if (record.offset() >= to) {
+                    break;
+                }
+                read++;
+                // Como no job, os ids são registrados antes do filtro de cutoff: a reextração de uma
+                // janela anterior ao cutoff também é descartada
+                if (SchemaRegistry.isEnvelope(record.value())) {
+                    ConsumerRecord<String, byte[]> retained = eventIds != null
+                            ? distinctEnvelope(record, eventIds) : record;
+                    if (retained == null || record.timestamp() < cutoffTimestamp) {
+                        continue;
+                    }
+                    try {
+                        List<ActivityProjection> events = decoder.decodeEnvelope(
+                                retained.value(), cutoffTimestamp, serviceId);
+                        events.forEach(event -> sink.accept(event, record.timestamp()));
+                    } catch (Exception e) {
+                        logger.warn("Erro ao deserializar envelope: partition={}, offset={}",
+                                record.partition(), record.offset(), e);
+                    }
+                    continue;
+                }
+                if (!serviceId.equals(record.key())) {
+                    continue;
+                }
+                if (eventIds != null && !eventIds.firstSeen(SchemaRegistry.eventIdOf(record.headers()))) {
+                    continue;
+                }
+                if (record.timestamp() < cutoffTimestamp) {
+                    continue;
+                }
+                try {
+                    ActivityProjection event = decoder.decode(record.value(), cutoffTimestamp);
+                    if (event != null && serviceId.equals(event.getServiceId())) {
+                        sink.accept(event, record.timestamp());
+                    }
+                } catch (Exception e) {
+                    logger.warn("Erro ao deserializar evento: partition={}, offset={}",
+                            record.partition(), record.offset(), e);
+                }
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Backfill: gera snapshots de várias datas as-of com uma única leitura da partição.
+     * Os eventos são acumulados em buckets diários (window.end, UTC) e cada data combina
+     * os windowDays buckets que terminam nela; classificação e snapshotDate usam a data as-of.
+     * Sem checkpoint nem spill: execução pontual, reexecutável por completo.
+     * Publica em governance.activity.snapshot.backfill (sem detecção de mudança nem tópico latest),
+     * com o mesmo limite de lotes em curso dos destinos: snapshots históricos não podem
+     * sobrescrever a classificação atual aplicada pelos consumidores de governance.activity.snapshot.
+     * @return Número de snapshots publicados
+     */
+    public long backfillPartition(
+            int partitionId, int windowDays, List<LocalDate> asOfDates) {
+        DayBucketedAccumulators buckets = new DayBucketedAccumulators(
+                asOfDates, windowDays, snapshotGenerator.getMaxHorizonDays());
+        logger.info("Iniciando backfill da partição {}: {} datas as-of ({} a {})", partitionId,
+                buckets.getAsOfDates().size(), buckets.getAsOfDates().get(0),
+                buckets.getAsOfDates().get(buckets.getAsOfDates().size() - 1));
+
+        try (org.apache.kafka.clients.consumer.KafkaConsumer<String, byte[]> consumer = createPartitionConsumer(partitionId)) {
+            long cutoffTimestamp = buckets.getCutoffTimestamp();
+            PartitionStartOffset startOffset = seekToWindowStart(consumer, partitionId, cutoffTimestamp);
+            logger.info("Offset inicial do backfill da partição {}: {}", partitionId, startOffset);
+
+            readEventsFromPartition(consumer, startOffset, cutoffTimestamp,
+                    (event, timestamp) -> buckets.add(event), newEventIdFilter(), null, null);
+
+            long published;
+            SnapshotSink.PartitionWriter kafkaWriter = batch -> CompletableFuture.allOf(batch.stream()
+                    .map(kafkaProducer::publishBackfillSnapshot)
+                    .toArray(CompletableFuture[]::new));
+            try (SnapshotBatchWriter writer = new SnapshotBatchWriter(kafkaWriter, sinkBatchSize, sinkMaxInFlightBatches)) {
+                buckets.forEachAsOfDate((asOfDate, accumulator) ->
+                        writer.accept(snapshotGenerator.generateSnapshot(accumulator, asOfDate)));
+                published = writer.finish();
+            }
+
+            logger.info("Backfill da partição {} concluído: {} serviços, {} snapshots em {} datas",
+                    partitionId, buckets.getServiceCount(), published, buckets.getAsOfDates().size());
+            return published;
+        } catch (Exception e) {
+            logger.error("Erro no backfill da partição {}", partitionId, e);
+            throw new RuntimeException("Erro no backfill da partição", e);
+        }
+    }
+
     @SuppressWarnings("unchecked")
-    private org.apache.kafka.clients.consumer.KafkaConsumer<String, String> createPartitionConsumer(int partitionId) {
-        org.apache.kafka.clients.consumer.KafkaConsumer<String, String> consumer = 
-                (org.apache.kafka.clients.consumer.KafkaConsumer<String, String>) consumerFactory.createConsumer();
-        TopicPartition partition = new TopicPartition("governance.activity.raw", partitionId);
+    private org.apache.kafka.clients.consumer.KafkaConsumer<String, byte[]> createPartitionConsumer(int partitionId) {
+        org.apache.kafka.clients.consumer.KafkaConsumer<String, byte[]> consumer = 
+                (org.apache.kafka.clients.consumer.KafkaConsumer<String, byte[]>) consumerFactory.createConsumer();
+        TopicPartition partition = new TopicPartition(sourceTopic, partitionId);
         consumer.assign(Collections.singletonList(partition));
-        consumer.seekToBeginning(Collections.singletonList(partition));
         return consumer;
     }
 
-    private List<ServiceActivityEvent> readEventsFromPartition(
-            org.apache.kafka.clients.consumer.KafkaConsumer<String, String> consumer,
+    /**
+     * Posiciona o consumer no offset salvo em um checkpoint.
+     */
+    private PartitionStartOffset resumeFromCheckpoint(
+            org.apache.kafka.clients.consumer.KafkaConsumer<String, byte[]> consumer,
+            ConsolidationCheckpoint checkpoint) {
+
+        TopicPartition partition = new TopicPartition(sourceTopic, checkpoint.getPartition());
+        long beginningOffset = consumer.beginningOffsets(Collections.singletonList(partition))
+                .getOrDefault(partition, 0L);
+        consumer.seek(partition, checkpoint.getNextOffset());
+
+        return new PartitionStartOffset(checkpoint.getPartition(), "checkpoint", checkpoint.getCutoffTimestamp(),
+                beginningOffset, checkpoint.getNextOffset(), checkpoint.getEndOffset());
+    }
+
+    /**
+     * Posiciona o consumer no início da janela de consolidação.
+     * No modo "timestamp", usa o índice de tempo do broker (offsetsForTimes) para
+     * pular direto ao primeiro registro com timestamp >= cutoff, evitando trafegar
+     * e deserializar eventos que seriam descartados.
+     * @return Relatório com offsets de início do log e de início da leitura
+     */
+    PartitionStartOffset seekToWindowStart(
+            org.apache.kafka.clients.consumer.KafkaConsumer<String, byte[]> consumer,
+            int partitionId,
             long cutoffTimestamp) {
 
-        List<ServiceActivityEvent> events = new ArrayList<>();
-        Duration timeout = Duration.ofSeconds(5);
+        TopicPartition partition = new TopicPartition(sourceTopic, partitionId);
+        List<TopicPartition> partitions = Collections.singletonList(partition);
 
-        while (true) {
-            ConsumerRecords<String, String> records = consumer.poll(timeout);
+        long beginningOffset = consumer.beginningOffsets(partitions).getOrDefault(partition, 0L);
+        long endOffset = consumer.endOffsets(partitions).getOrDefault(partition, beginningOffset);
+
+        if (!"timestamp".equalsIgnoreCase(seekMode)) {
+            consumer.seekToBeginning(partitions);
+            return new PartitionStartOffset(partitionId, seekMode, cutoffTimestamp,
+                    beginningOffset, beginningOffset, endOffset);
+        }
+
+        Map<TopicPartition, OffsetAndTimestamp> offsets =
+                consumer.offsetsForTimes(Collections.singletonMap(partition, cutoffTimestamp));
+        OffsetAndTimestamp offsetForCutoff = offsets.get(partition);
+
+        // null = nenhum registro com timestamp >= cutoff: nada a ler na janela
+        long startOffset = offsetForCutoff != null ? offsetForCutoff.offset() : endOffset;
+        consumer.seek(partition, startOffset);
+
+        return new PartitionStartOffset(partitionId, seekMode, cutoffTimestamp,
+                beginningOffset, startOffset, endOffset);
+    }
+
+    /**
+     * Lê a partição entregando cada evento ao sink (acumuladores por serviço) junto com o
+     * timestamp do registro, record a record, sem reter a lista de eventos.
+     * Os eventos são decodificados por projeção (ActivityEventDecoder): apenas os campos usados
+     * pela consolidação, descartando window.end anterior ao cutoff antes de alocar strings.
+     * A leitura é limitada ao end offset capturado no seek: termina exatamente ao
+     * atingi-lo, sem depender de polls vazios e sem seguir eventos novos.
+     * Em tópicos de rollup (compactados), cada chave serviceId:bucket pode aparecer
+     * em várias versões: apenas a última é acumulada.
+     * Periodicamente informa ao checkpointer (se houver) o offset alcançado
+     * (exceto em tópicos de rollup, cuja leitura é curta e depende da última versão por chave).
+     * O recorder (se houver) registra serviço e offset de todos os registros lidos no índice
+     * por serviço (ServiceOffsetIndex).
+     *
+     * No modo pipelined, a deserialização e o fold ocorrem nos decoders, serializados no sink;
+     * antes de cada checkpoint e ao final, todos os lotes em curso são aguardados, de modo que
+     * o estado salvo contenha exatamente os registros anteriores ao offset informado.
+     */
+    private void readEventsFromPartition(
+            org.apache.kafka.clients.consumer.KafkaConsumer<String, byte[]> consumer,
+            PartitionStartOffset startOffset,
+            long cutoffTimestamp,
+            ObjLongConsumer<ActivityProjection> sink,
+            EventIdFilter eventIds,
+            ServiceOffsetIndex.Recorder recorder,
+            LongConsumer checkpointer) {
+
+        ActivityEventDecoder decoder = new ActivityEventDecoder(objectMapper.getFactory());
+        Map<String, ActivityProjection> latestRollups = new HashMap<>();
+        Map<String, Long> latestRollupTimestamps = new HashMap<>();
+        boolean rollupSource = !"governance.activity.raw".equals(sourceTopic);
+        long eventCount = 0;
+        Duration timeout = Duration.ofMillis(pollTimeoutMs);
+
+        TopicPartition partition = new TopicPartition(sourceTopic, startOffset.getPartition());
+        long endOffset = startOffset.getEndOffset();
+        long lastProgress = System.nanoTime();
+        long lastCheckpoint = System.nanoTime();
+
+        boolean pipelined = !rollupSource && "pipelined".equalsIgnoreCase(decodeMode);
+        Deque<CompletableFuture<Void>> inFlight = new ArrayDeque<>();
+        LongAdder decodedCount = new LongAdder();
+
+        while (consumer.position(partition) < endOffset) {
+            if (pipelined && inFlight.size() >= decodeMaxInFlight) {
+                // Backpressure: sem poll() (e sem novos lotes) enquanto os decoders não liberarem um lote.
+                // O consumer é atribuído (assign), sem consumer group: bloquear aqui não causa rebalance
+                awaitOldest(inFlight, partition);
+                lastProgress = System.nanoTime();
+            }
+
+            ConsumerRecords<String, byte[]> records = consumer.poll(timeout);
 
             if (records.isEmpty()) {
-                break;
+                if (System.nanoTime() - lastProgress > Duration.ofSeconds(idleTimeoutSeconds).toNanos()) {
+                    throw new IllegalStateException("Timeout lendo partição " + partition
+                            + ": posição " + consumer.position(partition) + " de " + endOffset);
+                }
+                continue;
             }
+            lastProgress = System.nanoTime();
 
-            for (ConsumerRecord<String, String> record : records) {
-                // Filtra eventos dentro da janela de tempo
-                if (record.timestamp() >= cutoffTimestamp) {
-                    try {
-                        ServiceActivityEvent event = objectMapper.readValue(
-                                record.value(), ServiceActivityEvent.class);
-                        events.add(event);
-                    } catch (Exception e) {
-                        logger.warn("Erro ao deserializar evento: partition={}, offset={}",
-                                record.partition(), record.offset(), e);
+            if (recorder != null) {
+                // Apenas chave, offset e timestamp: não depende da deserialização
+                for (ConsumerRecord<String, byte[]> record : records) {
+                    if (record.offset() < endOffset) {
+                        recordOffset(recorder, record);
+                    }
+                }
+            }
+
+            List<ConsumerRecord<String, byte[]>> batch = eventIds != null
+                    ? distinct(records.records(partition), endOffset, eventIds)
+                    : records.records(partition);
+
+            if (pipelined) {
+                inFlight.addLast(CompletableFuture.runAsync(
+                        () -> decodeBatch(batch, endOffset, cutoffTimestamp, sink, decodedCount), decodeExecutor));
+                drainCompleted(inFlight);
+            } else {
+                for (ConsumerRecord<String, byte[]> record : batch) {
+                    // Registros produzidos após o início do job ficam para a próxima execução
+                    if (record.offset() >= endOffset) {
+                        break;
+                    }
+
+                    // Filtra eventos dentro da janela de tempo
+                    // (mantido mesmo com seek por timestamp: timestamps de CreateTime não são monotônicos)
+                    if (record.timestamp() >= cutoffTimestamp) {
+                        try {
+                            if (SchemaRegistry.isEnvelope(record.value())) {
+                                List<ActivityProjection> events = decoder.decodeEnvelope(
+                                        record.value(), cutoffTimestamp, null);
+                                events.forEach(event -> sink.accept(event, record.timestamp()));
+                                eventCount += events.size();
+                                continue;
+                            }
+                            ActivityProjection event = decoder.decode(record.value(), cutoffTimestamp);
+                            if (event == null) {
+                                continue;
+                            }
+                            if (rollupSource) {
+                                latestRollups.put(record.key(), event);
+                                latestRollupTimestamps.put(record.key(), record.timestamp());
+                            } else {
+                                sink.accept(event, record.timestamp());
+                            }
+                            eventCount++;
+                        } catch (Exception e) {
+                            logger.warn("Erro ao deserializar evento: partition={}, offset={}",
+                                    record.partition(), record.offset(), e);
+                        }
+                    }
+                }
+            }
+
+            if (checkpointer != null && !rollupSource && checkpointStore.isEnabled()
+                    && System.nanoTime() - lastCheckpoint > Duration.ofSeconds(checkpointIntervalSeconds).toNanos()) {
+                awaitAll(inFlight);
+                checkpointer.accept(Math.min(consumer.position(partition), endOffset));
+                lastCheckpoint = System.nanoTime();
+            }
+        }
+
+        awaitAll(inFlight);
+        latestRollups.forEach((key, event) -> sink.accept(event, latestRollupTimestamps.get(key)));
+
+        logger.debug("{} eventos lidos da partição {}", eventCount + decodedCount.sum(), partition);
+        if (eventIds != null) {
+            // Com filtro compartilhado pelas sub-faixas, os totais são os acumulados na partição
+            synchronized (eventIds) {
+                if (eventIds.getDuplicates() > 0 || eventIds.getOverflow() > 0) {
+                    logger.info("Partição {}: {} eventos duplicados suprimidos ({} ids distintos, {} além do limite)",
+                            partition, eventIds.getDuplicates(), eventIds.size(), eventIds.getOverflow());
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove do lote os registros cujo event-id já foi visto na leitura da partição,
+     * antes da deserialização (o header basta). Registros sem header sempre passam.
+     * Envelopes trazem os event-ids na primeira coluna: são descartados se todos já foram
+     * vistos e reescritos apenas com os eventos novos se parte deles já foi vista.
+     * O lote é cortado no endOffset da faixa: registros além dele pertencem à próxima
+     * sub-faixa (ou à próxima execução) e não podem ser registrados no filtro compartilhado.
+     */
+    static List<ConsumerRecord<String, byte[]>> distinct(
+            List<ConsumerRecord<String, byte[]>> records, long endOffset, EventIdFilter eventIds) {
+        List<ConsumerRecord<String, byte[]>> distinct = new ArrayList<>(records.size());
+        // Um lock por lote: o filtro pode ser compartilhado por sub-faixas lidas em paralelo
+        synchronized (eventIds) {
+            for (ConsumerRecord<String, byte[]> record : records) {
+                if (record.offset() >= endOffset) {
+                    break;
+                }
+                if (SchemaRegistry.isEnvelope(record.value())) {
+                    ConsumerRecord<String, byte[]> retained = distinctEnvelope(record, eventIds);
+                    if (retained != null) {
+                        distinct.add(retained);
+                    }
+                } else if (eventIds.firstSeen(SchemaRegistry.eventIdOf(record.headers()))) {
+                    distinct.add(record);
+                }
+            }
+        }
+        return distinct;
+    }
+
+    private static ConsumerRecord<String, byte[]> distinctEnvelope(
+            ConsumerRecord<String, byte[]> record, EventIdFilter eventIds) {
+        try {
+            long[] ids = SchemaRegistry.envelopeEventIds(record.value());
+            boolean[] keep = new boolean[ids.length];
+            int kept = 0;
+            for (int i = 0; i < ids.length; i++) {
+                keep[i] = eventIds.firstSeen(ids[i]);
+                kept += keep[i] ? 1 : 0;
+            }
+            if (kept == ids.length) {
+                return record;
+            }
+            if (kept == 0) {
+                return null;
+            }
+            byte[] retained = SchemaRegistry.retainEnvelope(record.value(), keep);
+            return new ConsumerRecord<>(record.topic(), record.partition(), record.offset(), record.timestamp(),
+                    record.timestampType(), record.serializedKeySize(), retained.length, record.key(), retained,
+                    record.headers(), record.leaderEpoch());
+        } catch (IOException e) {
+            // Envelope inválido segue adiante: o decoder registra o erro com partição e offset
+            return record;
+        }
+    }
+
+    /**
+     * Registra o offset no índice por serviço: pela chave ou, em envelopes (sem chave),
+     * por cada service id da primeira coluna.
+     */
+    private static void recordOffset(ServiceOffsetIndex.Recorder recorder, ConsumerRecord<String, byte[]> record) {
+        if (!SchemaRegistry.isEnvelope(record.value())) {
+            recorder.record(record.key(), record.offset(), record.timestamp());
+            return;
+        }
+        try {
+            for (String serviceId : new LinkedHashSet<>(SchemaRegistry.envelopeServiceIds(record.value()))) {
+                recorder.record(serviceId, record.offset(), record.timestamp());
+            }
+        } catch (IOException e) {
+            logger.warn("Envelope inválido fora do índice de offsets: partition={}, offset={}",
+                    record.partition(), record.offset(), e);
+        }
+    }
+
+    /**
+     * Deserializa um lote em um decoder e o incorpora ao sink.
+     * O fold é serializado no sink (acumuladores não são thread-safe), mas é barato
+     * comparado ao parse, que roda em paralelo entre os lotes.
+     */
+    private void decodeBatch(
+            List<ConsumerRecord<String, byte[]>> batch,
+            long endOffset,
+            long cutoffTimestamp,
+            ObjLongConsumer<ActivityProjection> sink,
+            LongAdder decodedCount) {
+
+        ActivityEventDecoder decoder = new ActivityEventDecoder(objectMapper.getFactory());
+        List<ActivityProjection> events = new ArrayList<>(batch.size());
+        long[] timestamps = new long[batch.size()];
+        for (ConsumerRecord<String, byte[]> record : batch) {
+            if (record.offset() >= endOffset) {
+                break;
+            }
+            if (record.timestamp() >= cutoffTimestamp) {
+                try {
+                    if (SchemaRegistry.isEnvelope(record.value())) {
+                        for (ActivityProjection event : decoder.decodeEnvelope(
+                                record.value(), cutoffTimestamp, null)) {
+                            timestamps = ensureCapacity(timestamps, events.size());
+                            timestamps[events.size()] = record.timestamp();
+                            events.add(event);
+                        }
+                        continue;
+                    }
+                    ActivityProjection event = decoder.decode(record.value(), cutoffTimestamp);
+                    if (event == null) {
+                        continue;
                     }
-                } else {
-                    // Eventos mais antigos que a janela podem ser ignorados
-                    // (otimização: poderia usar seek para pular direto)
+                    timestamps = ensureCapacity(timestamps, events.size());
+                    timestamps[events.size()] = record.timestamp();
+                    events.add(event);
+                } catch (Exception e) {
+                    logger.warn("Erro ao deserializar evento: partition={}, offset={}",
+                            record.partition(), record.offset(), e);
                 }
             }
         }
 
-        return events;
+        synchronized (sink) {
+            for (int i = 0; i < events.size(); i++) {
+                sink.accept(events.get(i), timestamps[i]);
+            }
+        }
+        decodedCount.add(events.size());
+    }
+
+    // Envelopes expandem um registro em vários eventos: o lote pode exceder o número de registros
+    private static long[] ensureCapacity(long[] timestamps, int size) {
+        return size < timestamps.length ? timestamps : Arrays.copyOf(timestamps, Math.max(16, size * 2));
+    }
+
+    /**
+     * Aguarda o lote mais antigo em deserialização (propaga falhas do fold, ex.: erro de spill).
+     */
+    private void awaitOldest(Deque<CompletableFuture<Void>> inFlight, TopicPartition partition) {
+        CompletableFuture<Void> oldest = inFlight.pollFirst();
+        try {
+            oldest.get(idleTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timeout aguardando deserialização de lote da partição " + partition, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrompido aguardando deserialização da partição " + partition, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Erro ao incorporar lote da partição " + partition, e.getCause());
+        }
+    }
+
+    /**
+     * Remove os lotes já concluídos, propagando a falha de qualquer um deles
+     * (um lote com erro não pode sair da fila sem ser observado).
+     */
+    private static void drainCompleted(Deque<CompletableFuture<Void>> inFlight) {
+        for (Iterator<CompletableFuture<Void>> it = inFlight.iterator(); it.hasNext(); ) {
+            CompletableFuture<Void> future = it.next();
+            if (future.isDone()) {
+                future.join();
+                it.remove();
+            }
+        }
+    }
+
+    private static void awaitAll(Deque<CompletableFuture<Void>> inFlight) {
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).join();
+        inFlight.clear();
     }
 }
 
@@ -0,0 +1,109 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Acumuladores por serviço e por dia (UTC, pelo window.end do evento), usados no backfill.
+ *
+ * Uma única leitura da partição cobre a união das janelas de todas as datas as-of:
+ * [primeira data - (dias - 1), última data], com dias = max(windowDays, maior horizonte).
+ * O estado de cada data é a combinação dos windowDays buckets diários que terminam nela,
+ * mais os buckets anteriores (até o maior horizonte) apenas como histórico diário,
+ * sem reler o tópico por data.
+ */
+public class DayBucketedAccumulators {
+
+    private final List<LocalDate> asOfDates;
+    private final int windowDays;
+    private final int historyDays;
+    private final long firstDay;
+    private final long lastDay;
+    private final Map<String, NavigableMap<Long, ServiceActivityAccumulator>> buckets = new HashMap<>();
+
+    public DayBucketedAccumulators(List<LocalDate> asOfDates, int windowDays, int maxHorizonDays) {
+        if (asOfDates.isEmpty()) {
+            throw new IllegalArgumentException("Nenhuma data as-of informada");
+        }
+        this.asOfDates = asOfDates.stream().sorted().distinct().toList();
+        this.windowDays = windowDays;
+        this.historyDays = Math.max(windowDays, maxHorizonDays);
+        this.firstDay = this.asOfDates.get(0).toEpochDay() - (historyDays - 1);
+        this.lastDay = this.asOfDates.get(this.asOfDates.size() - 1).toEpochDay();
+    }
+
+    /**
+     * Timestamp (epoch millis) a partir do qual a partição precisa ser lida.
+     */
+    public long getCutoffTimestamp() {
+        return LocalDate.ofEpochDay(firstDay).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Incorpora um evento ao bucket do seu dia. Eventos fora da união das janelas são ignorados.
+     */
+    public void add(ServiceActivityEvent event) {
+        if (event.getServiceId() == null || event.getWindow() == null || event.getWindow().getEnd() == null) {
+            return;
+        }
+        long day = event.getWindow().getEnd().atOffset(ZoneOffset.UTC).toLocalDate().toEpochDay();
+        if (day < firstDay || day > lastDay) {
+            return;
+        }
+        buckets.computeIfAbsent(event.getServiceId(), serviceId -> new TreeMap<>())
+                .computeIfAbsent(day, d -> new ServiceActivityAccumulator(event.getServiceId()))
+                .add(event);
+    }
+
+    public void add(ActivityProjection event) {
+        if (!event.hasWindowEnd()) {
+            return;
+        }
+        long day = Math.floorDiv(event.getWindowEndMillis(), 86_400_000L);
+        if (day < firstDay || day > lastDay) {
+            return;
+        }
+        buckets.computeIfAbsent(event.getServiceId(), serviceId -> new TreeMap<>())
+                .computeIfAbsent(day, d -> new ServiceActivityAccumulator(event.getServiceId()))
+                .add(event);
+    }
+
+    /**
+     * Entrega, para cada data as-of, o acumulador de cada serviço com atividade
+     * nos windowDays dias que terminam naquela data (com o histórico diário dos horizontes).
+     */
+    public void forEachAsOfDate(BiConsumer<LocalDate, ServiceActivityAccumulator> action) {
+        for (LocalDate asOfDate : asOfDates) {
+            long to = asOfDate.toEpochDay();
+            long from = to - (windowDays - 1);
+            long historyFrom = to - (historyDays - 1);
+
+            buckets.forEach((serviceId, days) -> {
+                NavigableMap<Long, ServiceActivityAccumulator> window = days.subMap(from, true, to, true);
+                if (window.isEmpty()) {
+                    return;
+                }
+                ServiceActivityAccumulator merged = new ServiceActivityAccumulator(serviceId);
+                window.values().forEach(merged::merge);
+                days.subMap(historyFrom, true, from, false).values().forEach(merged::mergeHistory);
+                action.accept(asOfDate, merged);
+            });
+        }
+    }
+
+    public List<LocalDate> getAsOfDates() {
+        return asOfDates;
+    }
+
+    public int getServiceCount() {
+        return buckets.size();
+    }
+}
@@ -4,13 +4,14 @@ import com.codingbetter.schemas.v1.ServiceActivityEvent;
 import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Motor de decisão que gera snapshots consolidados a partir de eventos.
@@ -23,6 +24,10 @@ public class DecisionEngine {
 
     private final TrafficClassifier trafficClassifier;
 
+    // Horizontes das métricas multi-janela (dias)
+    @Value("${consolidation.horizons.days:1,7,30,90}")
+    private int[] horizonDays = {1, 7, 30, 90};
+
     public DecisionEngine(TrafficClassifier trafficClassifier) {
         this.trafficClassifier = trafficClassifier;
     }
@@ -34,34 +39,55 @@ public class DecisionEngine {
     public ServiceActivitySnapshot generateSnapshot(String serviceId, List<ServiceActivityEvent> events) {
         logger.debug("Gerando snapshot para serviço: {} ({} eventos)", serviceId, events.size());
 
-        if (events.isEmpty()) {
-            return createEmptySnapshot(serviceId);
-        }
+        ServiceActivityAccumulator accumulator = new ServiceActivityAccumulator(serviceId);
+        events.forEach(accumulator::add);
+        return generateSnapshot(accumulator);
+    }
+
+    /**
+     * Gera snapshot consolidado a partir do acumulador de um serviço.
+     * Mesmas regras da versão baseada em lista, sem reprocessar os eventos.
+     */
+    public ServiceActivitySnapshot generateSnapshot(ServiceActivityAccumulator accumulator) {
+        return generateSnapshot(accumulator, Instant.now(), LocalDate.now());
+    }
 
-        // Calcula métricas consolidadas
-        long totalActivity = events.stream()
-                .mapToLong(ServiceActivityEvent::getActivityCount)
-                .sum();
+    /**
+     * Gera o snapshot de uma data de referência (as-of) passada.
+     * A referência é o fim do dia (UTC): o resultado é o que o job daquele dia teria calculado
+     * com todos os eventos do dia disponíveis.
+     */
+    public ServiceActivitySnapshot generateSnapshot(ServiceActivityAccumulator accumulator, LocalDate asOfDate) {
+        return generateSnapshot(accumulator, referenceTimeOf(asOfDate), asOfDate);
+    }
+
+    /**
+     * Gera snapshot com relógio explícito.
+     * @param referenceTime Instante contra o qual lastSeen é classificado
+     * @param snapshotDate Data registrada no snapshot
+     */
+    public ServiceActivitySnapshot generateSnapshot(ServiceActivityAccumulator accumulator,
+                                                   Instant referenceTime, LocalDate snapshotDate) {
+        String serviceId = accumulator.getServiceId();
+
+        if (accumulator.isEmpty()) {
+            return createEmptySnapshot(serviceId, snapshotDate);
+        }
 
-        Instant lastSeen = events.stream()
-                .map(e -> e.getWindow().getEnd())
-                .max(Instant::compareTo)
-                .orElse(Instant.now());
+        // Métricas consolidadas
+        long totalActivity = accumulator.getTotalActivity();
 
-        // Consolida callers (sem duplicatas)
-        Set<String> allCallers = events.stream()
-                .filter(e -> e.getCallers() != null)
-                .flatMap(e -> e.getCallers().stream())
-                .collect(Collectors.toSet());
+        Instant lastSeen = accumulator.getLastSeen() != null
+                ? accumulator.getLastSeen()
+                : referenceTime;
 
         // Determina confiança (usa o mais alto)
-        ServiceActivityEvent.ConfidenceLevel maxConfidence = events.stream()
-                .map(ServiceActivityEvent::getConfidenceLevel)
-                .max((a, b) -> Integer.compare(a.ordinal(), b.ordinal()))
-                .orElse(ServiceActivityEvent.ConfidenceLevel.LOW);
+        ServiceActivityEvent.ConfidenceLevel maxConfidence = accumulator.getMaxConfidence() != null
+                ? accumulator.getMaxConfidence()
+                : ServiceActivityEvent.ConfidenceLevel.LOW;
 
         // Classifica tráfego
-        ServiceActivitySnapshot.Classification classification = trafficClassifier.classify(lastSeen);
+        ServiceActivitySnapshot.Classification classification = trafficClassifier.classify(lastSeen, referenceTime);
 
         // Cria snapshot
         ServiceActivitySnapshot snapshot = new ServiceActivitySnapshot();
@@ -69,10 +95,11 @@ public class DecisionEngine {
         snapshot.setReceivesTraffic(totalActivity > 0);
         snapshot.setTrafficVolume(totalActivity);
         snapshot.setLastSeen(lastSeen);
-        snapshot.setActiveCallers(List.copyOf(allCallers));
+        snapshot.setActiveCallers(accumulator.getCallerList());
         snapshot.setConfidenceLevel(maxConfidence);
         snapshot.setClassification(classification);
-        snapshot.setSnapshotDate(LocalDate.now());
+        snapshot.setSnapshotDate(snapshotDate);
+        applyHorizons(snapshot, accumulator, referenceTime);
 
         logger.debug("Snapshot gerado: serviceId={}, classification={}, trafficVolume={}",
                 serviceId, classification, totalActivity);
@@ -80,7 +107,51 @@ public class DecisionEngine {
         return snapshot;
     }
 
-    private ServiceActivitySnapshot createEmptySnapshot(String serviceId) {
+    /**
+     * Preenche volume/callers por horizonte e a tendência diária a partir dos buckets diários.
+     * Os horizontes cobrem dias UTC completos: terminam no dia anterior ao da referência
+     * (para o job diário, ontem; para o backfill, a própria data as-of).
+     */
+    private void applyHorizons(ServiceActivitySnapshot snapshot, ServiceActivityAccumulator accumulator,
+                               Instant referenceTime) {
+        long lastDay = LocalDate.ofInstant(referenceTime, ZoneOffset.UTC).toEpochDay() - 1;
+
+        List<ServiceActivitySnapshot.ActivityHorizon> horizons = new ArrayList<>(horizonDays.length);
+        for (int days : horizonDays) {
+            long firstDay = lastDay - days + 1;
+            horizons.add(new ServiceActivitySnapshot.ActivityHorizon(days,
+                    accumulator.getActivityBetween(firstDay, lastDay),
+                    accumulator.getDistinctCallersBetween(firstDay, lastDay)));
+        }
+        snapshot.setActivityHorizons(horizons);
+
+        long lastDayVolume = accumulator.getActivityBetween(lastDay, lastDay);
+        long previousDayVolume = accumulator.getActivityBetween(lastDay - 1, lastDay - 1);
+        Double changeRatio = previousDayVolume > 0
+                ? (double) (lastDayVolume - previousDayVolume) / previousDayVolume
+                : null;
+        snapshot.setDailyTrend(new ServiceActivitySnapshot.DailyTrend(lastDayVolume, previousDayVolume, changeRatio));
+    }
+
+    /**
+     * Maior horizonte configurado: quantos dias antes da referência precisam ser lidos.
+     */
+    public int getMaxHorizonDays() {
+        int max = 0;
+        for (int days : horizonDays) {
+            max = Math.max(max, days);
+        }
+        return max;
+    }
+
+    /**
+     * Instante de referência de uma data as-of: início do dia seguinte (UTC).
+     */
+    public static Instant referenceTimeOf(LocalDate asOfDate) {
+        return asOfDate.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private ServiceActivitySnapshot createEmptySnapshot(String serviceId, LocalDate snapshotDate) {
         ServiceActivitySnapshot snapshot = new ServiceActivitySnapshot();
         snapshot.setServiceId(serviceId);
         snapshot.setReceivesTraffic(false);
@@ -89,7 +160,7 @@ public class DecisionEngine {
         snapshot.setActiveCallers(List.of());
         snapshot.setConfidenceLevel(ServiceActivityEvent.ConfidenceLevel.LOW);
         snapshot.setClassification(ServiceActivitySnapshot.Classification.NO_TRAFFIC);
-        snapshot.setSnapshotDate(LocalDate.now());
+        snapshot.setSnapshotDate(snapshotDate);
         return snapshot;
     }
 }
@@ -0,0 +1,93 @@
+package com.codingbetter.consolidation;
+
+/**
+ * Conjunto exato e limitado de ids de evento (header "event-id") já vistos em uma leitura
+ * de partição. Suprime os eventos republicados para a mesma janela (reextração manual,
+ * backfill, execuções agendadas sobrepostas), que de outra forma somariam activity.count
+ * em dobro.
+ *
+ * Tabela de endereçamento aberto de longs primitivos (8 bytes por slot, sem boxing),
+ * dobrada sob demanda até maxEntries. Cheio o conjunto, os ids novos passam sem registro:
+ * um evento duplicado pode escapar, mas um evento legítimo nunca é descartado.
+ * Um único conjunto cobre toda a partição: é compartilhado pelas sub-faixas de uma partição
+ * quente e reconstruído na retomada de um checkpoint, de modo que duplicatas separadas por
+ * divisão ou por retomada também são descartadas.
+ * Não é thread-safe: sub-faixas lidas em paralelo sincronizam no filtro a cada lote.
+ */
+public class EventIdFilter {
+
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private final int maxEntries;
+    private long[] slots = new long[INITIAL_CAPACITY];
+    private int size;
+    private long duplicates;
+    private long overflow;
+
+    public EventIdFilter(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Registra o id e indica se é a primeira ocorrência.
+     * Id 0 (registro sem header) sempre passa.
+     */
+    public boolean firstSeen(long id) {
+        if (id == 0) {
+            return true;
+        }
+        int index = find(slots, id);
+        if (slots[index] == id) {
+            duplicates++;
+            return false;
+        }
+        if (size >= maxEntries) {
+            overflow++;
+            return true;
+        }
+        if ((size + 1) * 4L > slots.length * 3L) {
+            grow();
+            index = find(slots, id);
+        }
+        slots[index] = id;
+        size++;
+        return true;
+    }
+
+    // Sondagem linear: slot com o id ou o primeiro slot vazio (0)
+    private static int find(long[] table, long id) {
+        int mask = table.length - 1;
+        int index = (int) mix(id) & mask;
+        while (table[index] != 0 && table[index] != id) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void grow() {
+        long[] grown = new long[slots.length * 2];
+        for (long id : slots) {
+            if (id != 0) {
+                grown[find(grown, id)] = id;
+            }
+        }
+        slots = grown;
+    }
+
+    // Os ids já são prefixos de SHA-256; o mix apenas espalha os bits altos nos baixos
+    private static long mix(long id) {
+        return id ^ (id >>> 32) ^ (id >>> 17);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getOverflow() {
+        return overflow;
+    }
+}
@@ -0,0 +1,113 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Destino em arquivo local: um arquivo por partição em {directory}/{runId}/.
+ * - ndjson: um snapshot JSON por linha (partition-N.ndjson)
+ * - binary: registros Smile (JSON binário) prefixados pelo tamanho (int), em partition-N.smile
+ *
+ * Os lotes são gravados em ordem fora da thread do worker (encadeados por partição)
+ * e o lote é confirmado após o flush do buffer.
+ */
+@Component
+@ConditionalOnProperty(name = "consolidation.sinks.file.enabled", havingValue = "true")
+public class FileSnapshotSink implements SnapshotSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileSnapshotSink.class);
+
+    private final ObjectWriter jsonWriter;
+    private final ObjectWriter smileWriter;
+    private final ExecutorService ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${consolidation.sinks.file.directory:${java.io.tmpdir}/consolidation-snapshots}")
+    private String directory = System.getProperty("java.io.tmpdir") + "/consolidation-snapshots";
+
+    // ndjson | binary
+    @Value("${consolidation.sinks.file.format:ndjson}")
+    private String format = "ndjson";
+
+    public FileSnapshotSink(ObjectMapper objectMapper) {
+        this.jsonWriter = objectMapper.writerFor(ServiceActivitySnapshot.class);
+        this.smileWriter = objectMapper.copyWith(new SmileFactory()).writerFor(ServiceActivitySnapshot.class);
+    }
+
+    @Override
+    public String getName() {
+        return "file:" + format;
+    }
+
+    @Override
+    public PartitionWriter open(String runId, int partition) throws IOException {
+        boolean binary = "binary".equalsIgnoreCase(format);
+        Path runDir = Files.createDirectories(Path.of(directory, runId));
+        Path file = runDir.resolve("partition-" + partition + (binary ? ".smile" : ".ndjson"));
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+        logger.debug("Gravando snapshots da partição {} em {}", partition, file);
+        return new FileWriter(out, binary);
+    }
+
+    private final class FileWriter implements PartitionWriter {
+
+        private final OutputStream out;
+        private final DataOutputStream data;
+        private final boolean binary;
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        private FileWriter(OutputStream out, boolean binary) {
+            this.out = out;
+            this.data = new DataOutputStream(out);
+            this.binary = binary;
+        }
+
+        @Override
+        public synchronized CompletableFuture<Void> write(List<ServiceActivitySnapshot> batch) {
+            tail = tail.thenRunAsync(() -> writeBatch(batch), ioExecutor);
+            return tail;
+        }
+
+        private void writeBatch(List<ServiceActivitySnapshot> batch) {
+            try {
+                for (ServiceActivitySnapshot snapshot : batch) {
+                    if (binary) {
+                        byte[] record = smileWriter.writeValueAsBytes(snapshot);
+                        data.writeInt(record.length);
+                        data.write(record);
+                    } else {
+                        out.write(jsonWriter.writeValueAsBytes(snapshot));
+                        out.write('\n');
+                    }
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            tail.exceptionally(error -> null).join();
+            out.close();
+        }
+    }
+}
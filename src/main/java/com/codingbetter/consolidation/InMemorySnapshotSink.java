@@ -0,0 +1,50 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Store em memória com o último snapshot de cada serviço, alimentado diretamente pela
+ * consolidação (sem replay do tópico de snapshots). Indicado para consultas locais e testes.
+ */
+@Component
+@ConditionalOnProperty(name = "consolidation.sinks.memory.enabled", havingValue = "true")
+public class InMemorySnapshotSink implements SnapshotSink {
+
+    private final Map<String, ServiceActivitySnapshot> snapshots = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public PartitionWriter open(String runId, int partition) {
+        return batch -> {
+            batch.forEach(snapshot -> snapshots.put(snapshot.getServiceId(), snapshot));
+            return CompletableFuture.completedFuture(null);
+        };
+    }
+
+    /**
+     * Último snapshot do serviço, ou null se ainda não consolidado.
+     */
+    public ServiceActivitySnapshot get(String serviceId) {
+        return snapshots.get(serviceId);
+    }
+
+    public Collection<ServiceActivitySnapshot> getAll() {
+        return Collections.unmodifiableCollection(snapshots.values());
+    }
+
+    public int size() {
+        return snapshots.size();
+    }
+}
@@ -0,0 +1,40 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Destino Kafka: governance.activity.snapshot (+ latest compactado), com detecção de mudança
+ * (SnapshotChangePublisher). Os envios de um lote seguem em paralelo no produtor (batching por linger).
+ */
+@Component
+@ConditionalOnProperty(name = "consolidation.sinks.kafka.enabled", havingValue = "true", matchIfMissing = true)
+public class KafkaSnapshotSink implements SnapshotSink {
+
+    private final SnapshotChangePublisher snapshotPublisher;
+
+    public KafkaSnapshotSink(SnapshotChangePublisher snapshotPublisher) {
+        this.snapshotPublisher = snapshotPublisher;
+    }
+
+    @Override
+    public String getName() {
+        return "kafka";
+    }
+
+    @Override
+    public PartitionWriter open(String runId, int partition) {
+        snapshotPublisher.beginRun(runId);
+        return this::write;
+    }
+
+    private CompletableFuture<Void> write(List<ServiceActivitySnapshot> batch) {
+        return CompletableFuture.allOf(batch.stream()
+                .map(snapshotPublisher::publish)
+                .toArray(CompletableFuture[]::new));
+    }
+}
@@ -0,0 +1,80 @@
+package com.codingbetter.consolidation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Faixa de offsets [startOffset, endOffset) de uma partição a consolidar, com os cutoffs
+ * fixados no planejamento. Partições quentes são divididas em sub-faixas lidas em paralelo
+ * (ConsolidationCoordinator): todas compartilham os mesmos cutoffs, de modo que a combinação
+ * dos acumuladores parciais equivale à leitura da partição inteira.
+ */
+public class PartitionRange {
+
+    private final int partition;
+    private final long cutoffTimestamp;
+    private final long windowCutoffTimestamp;
+    private final long startOffset;
+    private final long endOffset;
+
+    public PartitionRange(int partition, long cutoffTimestamp, long windowCutoffTimestamp,
+                          long startOffset, long endOffset) {
+        this.partition = partition;
+        this.cutoffTimestamp = cutoffTimestamp;
+        this.windowCutoffTimestamp = windowCutoffTimestamp;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+    }
+
+    /**
+     * Divide a faixa em até {@code parts} sub-faixas contíguas de tamanho semelhante.
+     */
+    public List<PartitionRange> split(int parts) {
+        long records = getRecordCount();
+        int count = (int) Math.max(1, Math.min(parts, records));
+        List<PartitionRange> ranges = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long from = startOffset + records * i / count;
+            long to = startOffset + records * (i + 1) / count;
+            ranges.add(new PartitionRange(partition, cutoffTimestamp, windowCutoffTimestamp, from, to));
+        }
+        return ranges;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    /**
+     * Cutoff da leitura (janela ou maior horizonte, o que for mais antigo).
+     */
+    public long getCutoffTimestamp() {
+        return cutoffTimestamp;
+    }
+
+    /**
+     * Cutoff da janela de consolidação: eventos anteriores alimentam apenas os horizontes.
+     */
+    public long getWindowCutoffTimestamp() {
+        return windowCutoffTimestamp;
+    }
+
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    public long getRecordCount() {
+        return Math.max(0, endOffset - startOffset);
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionRange{partition=" + partition +
+                ", startOffset=" + startOffset +
+                ", endOffset=" + endOffset + "}";
+    }
+}
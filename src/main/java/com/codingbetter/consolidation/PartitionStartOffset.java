@@ -0,0 +1,75 @@
+package com.codingbetter.consolidation;
+
+/**
+ * Relatório do posicionamento inicial de um worker em uma partição.
+ * Indica quantos registros foram pulados pelo seek e quantos restam para leitura.
+ */
+public class PartitionStartOffset {
+
+    private final int partition;
+    private final String seekMode;
+    private final long cutoffTimestamp;
+    private final long beginningOffset;
+    private final long startOffset;
+    private final long endOffset;
+
+    public PartitionStartOffset(int partition, String seekMode, long cutoffTimestamp,
+                                long beginningOffset, long startOffset, long endOffset) {
+        this.partition = partition;
+        this.seekMode = seekMode;
+        this.cutoffTimestamp = cutoffTimestamp;
+        this.beginningOffset = beginningOffset;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public String getSeekMode() {
+        return seekMode;
+    }
+
+    public long getCutoffTimestamp() {
+        return cutoffTimestamp;
+    }
+
+    public long getBeginningOffset() {
+        return beginningOffset;
+    }
+
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Registros fora da janela que não serão lidos.
+     */
+    public long getSkippedRecords() {
+        return startOffset - beginningOffset;
+    }
+
+    /**
+     * Registros a serem lidos (no momento do seek).
+     */
+    public long getRecordsToRead() {
+        return Math.max(0, endOffset - startOffset);
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionStartOffset{partition=" + partition +
+                ", seekMode=" + seekMode +
+                ", cutoffTimestamp=" + cutoffTimestamp +
+                ", beginningOffset=" + beginningOffset +
+                ", startOffset=" + startOffset +
+                ", endOffset=" + endOffset +
+                ", skippedRecords=" + getSkippedRecords() +
+                ", recordsToRead=" + getRecordsToRead() + "}";
+    }
+}
@@ -0,0 +1,369 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.normalization.ServiceIdDictionary;
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Acumulador incremental de atividade de um serviço.
+ * Cada evento é incorporado uma única vez (fold), sem reter a lista de eventos,
+ * de modo que a memória da consolidação escala com o número de serviços.
+ * Acumuladores do mesmo serviço podem ser combinados via {@link #merge}.
+ *
+ * Além do fold da janela de consolidação, mantém volume e callers por dia (UTC, window.end),
+ * dos quais saem as métricas por horizonte (1/7/30/90 dias) e a tendência diária.
+ * Eventos anteriores à janela, lidos apenas para os horizontes longos, entram via
+ * {@link #addHistory} e não afetam o fold da janela.
+ *
+ * Callers são mantidos como bitmaps sobre o {@link ServiceIdDictionary} corrente na criação
+ * do acumulador: merges e uniões por horizonte são ORs de bitmaps, e strings só são materializadas
+ * no snapshot e na serialização (que continua gravando os service.ids). O merge com um acumulador
+ * de outro dicionário (após a troca do corrente) traduz os ids pelo service.id.
+ */
+public class ServiceActivityAccumulator {
+
+    private static final byte FORMAT_VERSION_V1 = 1;
+    private static final byte FORMAT_VERSION = 2;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final String serviceId;
+    private final ServiceIdDictionary dictionary = ServiceIdDictionary.current();
+    private long totalActivity;
+    private Instant lastSeen;
+    private final RoaringBitmap callers = new RoaringBitmap();
+    private ServiceActivityEvent.ConfidenceLevel maxConfidence;
+    private long eventCount;
+    private final NavigableMap<Long, DayActivity> days = new TreeMap<>();
+    private long estimatedSizeBytes;
+
+    public ServiceActivityAccumulator(String serviceId) {
+        this.serviceId = serviceId;
+        this.estimatedSizeBytes = 160 + 2L * serviceId.length();
+    }
+
+    /**
+     * Incorpora um evento ao acumulador.
+     */
+    public ServiceActivityAccumulator add(ServiceActivityEvent event) {
+        if (event.getActivityCount() != null) {
+            totalActivity += event.getActivityCount();
+        }
+
+        if (event.getWindow() != null && event.getWindow().getEnd() != null) {
+            updateLastSeen(event.getWindow().getEnd());
+        }
+
+        if (event.getCallers() != null) {
+            addCallers(callers, event.getCallers());
+        }
+
+        updateConfidence(event.getConfidenceLevel());
+        eventCount++;
+        addToDay(event);
+        return this;
+    }
+
+    /**
+     * Incorpora um evento projetado (ActivityEventDecoder), com as mesmas regras de {@link #add(ServiceActivityEvent)}.
+     * lastSeen tem precisão de milissegundos.
+     */
+    public ServiceActivityAccumulator add(ActivityProjection event) {
+        totalActivity += event.getActivityCount();
+
+        if (event.hasWindowEnd() && (lastSeen == null || event.getWindowEndMillis() > lastSeen.toEpochMilli())) {
+            lastSeen = Instant.ofEpochMilli(event.getWindowEndMillis());
+        }
+
+        addCallers(callers, event.getCallers());
+        updateConfidence(event.getConfidenceLevel());
+        eventCount++;
+        addHistory(event);
+        return this;
+    }
+
+    /**
+     * Incorpora um evento anterior à janela de consolidação apenas aos buckets diários
+     * (horizontes mais longos que a janela).
+     */
+    public ServiceActivityAccumulator addHistory(ServiceActivityEvent event) {
+        addToDay(event);
+        return this;
+    }
+
+    public ServiceActivityAccumulator addHistory(ActivityProjection event) {
+        if (event.hasWindowEnd()) {
+            DayActivity bucket = dayBucket(Math.floorDiv(event.getWindowEndMillis(), MILLIS_PER_DAY));
+            bucket.activity += event.getActivityCount();
+            addCallers(bucket.callers, event.getCallers());
+        }
+        return this;
+    }
+
+    private void addToDay(ServiceActivityEvent event) {
+        if (event.getWindow() == null || event.getWindow().getEnd() == null) {
+            return;
+        }
+        long day = event.getWindow().getEnd().atOffset(ZoneOffset.UTC).toLocalDate().toEpochDay();
+        DayActivity bucket = dayBucket(day);
+        if (event.getActivityCount() != null) {
+            bucket.activity += event.getActivityCount();
+        }
+        if (event.getCallers() != null) {
+            addCallers(bucket.callers, event.getCallers());
+        }
+    }
+
+    /**
+     * Combina outro acumulador do mesmo serviço neste.
+     * Operação associativa e comutativa: o resultado independe da ordem de merge.
+     */
+    public ServiceActivityAccumulator merge(ServiceActivityAccumulator other) {
+        if (!serviceId.equals(other.serviceId)) {
+            throw new IllegalArgumentException("Acumuladores de serviços diferentes: "
+                    + serviceId + " != " + other.serviceId);
+        }
+
+        totalActivity += other.totalActivity;
+        if (other.lastSeen != null) {
+            updateLastSeen(other.lastSeen);
+        }
+        orCallers(callers, other.callers, other.dictionary);
+        updateConfidence(other.maxConfidence);
+        eventCount += other.eventCount;
+        mergeDays(other);
+        return this;
+    }
+
+    /**
+     * Combina apenas os buckets diários de outro acumulador (dias anteriores à janela).
+     */
+    public ServiceActivityAccumulator mergeHistory(ServiceActivityAccumulator other) {
+        if (!serviceId.equals(other.serviceId)) {
+            throw new IllegalArgumentException("Acumuladores de serviços diferentes: "
+                    + serviceId + " != " + other.serviceId);
+        }
+        mergeDays(other);
+        return this;
+    }
+
+    private void mergeDays(ServiceActivityAccumulator other) {
+        other.days.forEach((day, activity) -> {
+            DayActivity bucket = dayBucket(day);
+            bucket.activity += activity.activity;
+            orCallers(bucket.callers, activity.callers, other.dictionary);
+        });
+    }
+
+    private DayActivity dayBucket(long day) {
+        DayActivity bucket = days.get(day);
+        if (bucket == null) {
+            bucket = new DayActivity();
+            days.put(day, bucket);
+            estimatedSizeBytes += 128;
+        }
+        return bucket;
+    }
+
+    private void addCallers(RoaringBitmap target, Collection<String> newCallers) {
+        long before = target.getLongSizeInBytes();
+        dictionary.addAll(target, newCallers);
+        estimatedSizeBytes += target.getLongSizeInBytes() - before;
+    }
+
+    private void orCallers(RoaringBitmap target, RoaringBitmap other, ServiceIdDictionary otherDictionary) {
+        long before = target.getLongSizeInBytes();
+        if (otherDictionary == dictionary) {
+            target.or(other);
+        } else {
+            other.forEach((int id) -> target.add(dictionary.intern(otherDictionary.lookup(id))));
+        }
+        estimatedSizeBytes += target.getLongSizeInBytes() - before;
+    }
+
+    /**
+     * Volume de atividade nos dias [fromDay, toDay] (epoch days, inclusivos).
+     */
+    public long getActivityBetween(long fromDay, long toDay) {
+        long total = 0;
+        for (DayActivity activity : days.subMap(fromDay, true, toDay, true).values()) {
+            total += activity.activity;
+        }
+        return total;
+    }
+
+    /**
+     * Callers distintos nos dias [fromDay, toDay] (epoch days, inclusivos).
+     */
+    public int getDistinctCallersBetween(long fromDay, long toDay) {
+        RoaringBitmap distinct = new RoaringBitmap();
+        days.subMap(fromDay, true, toDay, true).values().forEach(activity -> distinct.or(activity.callers));
+        return distinct.getCardinality();
+    }
+
+    private void updateLastSeen(Instant candidate) {
+        if (lastSeen == null || candidate.isAfter(lastSeen)) {
+            lastSeen = candidate;
+        }
+    }
+
+    /**
+     * Mantém a mesma ordenação usada pelo DecisionEngine (maior ordinal).
+     */
+    private void updateConfidence(ServiceActivityEvent.ConfidenceLevel candidate) {
+        if (candidate != null && (maxConfidence == null || candidate.ordinal() > maxConfidence.ordinal())) {
+            maxConfidence = candidate;
+        }
+    }
+
+    /**
+     * Serializa o acumulador em formato binário compacto e versionado.
+     * Usado para persistir estado fora do heap (state stores, checkpoints).
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        out.writeUTF(serviceId);
+        out.writeLong(totalActivity);
+        out.writeLong(eventCount);
+        out.writeBoolean(lastSeen != null);
+        if (lastSeen != null) {
+            out.writeLong(lastSeen.getEpochSecond());
+            out.writeInt(lastSeen.getNano());
+        }
+        out.writeByte(maxConfidence != null ? maxConfidence.ordinal() : -1);
+        writeCallers(out, callers);
+        out.writeInt(days.size());
+        for (Map.Entry<Long, DayActivity> entry : days.entrySet()) {
+            out.writeLong(entry.getKey());
+            out.writeLong(entry.getValue().activity);
+            writeCallers(out, entry.getValue().callers);
+        }
+    }
+
+    /**
+     * Lê um acumulador serializado por {@link #writeTo}.
+     * Aceita a versão 1 (sem buckets diários), ainda presente em checkpoints e state stores antigos.
+     */
+    public static ServiceActivityAccumulator readFrom(DataInput in) throws IOException {
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION && version != FORMAT_VERSION_V1) {
+            throw new IOException("Versão de acumulador não suportada: " + version);
+        }
+
+        ServiceActivityAccumulator accumulator = new ServiceActivityAccumulator(in.readUTF());
+        accumulator.totalActivity = in.readLong();
+        accumulator.eventCount = in.readLong();
+        if (in.readBoolean()) {
+            accumulator.lastSeen = Instant.ofEpochSecond(in.readLong(), in.readInt());
+        }
+        byte confidence = in.readByte();
+        if (confidence >= 0) {
+            accumulator.maxConfidence = ServiceActivityEvent.ConfidenceLevel.values()[confidence];
+        }
+        accumulator.addCallers(accumulator.callers, readCallers(in));
+        if (version == FORMAT_VERSION_V1) {
+            return accumulator;
+        }
+        int dayCount = in.readInt();
+        for (int i = 0; i < dayCount; i++) {
+            DayActivity activity = accumulator.dayBucket(in.readLong());
+            activity.activity = in.readLong();
+            accumulator.addCallers(activity.callers, readCallers(in));
+        }
+        return accumulator;
+    }
+
+    /**
+     * Callers são gravados como service.ids: ids do dicionário valem apenas no processo.
+     */
+    private void writeCallers(DataOutput out, RoaringBitmap callers) throws IOException {
+        out.writeInt(callers.getCardinality());
+        for (int id : callers) {
+            out.writeUTF(dictionary.lookup(id));
+        }
+    }
+
+    private static List<String> readCallers(DataInput in) throws IOException {
+        int count = in.readInt();
+        String[] callers = new String[count];
+        for (int i = 0; i < count; i++) {
+            callers[i] = in.readUTF();
+        }
+        return List.of(callers);
+    }
+
+    /**
+     * Estimativa do espaço ocupado no heap, usada para limitar a memória da consolidação.
+     * Aproximação conservadora mantida incrementalmente: cabeçalho fixo + bitmaps de callers
+     * + buckets diários (as strings dos callers vivem uma única vez no dicionário).
+     */
+    public long estimatedSizeBytes() {
+        return estimatedSizeBytes;
+    }
+
+    public boolean isEmpty() {
+        return eventCount == 0;
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    public long getTotalActivity() {
+        return totalActivity;
+    }
+
+    /**
+     * Maior window.end observado, ou null se nenhum evento foi acumulado.
+     */
+    public Instant getLastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * Callers materializados como service.ids, em ordem lexicográfica.
+     */
+    public Set<String> getCallers() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(dictionary.decode(callers)));
+    }
+
+    public List<String> getCallerList() {
+        return dictionary.decode(callers);
+    }
+
+    public int getCallerCount() {
+        return callers.getCardinality();
+    }
+
+    /**
+     * Confiança consolidada, ou null se nenhum evento foi acumulado.
+     */
+    public ServiceActivityEvent.ConfidenceLevel getMaxConfidence() {
+        return maxConfidence;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Atividade de um dia: volume somado e callers distintos.
+     */
+    private static final class DayActivity {
+        private long activity;
+        private final RoaringBitmap callers = new RoaringBitmap();
+    }
+}
@@ -0,0 +1,525 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.kafka.KafkaProducer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice esparso serviceId -> faixas de offsets do tópico raw, por partição e dia (timestamp do registro, UTC).
+ *
+ * Como o produtor usa service.id como chave, cada serviço vive em uma única partição; o índice
+ * permite recalcular o snapshot de um serviço lendo apenas as faixas onde ele aparece, em vez de
+ * toda a partição. As faixas são alimentadas pela leitura do job de consolidação: offsets de um
+ * serviço separados por até max-gap-records registros formam uma única faixa (um seek a menos
+ * compensa ler alguns registros de outros serviços), e cada dia guarda no máximo
+ * max-ranges-per-day faixas (as mais próximas são unidas).
+ *
+ * Persistido no tópico compactado governance.consolidation.offset-index, uma chave por
+ * partição, dia e shard do serviço ("partição:dia:shard"), para que a API de recálculo funcione
+ * em qualquer pod. Os shards (hash do service.id) mantêm cada registro abaixo do limite de
+ * mensagem do produtor mesmo em partições com muitos serviços; um segmento acima de
+ * max-segment-bytes não é publicado e a falha é registrada como erro. Segmentos gravados antes
+ * dos shards ("partição:dia") continuam válidos até expirarem pela retenção.
+ */
+@Component
+public class ServiceOffsetIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceOffsetIndex.class);
+
+    public static final String INDEX_TOPIC = "governance.consolidation.offset-index";
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final ConsumerFactory<String, String> consumerFactory;
+    private final KafkaProducer kafkaProducer;
+    private final ObjectMapper objectMapper;
+
+    // "partição:dia:shard" -> segmento
+    private final Map<String, Segment> segments = new ConcurrentHashMap<>();
+    // Posição da última leitura do tópico de índice (atualizações incrementais)
+    private final Map<TopicPartition, Long> loadedOffsets = new HashMap<>();
+    private long loadedAtNanos;
+    private boolean loaded;
+
+    @Value("${consolidation.offset-index.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${consolidation.offset-index.max-gap-records:500}")
+    private long maxGapRecords = 500;
+
+    @Value("${consolidation.offset-index.max-ranges-per-day:24}")
+    private int maxRangesPerDay = 24;
+
+    // Alterar o número de shards só afeta segmentos novos: os antigos expiram pela retenção
+    @Value("${consolidation.offset-index.shards:32}")
+    private int shards = 32;
+
+    // Abaixo do max.request.size do produtor (1 MB)
+    @Value("${consolidation.offset-index.max-segment-bytes:900000}")
+    private int maxSegmentBytes = 900_000;
+
+    // Segmentos mais antigos recebem tombstone (o raw retém 35 dias)
+    @Value("${consolidation.offset-index.retention-days:35}")
+    private int retentionDays = 35;
+
+    // Intervalo mínimo entre releituras do tópico de índice nas consultas
+    @Value("${consolidation.offset-index.refresh-seconds:300}")
+    private long refreshSeconds = 300;
+
+    public ServiceOffsetIndex(
+            @Qualifier("replayConsumerFactory") ConsumerFactory<String, String> consumerFactory,
+            KafkaProducer kafkaProducer,
+            ObjectMapper objectMapper) {
+        this.consumerFactory = consumerFactory;
+        this.kafkaProducer = kafkaProducer;
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Cria um coletor de offsets para a leitura de uma partição.
+     */
+    public Recorder recorder(int partition) {
+        return new Recorder(partition, maxGapRecords, maxRangesPerDay, shards);
+    }
+
+    /**
+     * Incorpora ao índice os offsets coletados desde o último commit do coletor,
+     * publica os segmentos alterados e descarta os anteriores à retenção.
+     * O coletor é esvaziado (pode continuar sendo usado na mesma leitura).
+     * Aguarda a confirmação das publicações; falhas são registradas como erro mas não
+     * interrompem a consolidação.
+     */
+    public synchronized void commit(Recorder recorder) {
+        if (!enabled || recorder.isEmpty()) {
+            return;
+        }
+        try {
+            refresh(false);
+
+            LocalDate oldestDay = LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays);
+            List<CompletableFuture<?>> sends = new ArrayList<>();
+            for (Segment segment : recorder.drain()) {
+                if (segment.getDay().isBefore(oldestDay)) {
+                    continue;
+                }
+                Segment merged = segments.merge(segment.key(), segment,
+                        (current, update) -> current.merge(update, maxGapRecords, maxRangesPerDay));
+                String value = objectMapper.writeValueAsString(merged);
+                if (value.length() > maxSegmentBytes) {
+                    logger.error("Segmento {} do índice de offsets com {} bytes excede max-segment-bytes ({}): "
+                                    + "não publicado, aumente consolidation.offset-index.shards",
+                            merged.key(), value.length(), maxSegmentBytes);
+                    continue;
+                }
+                sends.add(kafkaProducer.send(INDEX_TOPIC, merged.key(), value));
+            }
+            int published = sends.size();
+
+            segments.values().removeIf(segment -> {
+                if (!segment.getDay().isBefore(oldestDay)) {
+                    return false;
+                }
+                sends.add(kafkaProducer.send(INDEX_TOPIC, segment.key(), null));
+                return true;
+            });
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+
+            logger.debug("Índice de offsets atualizado: partição {}, {} segmentos publicados",
+                    recorder.getPartition(), published);
+        } catch (Exception e) {
+            logger.error("Erro ao atualizar índice de offsets da partição {}", recorder.getPartition(), e);
+        }
+    }
+
+    /**
+     * Faixas de offsets onde o serviço aparece, ordenadas por partição e offset inicial.
+     * Lista vazia = serviço desconhecido (ou índice desabilitado).
+     */
+    public List<OffsetRange> lookup(String serviceId) {
+        if (!enabled) {
+            return List.of();
+        }
+        refresh(true);
+
+        List<OffsetRange> ranges = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            long[] spans = segment.getRanges().get(serviceId);
+            if (spans == null) {
+                continue;
+            }
+            for (int i = 0; i < spans.length; i += 2) {
+                ranges.add(new OffsetRange(segment.getPartition(), segment.getDay(), spans[i], spans[i + 1]));
+            }
+        }
+        ranges.sort(Comparator.comparingInt(OffsetRange::getPartition)
+                .thenComparingLong(OffsetRange::getStartOffset));
+        return ranges;
+    }
+
+    /**
+     * Primeiro offset da partição ainda não coberto pelo índice (registros posteriores à
+     * última leitura do job), ou -1 se a partição nunca foi indexada.
+     */
+    public long indexedUntil(int partition) {
+        return segments.values().stream()
+                .filter(segment -> segment.getPartition() == partition)
+                .mapToLong(segment -> segment.getLastOffset() + 1)
+                .max()
+                .orElse(-1L);
+    }
+
+    /**
+     * Lê o tópico de índice a partir da última posição lida (a primeira leitura vai do início).
+     * Nas consultas, só relê após refresh-seconds; antes de um commit, apenas garante a carga inicial.
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized void refresh(boolean periodic) {
+        if (loaded && (!periodic || System.nanoTime() - loadedAtNanos < Duration.ofSeconds(refreshSeconds).toNanos())) {
+            return;
+        }
+
+        try (KafkaConsumer<String, String> consumer = (KafkaConsumer<String, String>) consumerFactory.createConsumer()) {
+            List<PartitionInfo> partitionInfos = consumer.partitionsFor(INDEX_TOPIC);
+            if (partitionInfos == null || partitionInfos.isEmpty()) {
+                loaded = true;
+                loadedAtNanos = System.nanoTime();
+                return;
+            }
+
+            List<TopicPartition> partitions = partitionInfos.stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            for (TopicPartition partition : partitions) {
+                Long position = loadedOffsets.get(partition);
+                if (position != null) {
+                    consumer.seek(partition, position);
+                } else {
+                    consumer.seekToBeginning(List.of(partition));
+                }
+            }
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+            int read = 0;
+            while (endOffsets.entrySet().stream().anyMatch(end -> consumer.position(end.getKey()) < end.getValue())) {
+                ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(1));
+                for (ConsumerRecord<String, String> record : records) {
+                    if (record.key() == null) {
+                        continue;
+                    }
+                    if (record.value() == null) {
+                        segments.remove(record.key());
+                        continue;
+                    }
+                    Segment segment = objectMapper.readValue(record.value(), Segment.class);
+                    // Faixas já conhecidas localmente (commits deste pod) são preservadas
+                    segments.merge(segment.key(), segment,
+                            (current, update) -> current.merge(update, maxGapRecords, maxRangesPerDay));
+                    read++;
+                }
+            }
+            endOffsets.forEach(loadedOffsets::put);
+            loaded = true;
+            loadedAtNanos = System.nanoTime();
+            logger.debug("Índice de offsets carregado: {} segmentos lidos, {} em memória", read, segments.size());
+        } catch (Exception e) {
+            // Consultas seguem com o índice local; nova tentativa na próxima chamada
+            logger.warn("Erro ao carregar índice de offsets de {}", INDEX_TOPIC, e);
+        }
+    }
+
+    /**
+     * Faixa [startOffset, lastOffset] (inclusiva) de um serviço em uma partição e dia.
+     */
+    public static final class OffsetRange {
+
+        private final int partition;
+        private final LocalDate day;
+        private final long startOffset;
+        private final long lastOffset;
+
+        public OffsetRange(int partition, LocalDate day, long startOffset, long lastOffset) {
+            this.partition = partition;
+            this.day = day;
+            this.startOffset = startOffset;
+            this.lastOffset = lastOffset;
+        }
+
+        public int getPartition() {
+            return partition;
+        }
+
+        public LocalDate getDay() {
+            return day;
+        }
+
+        public long getStartOffset() {
+            return startOffset;
+        }
+
+        public long getLastOffset() {
+            return lastOffset;
+        }
+
+        @Override
+        public String toString() {
+            return "OffsetRange{partition=" + partition + ", day=" + day +
+                    ", startOffset=" + startOffset + ", lastOffset=" + lastOffset + "}";
+        }
+    }
+
+    /**
+     * Faixas dos serviços de um shard de uma partição em um dia.
+     * ranges: serviceId -> [início0, fim0, início1, fim1, ...] (offsets inclusivos, ordenados).
+     * shard -1: segmento gravado antes dos shards, com todos os serviços da partição no dia.
+     * Imutável após construído: merges produzem um novo segmento.
+     */
+    public static class Segment {
+
+        private int partition;
+        private LocalDate day;
+        private int shard = -1;
+        private long lastOffset = -1;
+        private Map<String, long[]> ranges = new HashMap<>();
+
+        public Segment() {
+        }
+
+        public Segment(int partition, LocalDate day, int shard, long lastOffset, Map<String, long[]> ranges) {
+            this.partition = partition;
+            this.day = day;
+            this.shard = shard;
+            this.lastOffset = lastOffset;
+            this.ranges = ranges;
+        }
+
+        public String key() {
+            return shard < 0 ? partition + ":" + day : partition + ":" + day + ":" + shard;
+        }
+
+        /**
+         * Une as faixas de dois segmentos da mesma partição e dia.
+         */
+        Segment merge(Segment other, long maxGap, int maxRanges) {
+            Map<String, long[]> merged = new HashMap<>(ranges);
+            other.ranges.forEach((serviceId, spans) -> merged.merge(serviceId, spans,
+                    (a, b) -> coalesce(concat(a, b), maxGap, maxRanges)));
+            return new Segment(partition, day, shard, Math.max(lastOffset, other.lastOffset), merged);
+        }
+
+        public int getPartition() {
+            return partition;
+        }
+
+        public void setPartition(int partition) {
+            this.partition = partition;
+        }
+
+        public LocalDate getDay() {
+            return day;
+        }
+
+        public void setDay(LocalDate day) {
+            this.day = day;
+        }
+
+        public int getShard() {
+            return shard;
+        }
+
+        public void setShard(int shard) {
+            this.shard = shard;
+        }
+
+        public long getLastOffset() {
+            return lastOffset;
+        }
+
+        public void setLastOffset(long lastOffset) {
+            this.lastOffset = lastOffset;
+        }
+
+        public Map<String, long[]> getRanges() {
+            return ranges;
+        }
+
+        public void setRanges(Map<String, long[]> ranges) {
+            this.ranges = ranges;
+        }
+    }
+
+    /**
+     * Coleta os offsets de cada serviço durante a leitura de uma partição.
+     * Não é thread-safe: usado apenas pela thread de poll.
+     */
+    public static class Recorder {
+
+        private final int partition;
+        private final long maxGap;
+        private final int maxRanges;
+        private final int shards;
+        // dia (epoch day) -> serviceId -> faixas
+        private final Map<Long, Map<String, SpanBuilder>> days = new HashMap<>();
+        private final Map<Long, Long> lastOffsets = new HashMap<>();
+        private long currentDay = Long.MIN_VALUE;
+        private Map<String, SpanBuilder> current;
+
+        Recorder(int partition, long maxGap, int maxRanges) {
+            this(partition, maxGap, maxRanges, 1);
+        }
+
+        Recorder(int partition, long maxGap, int maxRanges, int shards) {
+            this.partition = partition;
+            this.maxGap = maxGap;
+            this.maxRanges = maxRanges;
+            this.shards = Math.max(1, shards);
+        }
+
+        public int getPartition() {
+            return partition;
+        }
+
+        public void record(String serviceId, long offset, long timestamp) {
+            if (serviceId == null) {
+                return;
+            }
+            long day = Math.floorDiv(timestamp, MILLIS_PER_DAY);
+            if (day != currentDay) {
+                currentDay = day;
+                current = days.computeIfAbsent(day, d -> new HashMap<>());
+            }
+            current.computeIfAbsent(serviceId, id -> new SpanBuilder()).add(offset, maxGap, maxRanges);
+            lastOffsets.merge(day, offset, Math::max);
+        }
+
+        boolean isEmpty() {
+            return days.isEmpty();
+        }
+
+        List<Segment> drain() {
+            List<Segment> drained = new ArrayList<>(days.size());
+            days.forEach((day, services) -> {
+                Map<Integer, Map<String, long[]>> byShard = new HashMap<>();
+                services.forEach((serviceId, spans) -> byShard
+                        .computeIfAbsent(shardOf(serviceId, shards), shard -> new HashMap<>())
+                        .put(serviceId, spans.toArray()));
+                byShard.forEach((shard, ranges) -> drained.add(
+                        new Segment(partition, LocalDate.ofEpochDay(day), shard, lastOffsets.get(day), ranges)));
+            });
+            days.clear();
+            lastOffsets.clear();
+            currentDay = Long.MIN_VALUE;
+            current = null;
+            return drained;
+        }
+    }
+
+    /**
+     * Faixas de um serviço em construção; offsets chegam em ordem crescente.
+     */
+    private static final class SpanBuilder {
+
+        private long[] spans = new long[4];
+        private int size;
+
+        void add(long offset, long maxGap, int maxRanges) {
+            if (size > 0 && offset - spans[size - 1] <= maxGap) {
+                spans[size - 1] = Math.max(spans[size - 1], offset);
+                return;
+            }
+            if (size == spans.length) {
+                spans = Arrays.copyOf(spans, size * 2);
+            }
+            spans[size++] = offset;
+            spans[size++] = offset;
+            if (size / 2 > maxRanges) {
+                size = mergeClosest(spans, size);
+            }
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(spans, size);
+        }
+    }
+
+    static int shardOf(String serviceId, int shards) {
+        return Math.floorMod(serviceId.hashCode(), shards);
+    }
+
+    private static long[] concat(long[] a, long[] b) {
+        long[] all = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+        return all;
+    }
+
+    /**
+     * Ordena as faixas, une as sobrepostas ou separadas por até maxGap e limita a maxRanges.
+     */
+    static long[] coalesce(long[] spans, long maxGap, int maxRanges) {
+        int count = spans.length / 2;
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> spans[i * 2]));
+
+        long[] result = new long[spans.length];
+        int size = 0;
+        for (int i : order) {
+            long start = spans[i * 2];
+            long end = spans[i * 2 + 1];
+            if (size > 0 && start - result[size - 1] <= maxGap) {
+                result[size - 1] = Math.max(result[size - 1], end);
+            } else {
+                result[size++] = start;
+                result[size++] = end;
+            }
+        }
+        while (size / 2 > maxRanges) {
+            size = mergeClosest(result, size);
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Une as duas faixas consecutivas com menor intervalo entre si.
+     * @return Novo tamanho do array
+     */
+    private static int mergeClosest(long[] spans, int size) {
+        int closest = 2;
+        for (int i = 4; i < size; i += 2) {
+            if (spans[i] - spans[i - 1] < spans[closest] - spans[closest - 1]) {
+                closest = i;
+            }
+        }
+        spans[closest - 1] = spans[closest + 1];
+        System.arraycopy(spans, closest + 2, spans, closest, size - closest - 2);
+        return size - 2;
+    }
+}
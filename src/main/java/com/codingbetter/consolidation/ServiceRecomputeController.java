@@ -0,0 +1,58 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Recálculo sob demanda do snapshot de um serviço (ex.: "por que X está NO_TRAFFIC?"),
+ * sem aguardar o job diário nem reler a partição inteira: lê apenas as faixas de offsets
+ * do índice por serviço (ServiceOffsetIndex).
+ */
+@RestController
+@RequestMapping("/api/v1/snapshots")
+public class ServiceRecomputeController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceRecomputeController.class);
+
+    private final ConsolidationWorker consolidationWorker;
+    private final SnapshotChangePublisher snapshotPublisher;
+
+    @Value("${consolidation.job.window-days:30}")
+    private int windowDays = 30;
+
+    public ServiceRecomputeController(ConsolidationWorker consolidationWorker,
+                                      SnapshotChangePublisher snapshotPublisher) {
+        this.consolidationWorker = consolidationWorker;
+        this.snapshotPublisher = snapshotPublisher;
+    }
+
+    /**
+     * Recalcula o snapshot do serviço.
+     * @param publish Se true, publica o resultado (com detecção de mudança) em governance.activity.snapshot
+     * @return 200 com o snapshot, ou 404 se o serviço não consta do índice
+     */
+    @PostMapping("/{serviceId}/recompute")
+    public ResponseEntity<ServiceActivitySnapshot> recompute(
+            @PathVariable String serviceId,
+            @RequestParam(defaultValue = "false") boolean publish) {
+        ServiceActivitySnapshot snapshot = consolidationWorker.recomputeService(serviceId, windowDays);
+        if (snapshot == null) {
+            logger.info("Recálculo solicitado para serviço fora do índice de offsets: {}", serviceId);
+            return ResponseEntity.notFound().build();
+        }
+
+        if (publish) {
+            boolean published = snapshotPublisher.publish(snapshot).join();
+            logger.info("Snapshot recalculado de {} {}", serviceId, published ? "publicado" : "inalterado");
+        }
+        return ResponseEntity.ok(snapshot);
+    }
+}
@@ -0,0 +1,82 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Agrupa snapshots em lotes e os entrega a um PartitionWriter com número limitado de lotes
+ * em curso: ao atingir o limite, aguarda o lote mais antigo antes de enviar o próximo.
+ * Assim a geração de snapshots avança no ritmo do destino, sem acumular futures nem snapshots.
+ * Não é thread-safe: um writer por partição.
+ */
+public class SnapshotBatchWriter implements Consumer<ServiceActivitySnapshot>, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotBatchWriter.class);
+
+    private final SnapshotSink.PartitionWriter writer;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final Deque<CompletableFuture<Void>> inFlight = new ArrayDeque<>();
+    private List<ServiceActivitySnapshot> batch;
+    private long written;
+
+    public SnapshotBatchWriter(SnapshotSink.PartitionWriter writer, int batchSize, int maxInFlight) {
+        this.writer = writer;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.batch = new ArrayList<>(this.batchSize);
+    }
+
+    @Override
+    public void accept(ServiceActivitySnapshot snapshot) {
+        batch.add(snapshot);
+        if (batch.size() >= batchSize) {
+            submit();
+        }
+    }
+
+    /**
+     * Envia o lote parcial e aguarda a confirmação de todos os lotes.
+     * @return Número de snapshots gravados
+     */
+    public long finish() {
+        submit();
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).join();
+        inFlight.clear();
+        return written;
+    }
+
+    private void submit() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        while (inFlight.size() >= maxInFlight) {
+            inFlight.pollFirst().join();
+        }
+        inFlight.addLast(writer.write(batch));
+        written += batch.size();
+        batch = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Fecha o destino. Se {@link #finish} não foi chamado (falha na geração), os lotes
+     * em curso são aguardados sem propagar erros, e o lote parcial é descartado.
+     */
+    @Override
+    public void close() {
+        try {
+            CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).exceptionally(error -> null).join();
+            writer.close();
+        } catch (Exception e) {
+            logger.warn("Erro ao fechar destino de snapshots", e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.kafka.KafkaProducer;
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Publicação de snapshots com detecção de mudança.
+ *
+ * Mantém o tópico compactado governance.activity.snapshot.latest (último snapshot por serviço,
+ * com headers fingerprint e last-seen). Um snapshot só é publicado (em governance.activity.snapshot
+ * e no latest) quando o fingerprint difere do último publicado, de modo que o tráfego downstream
+ * e as escritas no Backstage sejam proporcionais às mudanças e não ao tamanho da frota.
+ * Serviços sem atividade há mais de retire-after-days recebem tombstone no latest.
+ * Para que o lastSeen do latest não envelheça em serviços ativos e estáveis, um snapshot
+ * inalterado é regravado apenas no latest quando o lastSeen registrado passa de latest-refresh-days.
+ */
+@Component
+public class SnapshotChangePublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotChangePublisher.class);
+
+    public static final String LATEST_TOPIC = "governance.activity.snapshot.latest";
+
+    private final KafkaProducer kafkaProducer;
+    private final ConsumerFactory<String, String> consumerFactory;
+
+    // serviceId -> último snapshot publicado (fingerprint + lastSeen)
+    private final Map<String, PublishedSnapshot> index = new ConcurrentHashMap<>();
+    private volatile String loadedRunId;
+
+    @Value("${consolidation.publisher.change-detection-enabled:true}")
+    private boolean changeDetectionEnabled = true;
+
+    @Value("${consolidation.publisher.retire-after-days:90}")
+    private int retireAfterDays = 90;
+
+    @Value("${consolidation.publisher.latest-refresh-days:7}")
+    private int latestRefreshDays = 7;
+
+    public SnapshotChangePublisher(
+            KafkaProducer kafkaProducer,
+            @Qualifier("replayConsumerFactory") ConsumerFactory<String, String> consumerFactory) {
+        this.kafkaProducer = kafkaProducer;
+        this.consumerFactory = consumerFactory;
+    }
+
+    /**
+     * Recarrega o índice de fingerprints a partir do tópico latest uma vez por execução.
+     * Necessário porque a mesma partição pode ter sido consolidada por outro pod na execução anterior.
+     */
+    public synchronized void beginRun(String runId) {
+        if (!changeDetectionEnabled || runId.equals(loadedRunId)) {
+            return;
+        }
+        loadIndex();
+        loadedRunId = runId;
+    }
+
+    /**
+     * Publica o snapshot se o fingerprint mudou.
+     * @return future concluído com true se publicado, false se inalterado
+     */
+    public CompletableFuture<Boolean> publish(ServiceActivitySnapshot snapshot) {
+        String fingerprint = SnapshotFingerprint.of(snapshot);
+        PublishedSnapshot previous = index.get(snapshot.getServiceId());
+        if (changeDetectionEnabled && previous != null && previous.fingerprint.equals(fingerprint)) {
+            if (previous.lastSeen != null && snapshot.getLastSeen() != null && previous.lastSeen.isBefore(
+                    snapshot.getLastSeen().minus(latestRefreshDays, ChronoUnit.DAYS))) {
+                // Inalterado, mas o lastSeen registrado está defasado: atualiza apenas o latest
+                return kafkaProducer.publishLatestSnapshot(snapshot, fingerprint)
+                        .thenApply(result -> {
+                            index.put(snapshot.getServiceId(), new PublishedSnapshot(fingerprint, snapshot.getLastSeen()));
+                            return false;
+                        });
+            }
+            return CompletableFuture.completedFuture(false);
+        }
+
+        return CompletableFuture.allOf(
+                        kafkaProducer.publishSnapshot(snapshot),
+                        kafkaProducer.publishLatestSnapshot(snapshot, fingerprint))
+                .thenApply(ignored -> {
+                    index.put(snapshot.getServiceId(), new PublishedSnapshot(fingerprint, snapshot.getLastSeen()));
+                    return true;
+                });
+    }
+
+    /**
+     * Publica tombstones no tópico latest para serviços sem atividade há mais de retire-after-days.
+     * @return número de serviços aposentados
+     */
+    public int retireInactive(String runId) {
+        beginRun(runId);
+
+        Instant retireBefore = Instant.now().minus(retireAfterDays, ChronoUnit.DAYS);
+        List<CompletableFuture<?>> tombstones = new ArrayList<>();
+        index.forEach((serviceId, published) -> {
+            if (published.lastSeen != null && published.lastSeen.isBefore(retireBefore)) {
+                tombstones.add(kafkaProducer.send(LATEST_TOPIC, serviceId, null)
+                        .thenRun(() -> index.remove(serviceId)));
+            }
+        });
+        CompletableFuture.allOf(tombstones.toArray(CompletableFuture[]::new)).join();
+
+        if (!tombstones.isEmpty()) {
+            logger.info("{} serviços sem atividade há mais de {} dias aposentados em {}",
+                    tombstones.size(), retireAfterDays, LATEST_TOPIC);
+        }
+        return tombstones.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void loadIndex() {
+        index.clear();
+        try (KafkaConsumer<String, String> consumer = (KafkaConsumer<String, String>) consumerFactory.createConsumer()) {
+            List<PartitionInfo> partitionInfos = consumer.partitionsFor(LATEST_TOPIC);
+            if (partitionInfos == null || partitionInfos.isEmpty()) {
+                return;
+            }
+
+            List<TopicPartition> partitions = partitionInfos.stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            consumer.seekToBeginning(partitions);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+            while (partitions.stream().anyMatch(tp -> consumer.position(tp) < endOffsets.get(tp))) {
+                ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(1));
+                for (ConsumerRecord<String, String> record : records) {
+                    if (record.value() == null) {
+                        index.remove(record.key());
+                        continue;
+                    }
+                    Header fingerprint = record.headers().lastHeader("fingerprint");
+                    Header lastSeen = record.headers().lastHeader("last-seen");
+                    if (fingerprint != null) {
+                        index.put(record.key(), new PublishedSnapshot(
+                                new String(fingerprint.value(), StandardCharsets.UTF_8),
+                                lastSeen != null ? Instant.ofEpochMilli(Long.parseLong(
+                                        new String(lastSeen.value(), StandardCharsets.UTF_8))) : null));
+                    }
+                }
+            }
+            logger.info("Índice de snapshots carregado de {}: {} serviços", LATEST_TOPIC, index.size());
+        } catch (Exception e) {
+            // Sem índice, todos os snapshots são publicados (comportamento anterior)
+            logger.warn("Erro ao carregar índice de snapshots, publicando sem detecção de mudança", e);
+            index.clear();
+        }
+    }
+
+    private static final class PublishedSnapshot {
+        private final String fingerprint;
+        private final Instant lastSeen;
+
+        private PublishedSnapshot(String fingerprint, Instant lastSeen) {
+            this.fingerprint = fingerprint;
+            this.lastSeen = lastSeen;
+        }
+    }
+}
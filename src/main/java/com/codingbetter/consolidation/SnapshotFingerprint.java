@@ -0,0 +1,85 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Fingerprint dos campos semanticamente relevantes de um snapshot:
+ * classificação, receivesTraffic, nível de confiança, callers (ordenados),
+ * horizontes de atividade e sentido da tendência diária.
+ *
+ * Volumes e contagens de callers dos horizontes entram em faixas de potência de 2 e a
+ * tendência apenas pelo sentido (alta/queda de pelo menos TREND_THRESHOLD, ou estável):
+ * mudanças de ordem de grandeza chegam ao Backstage sem que a variação diária normal
+ * republique toda a frota. lastSeen e snapshotDate mudam a cada execução e ficam de fora;
+ * o lastSeen do latest é mantido pela regravação de latest-refresh-days (SnapshotChangePublisher).
+ * O volume da janela já aparece no horizonte de window-days.
+ */
+public final class SnapshotFingerprint {
+
+    static final double TREND_THRESHOLD = 0.5;
+
+    private SnapshotFingerprint() {
+    }
+
+    public static String of(ServiceActivitySnapshot snapshot) {
+        StringBuilder canonical = new StringBuilder(128)
+                .append(snapshot.getClassification()).append('|')
+                .append(snapshot.getReceivesTraffic()).append('|')
+                .append(snapshot.getConfidenceLevel()).append('|');
+
+        List<String> callers = snapshot.getActiveCallers() != null
+                ? snapshot.getActiveCallers().stream().sorted().toList()
+                : List.of();
+        for (String caller : callers) {
+            // Separador fora do conjunto de caracteres de service.id
+            canonical.append(caller).append('\n');
+        }
+
+        if (snapshot.getActivityHorizons() != null) {
+            for (ServiceActivitySnapshot.ActivityHorizon horizon : snapshot.getActivityHorizons()) {
+                canonical.append(horizon.getDays()).append(':')
+                        .append(magnitude(horizon.getTrafficVolume())).append(':')
+                        .append(magnitude(horizon.getDistinctCallers() != null
+                                ? (long) horizon.getDistinctCallers() : null)).append('|');
+            }
+        }
+        canonical.append(trendDirection(snapshot.getDailyTrend()));
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    // Faixa de potência de 2: 0 -> 0, 1 -> 1, 2..3 -> 2, 4..7 -> 3, ...
+    static int magnitude(Long value) {
+        if (value == null || value <= 0) {
+            return 0;
+        }
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    // +1, -1 ou 0 conforme a variação do último dia em relação ao anterior
+    static int trendDirection(ServiceActivitySnapshot.DailyTrend trend) {
+        if (trend == null) {
+            return 0;
+        }
+        if (trend.getChangeRatio() == null) {
+            // Dia anterior sem atividade
+            return trend.getLastDayVolume() != null && trend.getLastDayVolume() > 0 ? 1 : 0;
+        }
+        if (trend.getChangeRatio() >= TREND_THRESHOLD) {
+            return 1;
+        }
+        return trend.getChangeRatio() <= -TREND_THRESHOLD ? -1 : 0;
+    }
+}
@@ -6,9 +6,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * Gerador de snapshots que agrupa eventos por serviço.
@@ -31,16 +35,80 @@ public class SnapshotGenerator {
     public List<ServiceActivitySnapshot> generateSnapshots(List<ServiceActivityEvent> events) {
         logger.info("Gerando snapshots para {} eventos", events.size());
 
-        // Agrupa eventos por service.id
-        Map<String, List<ServiceActivityEvent>> eventsByService = events.stream()
-                .collect(Collectors.groupingBy(ServiceActivityEvent::getServiceId));
+        // Acumula eventos por service.id
+        Map<String, ServiceActivityAccumulator> accumulators = new HashMap<>();
+        events.forEach(event -> accumulate(accumulators, event));
 
-        logger.info("Encontrados {} serviços únicos", eventsByService.size());
+        return generateSnapshots(accumulators.values());
+    }
+
+    /**
+     * Gera um snapshot por serviço a partir de acumuladores já consolidados.
+     */
+    public List<ServiceActivitySnapshot> generateSnapshots(Collection<ServiceActivityAccumulator> accumulators) {
+        logger.info("Encontrados {} serviços únicos", accumulators.size());
 
-        // Gera snapshot para cada serviço
-        return eventsByService.entrySet().stream()
-                .map(entry -> decisionEngine.generateSnapshot(entry.getKey(), entry.getValue()))
+        return accumulators.stream()
+                .filter(accumulator -> !accumulator.isEmpty())
+                .map(decisionEngine::generateSnapshot)
                 .toList();
     }
-}
 
+    /**
+     * Gera um snapshot por serviço a partir de uma tabela com memória limitada,
+     * consumindo os acumuladores à medida que o merge dos runs os entrega.
+     */
+    public List<ServiceActivitySnapshot> generateSnapshots(SpillingAccumulatorTable table) {
+        List<ServiceActivitySnapshot> snapshots = new ArrayList<>();
+        generateSnapshots(table, snapshots::add);
+        return snapshots;
+    }
+
+    /**
+     * Gera os snapshots da tabela entregando cada um ao consumidor (ex.: SnapshotBatchWriter),
+     * sem materializar a lista da partição.
+     * @return Número de snapshots gerados
+     */
+    public long generateSnapshots(SpillingAccumulatorTable table, Consumer<ServiceActivitySnapshot> sink) {
+        long[] generated = new long[1];
+        table.forEachMerged(accumulator -> {
+            // Serviços só com atividade anterior à janela (horizontes longos) não geram snapshot
+            if (!accumulator.isEmpty()) {
+                sink.accept(decisionEngine.generateSnapshot(accumulator));
+                generated[0]++;
+            }
+        });
+
+        logger.info("Encontrados {} serviços únicos", generated[0]);
+        return generated[0];
+    }
+
+    /**
+     * Gera o snapshot de um serviço a partir do seu acumulador (recálculo pontual).
+     */
+    public ServiceActivitySnapshot generateSnapshot(ServiceActivityAccumulator accumulator) {
+        return decisionEngine.generateSnapshot(accumulator);
+    }
+
+    /**
+     * Gera o snapshot de um serviço para uma data as-of (backfill).
+     */
+    public ServiceActivitySnapshot generateSnapshot(ServiceActivityAccumulator accumulator, LocalDate asOfDate) {
+        return decisionEngine.generateSnapshot(accumulator, asOfDate);
+    }
+
+    /**
+     * Dias anteriores à referência necessários para o maior horizonte de métricas.
+     */
+    public int getMaxHorizonDays() {
+        return decisionEngine.getMaxHorizonDays();
+    }
+
+    /**
+     * Incorpora um evento ao acumulador do seu serviço.
+     */
+    public static void accumulate(Map<String, ServiceActivityAccumulator> accumulators, ServiceActivityEvent event) {
+        accumulators.computeIfAbsent(event.getServiceId(), ServiceActivityAccumulator::new)
+                .add(event);
+    }
+}
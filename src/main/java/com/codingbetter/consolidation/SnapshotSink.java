@@ -0,0 +1,44 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Destino dos snapshots gerados pela consolidação (Kafka, arquivo local, store em memória).
+ * Implementações registradas como beans são combinadas pelo ConsolidationWorker em um
+ * CompositeSnapshotSink: cada lote é entregue a todos os destinos em uma única passagem,
+ * sem lista intermediária com todos os snapshots da partição.
+ */
+public interface SnapshotSink {
+
+    /**
+     * Nome do destino, usado em logs.
+     */
+    String getName();
+
+    /**
+     * Abre a saída de uma partição em uma execução.
+     */
+    PartitionWriter open(String runId, int partition) throws IOException;
+
+    /**
+     * Saída de uma partição. Recebe lotes via {@link #write}, possivelmente com vários em curso
+     * (limitados pelo SnapshotBatchWriter); {@link #close} só é chamado após a conclusão de todos.
+     */
+    @FunctionalInterface
+    interface PartitionWriter extends AutoCloseable {
+
+        /**
+         * Grava um lote de forma assíncrona.
+         * @return future concluído quando o lote estiver durável no destino
+         */
+        CompletableFuture<Void> write(List<ServiceActivitySnapshot> batch);
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.kafka.StreamEventIdFilter;
+import com.codingbetter.kafka.StreamTopology;
+import com.codingbetter.schemas.SchemaCodecs;
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Topologia Kafka Streams do modo de consolidação contínuo.
+ * Alternativa ao job diário: mantém estado por serviço em buckets de bucket-minutes
+ * (retenção = janela de consolidação) e emite snapshots atualizados em
+ * governance.activity.snapshot à medida que eventos chegam.
+ * Usa o mesmo ServiceActivityAccumulator e o mesmo DecisionEngine do modo batch.
+ *
+ * Como no job batch, os eventos entram na janela pelo timestamp do registro e o corte é
+ * exato (instante da emissão - window-days). Os buckets são indexados pelo timestamp do
+ * registro: um bucket entra na janela se começa no corte ou depois, de modo que o snapshot
+ * difere do batch em no máximo um bucket na borda da janela.
+ *
+ * Os serviços pendentes de emissão ficam em um key-value store (com changelog): sobrevivem a
+ * rebalances e reinícios entre emissões. Uma vez por dia (UTC) todos os serviços do store
+ * de buckets são reclassificados, como no job batch: serviços sem eventos novos também envelhecem
+ * para LOW_USAGE/NO_TRAFFIC.
+ *
+ * Eventos com event-id já visto são descartados antes dos buckets (StreamEventIdFilter),
+ * com a mesma retenção do store de buckets.
+ *
+ * A saída segue a mesma detecção de mudança do job diário (SnapshotChangePublisher): o snapshot
+ * só é publicado em governance.activity.snapshot e no latest quando o fingerprint muda; inalterado,
+ * é regravado apenas no latest quando o lastSeen registrado passa de latest-refresh-days, e a
+ * passagem diária publica tombstones no latest para serviços inativos há mais de retire-after-days.
+ * O último fingerprint publicado de cada serviço fica em um key-value store da task (com changelog).
+ */
+@Component
+@ConditionalOnProperty(name = "consolidation.mode", havingValue = "continuous")
+public class SnapshotStreamTopology implements StreamTopology {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotStreamTopology.class);
+
+    // Nome mantido: buckets diários gravados por versões anteriores continuam válidos
+    static final String BUCKET_STORE = "service-activity-daily";
+    // Valor é apenas um marcador (nome novo: o store anterior guardava um Long)
+    static final String DIRTY_STORE = "service-activity-pending";
+    static final String FULL_PASS_STORE = "service-activity-full-pass";
+    static final String SEEN_EVENT_IDS_STORE = "service-activity-seen-event-ids";
+    static final String PUBLISHED_STORE = "service-activity-published";
+    private static final String SNAPSHOT_SINK = "continuous-snapshot-sink";
+    private static final String LATEST_SINK = "continuous-snapshot-latest-sink";
+    private static final String LAST_FULL_PASS_DAY = "last-full-pass-day";
+
+    private final DecisionEngine decisionEngine;
+    private final SchemaCodecs schemaCodecs;
+
+    @Value("${consolidation.job.window-days:30}")
+    private int windowDays = 30;
+
+    @Value("${consolidation.streaming.emit-interval-seconds:60}")
+    private long emitIntervalSeconds = 60;
+
+    // Resolução do corte da janela; buckets menores aumentam o estado por serviço
+    @Value("${consolidation.streaming.bucket-minutes:60}")
+    private long bucketMinutes = 60;
+
+    @Value("${consolidation.publisher.change-detection-enabled:true}")
+    private boolean changeDetectionEnabled = true;
+
+    @Value("${consolidation.publisher.retire-after-days:90}")
+    private int retireAfterDays = 90;
+
+    @Value("${consolidation.publisher.latest-refresh-days:7}")
+    private int latestRefreshDays = 7;
+
+    public SnapshotStreamTopology(DecisionEngine decisionEngine, SchemaCodecs schemaCodecs) {
+        this.decisionEngine = decisionEngine;
+        this.schemaCodecs = schemaCodecs;
+    }
+
+    /**
+     * Registra a topologia no StreamsBuilder.
+     * raw (JSON ou binário) -> buckets por serviço -> snapshot e latest (JSON)
+     */
+    @Override
+    public KStream<String, String> build(StreamsBuilder builder) {
+        Duration retention = Duration.ofDays(Math.max(windowDays, decisionEngine.getMaxHorizonDays()) + 1L);
+        builder.addStateStore(Stores.windowStoreBuilder(
+                Stores.persistentWindowStore(BUCKET_STORE, retention, Duration.ofMinutes(bucketMinutes), false),
+                Serdes.String(),
+                accumulatorSerde()));
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(DIRTY_STORE), Serdes.String(), Serdes.Boolean()));
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(FULL_PASS_STORE), Serdes.String(), Serdes.Long()));
+        builder.addStateStore(StreamEventIdFilter.storeBuilder(SEEN_EVENT_IDS_STORE, retention));
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(PUBLISHED_STORE), Serdes.String(), Serdes.String()));
+
+        KStream<String, String> snapshots = builder
+                .stream("governance.activity.raw", Consumed.with(Serdes.String(), Serdes.ByteArray()))
+                .process(SnapshotProcessor::new, BUCKET_STORE, DIRTY_STORE, FULL_PASS_STORE,
+                        SEEN_EVENT_IDS_STORE, PUBLISHED_STORE);
+
+        // O processor escolhe o destino de cada registro pelo nome do sink
+        snapshots.to("governance.activity.snapshot",
+                Produced.with(Serdes.String(), Serdes.String()).withName(SNAPSHOT_SINK));
+        snapshots.to(SnapshotChangePublisher.LATEST_TOPIC,
+                Produced.with(Serdes.String(), Serdes.String()).withName(LATEST_SINK));
+
+        logger.info("Topologia de snapshot contínuo registrada: janela={} dias, emissão a cada {}s",
+                windowDays, emitIntervalSeconds);
+        return snapshots;
+    }
+
+    /**
+     * Processor que acumula eventos no bucket do serviço e, periodicamente,
+     * emite o snapshot dos serviços alterados desde a última emissão
+     * (e, uma vez por dia, de todos os serviços).
+     */
+    private class SnapshotProcessor implements Processor<String, byte[], String, String> {
+
+        private ProcessorContext<String, String> context;
+        private WindowStore<String, ServiceActivityAccumulator> bucketStore;
+        // Serviços pendentes de emissão
+        private KeyValueStore<String, Boolean> dirtyStore;
+        private KeyValueStore<String, Long> fullPassStore;
+        private StreamEventIdFilter eventIds;
+        // Último snapshot publicado por serviço (ver PublishedSnapshot)
+        private KeyValueStore<String, String> publishedStore;
+
+        @Override
+        public void init(ProcessorContext<String, String> context) {
+            this.context = context;
+            this.bucketStore = context.getStateStore(BUCKET_STORE);
+            this.dirtyStore = context.getStateStore(DIRTY_STORE);
+            this.fullPassStore = context.getStateStore(FULL_PASS_STORE);
+            this.eventIds = new StreamEventIdFilter(context.getStateStore(SEEN_EVENT_IDS_STORE));
+            this.publishedStore = context.getStateStore(PUBLISHED_STORE);
+            context.schedule(Duration.ofSeconds(emitIntervalSeconds),
+                    PunctuationType.WALL_CLOCK_TIME, this::emitDirtySnapshots);
+        }
+
+        @Override
+        public void process(Record<String, byte[]> record) {
+            List<ServiceActivityEvent> events;
+            try {
+                // Envelopes ficam na partição de todos os seus serviços: o store local continua correto
+                events = schemaCodecs.decodeEvents(record.value());
+            } catch (Exception e) {
+                logger.warn("Erro ao deserializar evento no modo contínuo: key={}", record.key(), e);
+                return;
+            }
+            for (ServiceActivityEvent event : eventIds.distinct(record.headers(), record.value(), events)) {
+                accumulate(event, record.timestamp());
+            }
+        }
+
+        private void accumulate(ServiceActivityEvent event, long timestamp) {
+            if (event.getServiceId() == null || event.getWindow() == null || event.getWindow().getEnd() == null) {
+                return;
+            }
+
+            // Mesmo timestamp que o job batch compara com o corte da janela
+            long bucketSize = Duration.ofMinutes(bucketMinutes).toMillis();
+            long bucketStart = timestamp - Math.floorMod(timestamp, bucketSize);
+            ServiceActivityAccumulator bucket = bucketStore.fetch(event.getServiceId(), bucketStart);
+            if (bucket == null) {
+                bucket = new ServiceActivityAccumulator(event.getServiceId());
+            }
+            bucketStore.put(event.getServiceId(), bucket.add(event), bucketStart);
+            dirtyStore.put(event.getServiceId(), Boolean.TRUE);
+        }
+
+        /**
+         * Na primeira emissão de cada dia (UTC), marca todos os serviços do store de buckets
+         * e aposenta os serviços inativos no latest.
+         * O dia da última passagem fica no store: reinícios não a repetem nem a adiam.
+         */
+        private void markAllServicesOnNewDay(long timestamp) {
+            long today = Instant.ofEpochMilli(timestamp).truncatedTo(ChronoUnit.DAYS).toEpochMilli();
+            Long lastFullPass = fullPassStore.get(LAST_FULL_PASS_DAY);
+            if (lastFullPass != null && lastFullPass >= today) {
+                return;
+            }
+
+            Set<String> services = new HashSet<>();
+            try (KeyValueIterator<Windowed<String>, ServiceActivityAccumulator> buckets = bucketStore.all()) {
+                buckets.forEachRemaining(bucket -> {
+                    if (services.add(bucket.key.key())) {
+                        dirtyStore.put(bucket.key.key(), Boolean.TRUE);
+                    }
+                });
+            }
+            retireInactive(timestamp);
+            fullPassStore.put(LAST_FULL_PASS_DAY, today);
+            logger.info("Reclassificação diária do modo contínuo: {} serviços", services.size());
+        }
+
+        // Tombstone no latest para serviços sem atividade há mais de retire-after-days
+        private void retireInactive(long timestamp) {
+            long retireBefore = Instant.ofEpochMilli(timestamp).minus(retireAfterDays, ChronoUnit.DAYS).toEpochMilli();
+            List<String> retired = new ArrayList<>();
+            try (KeyValueIterator<String, String> published = publishedStore.all()) {
+                published.forEachRemaining(entry -> {
+                    Long lastSeen = PublishedSnapshot.parse(entry.value).lastSeen;
+                    if (lastSeen != null && lastSeen < retireBefore) {
+                        retired.add(entry.key);
+                    }
+                });
+            }
+            for (String serviceId : retired) {
+                context.forward(new Record<String, String>(serviceId, null, timestamp), LATEST_SINK);
+                publishedStore.delete(serviceId);
+            }
+            if (!retired.isEmpty()) {
+                logger.info("{} serviços sem atividade há mais de {} dias aposentados em {}",
+                        retired.size(), retireAfterDays, SnapshotChangePublisher.LATEST_TOPIC);
+            }
+        }
+
+        private void emitDirtySnapshots(long timestamp) {
+            markAllServicesOnNewDay(timestamp);
+
+            List<String> dirtyServices = new ArrayList<>();
+            try (KeyValueIterator<String, Boolean> dirty = dirtyStore.all()) {
+                dirty.forEachRemaining(entry -> dirtyServices.add(entry.key));
+            }
+            if (dirtyServices.isEmpty()) {
+                return;
+            }
+
+            Instant now = Instant.ofEpochMilli(timestamp);
+            long from = now.minus(windowDays, ChronoUnit.DAYS).toEpochMilli();
+            long historyFrom = Math.min(from, now.minus(decisionEngine.getMaxHorizonDays(), ChronoUnit.DAYS)
+                    .truncatedTo(ChronoUnit.DAYS).toEpochMilli());
+
+            int published = 0;
+            for (String serviceId : dirtyServices) {
+                ServiceActivityAccumulator merged = new ServiceActivityAccumulator(serviceId);
+                try (WindowStoreIterator<ServiceActivityAccumulator> buckets =
+                             bucketStore.fetch(serviceId, historyFrom, timestamp)) {
+                    // Buckets anteriores à janela alimentam apenas os horizontes longos
+                    buckets.forEachRemaining(bucket -> {
+                        if (bucket.key >= from) {
+                            merged.merge(bucket.value);
+                        } else {
+                            merged.mergeHistory(bucket.value);
+                        }
+                    });
+                }
+                dirtyStore.delete(serviceId);
+                if (merged.isEmpty()) {
+                    continue;
+                }
+
+                // Mesmo relógio da janela: a classificação acompanha o instante da emissão
+                ServiceActivitySnapshot snapshot = decisionEngine.generateSnapshot(
+                        merged, now, LocalDate.ofInstant(now, ZoneOffset.UTC));
+                try {
+                    if (publish(snapshot, timestamp)) {
+                        published++;
+                    }
+                } catch (Exception e) {
+                    logger.error("Erro ao serializar snapshot no modo contínuo: serviceId={}", serviceId, e);
+                }
+            }
+
+            logger.debug("{} de {} snapshots publicados pelo modo contínuo", published, dirtyServices.size());
+        }
+
+        /**
+         * Publica o snapshot se o fingerprint mudou, com as mesmas regras do SnapshotChangePublisher.
+         * @return true se publicado em governance.activity.snapshot, false se inalterado
+         */
+        private boolean publish(ServiceActivitySnapshot snapshot, long timestamp) throws Exception {
+            String serviceId = snapshot.getServiceId();
+            String fingerprint = SnapshotFingerprint.of(snapshot);
+            Long lastSeen = snapshot.getLastSeen() != null ? snapshot.getLastSeen().toEpochMilli() : null;
+            String stored = publishedStore.get(serviceId);
+            PublishedSnapshot previous = stored != null ? PublishedSnapshot.parse(stored) : null;
+
+            boolean changed = !changeDetectionEnabled || previous == null || !previous.fingerprint.equals(fingerprint);
+            if (!changed && (previous.lastSeen == null || lastSeen == null || previous.lastSeen >= Instant
+                    .ofEpochMilli(lastSeen).minus(latestRefreshDays, ChronoUnit.DAYS).toEpochMilli())) {
+                return false;
+            }
+
+            // Alterado: snapshot e latest; inalterado com lastSeen defasado: apenas o latest
+            String value = schemaCodecs.writeSnapshotAsString(snapshot);
+            if (changed) {
+                context.forward(new Record<>(serviceId, value, timestamp), SNAPSHOT_SINK);
+            }
+            RecordHeaders headers = new RecordHeaders();
+            headers.add("fingerprint", fingerprint.getBytes(StandardCharsets.UTF_8));
+            if (lastSeen != null) {
+                headers.add("last-seen", String.valueOf(lastSeen).getBytes(StandardCharsets.UTF_8));
+            }
+            context.forward(new Record<>(serviceId, value, timestamp, headers), LATEST_SINK);
+            publishedStore.put(serviceId, new PublishedSnapshot(fingerprint, lastSeen).format());
+            return changed;
+        }
+    }
+
+    /**
+     * Fingerprint e lastSeen (epoch ms) do último snapshot publicado, gravados como
+     * "fingerprint:lastSeen" (lastSeen vazio se ausente): os mesmos campos dos headers do latest.
+     */
+    private static final class PublishedSnapshot {
+        private final String fingerprint;
+        private final Long lastSeen;
+
+        private PublishedSnapshot(String fingerprint, Long lastSeen) {
+            this.fingerprint = fingerprint;
+            this.lastSeen = lastSeen;
+        }
+
+        private String format() {
+            return fingerprint + ':' + (lastSeen != null ? lastSeen : "");
+        }
+
+        private static PublishedSnapshot parse(String value) {
+            int separator = value.indexOf(':');
+            String lastSeen = value.substring(separator + 1);
+            return new PublishedSnapshot(value.substring(0, separator),
+                    lastSeen.isEmpty() ? null : Long.parseLong(lastSeen));
+        }
+    }
+
+    /**
+     * Serde binário do acumulador para o state store (ver ServiceActivityAccumulator#writeTo).
+     */
+    static Serde<ServiceActivityAccumulator> accumulatorSerde() {
+        return Serdes.serdeFrom(
+                (topic, accumulator) -> {
+                    if (accumulator == null) {
+                        return null;
+                    }
+                    try {
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        accumulator.writeTo(new DataOutputStream(bytes));
+                        return bytes.toByteArray();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                },
+                (topic, data) -> {
+                    if (data == null) {
+                        return null;
+                    }
+                    try {
+                        return ServiceActivityAccumulator.readFrom(new DataInputStream(new ByteArrayInputStream(data)));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+}
@@ -0,0 +1,305 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Tabela de acumuladores por serviço com memória limitada.
+ *
+ * Enquanto a estimativa de memória fica abaixo do orçamento, agrupa em um HashMap.
+ * Ao ultrapassá-lo, grava a tabela ordenada por serviceId em um arquivo de run
+ * (FileChannel, formato binário de ServiceActivityAccumulator#writeTo) e esvazia o mapa.
+ * No final, os runs e o conteúdo em memória são combinados por merge k-way,
+ * entregando exatamente um acumulador por serviço.
+ */
+public class SpillingAccumulatorTable implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpillingAccumulatorTable.class);
+
+    private static final int IO_BUFFER_BYTES = 64 * 1024;
+
+    private final long memoryBudgetBytes;
+    private final Path spillDir;
+    private final Map<String, ServiceActivityAccumulator> accumulators = new HashMap<>();
+    private final List<Path> runs = new ArrayList<>();
+    private long estimatedBytes;
+
+    public SpillingAccumulatorTable(long memoryBudgetBytes, Path spillDir) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.spillDir = spillDir;
+    }
+
+    /**
+     * Incorpora um evento ao acumulador do seu serviço.
+     */
+    public void add(ServiceActivityEvent event) {
+        ServiceActivityAccumulator accumulator = accumulatorFor(event.getServiceId());
+        long before = accumulator.estimatedSizeBytes();
+        accumulator.add(event);
+        track(accumulator, before);
+    }
+
+    public void add(ActivityProjection event) {
+        ServiceActivityAccumulator accumulator = accumulatorFor(event.getServiceId());
+        long before = accumulator.estimatedSizeBytes();
+        accumulator.add(event);
+        track(accumulator, before);
+    }
+
+    /**
+     * Incorpora um evento anterior à janela apenas aos buckets diários do serviço.
+     */
+    public void addHistory(ServiceActivityEvent event) {
+        ServiceActivityAccumulator accumulator = accumulatorFor(event.getServiceId());
+        long before = accumulator.estimatedSizeBytes();
+        accumulator.addHistory(event);
+        track(accumulator, before);
+    }
+
+    public void addHistory(ActivityProjection event) {
+        ServiceActivityAccumulator accumulator = accumulatorFor(event.getServiceId());
+        long before = accumulator.estimatedSizeBytes();
+        accumulator.addHistory(event);
+        track(accumulator, before);
+    }
+
+    private ServiceActivityAccumulator accumulatorFor(String serviceId) {
+        ServiceActivityAccumulator accumulator = accumulators.get(serviceId);
+        if (accumulator == null) {
+            accumulator = new ServiceActivityAccumulator(serviceId);
+            accumulators.put(serviceId, accumulator);
+            // Acumulador novo: conta também o cabeçalho
+            estimatedBytes += accumulator.estimatedSizeBytes();
+        }
+        return accumulator;
+    }
+
+    /**
+     * Incorpora um acumulador parcial (ex.: estado restaurado de checkpoint).
+     */
+    public void merge(ServiceActivityAccumulator partial) {
+        ServiceActivityAccumulator accumulator = accumulators.get(partial.getServiceId());
+        if (accumulator == null) {
+            accumulators.put(partial.getServiceId(), partial);
+            track(partial, 0);
+            return;
+        }
+        long before = accumulator.estimatedSizeBytes();
+        accumulator.merge(partial);
+        track(accumulator, before);
+    }
+
+    private void track(ServiceActivityAccumulator accumulator, long sizeBefore) {
+        estimatedBytes += accumulator.estimatedSizeBytes() - sizeBefore;
+        if (estimatedBytes > memoryBudgetBytes) {
+            spill();
+        }
+    }
+
+    /**
+     * Grava a tabela em memória como um run ordenado por serviceId.
+     */
+    private void spill() {
+        List<ServiceActivityAccumulator> sorted = new ArrayList<>(accumulators.values());
+        sorted.sort(Comparator.comparing(ServiceActivityAccumulator::getServiceId));
+
+        try {
+            Files.createDirectories(spillDir);
+            Path run = Files.createTempFile(spillDir, "consolidation-spill-", ".run");
+            runs.add(run);
+            try (FileChannel channel = FileChannel.open(run, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 DataOutputStream out = new DataOutputStream(
+                         new BufferedOutputStream(Channels.newOutputStream(channel), IO_BUFFER_BYTES))) {
+                out.writeInt(sorted.size());
+                for (ServiceActivityAccumulator accumulator : sorted) {
+                    accumulator.writeTo(out);
+                }
+            }
+            logger.info("Tabela de acumuladores excedeu {} bytes: run {} gravado com {} serviços ({} bytes estimados)",
+                    memoryBudgetBytes, runs.size(), sorted.size(), estimatedBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao gravar run de consolidação em " + spillDir, e);
+        }
+
+        accumulators.clear();
+        estimatedBytes = 0;
+    }
+
+    /**
+     * Entrega um acumulador consolidado por serviço, em ordem de serviceId
+     * quando houve spill (merge k-way) ou em ordem arbitrária caso contrário.
+     */
+    public void forEachMerged(Consumer<ServiceActivityAccumulator> action) {
+        if (runs.isEmpty()) {
+            accumulators.values().forEach(action);
+            return;
+        }
+
+        List<RunCursor> cursors = new ArrayList<>();
+        try {
+            for (Path run : runs) {
+                cursors.add(RunCursor.open(run));
+            }
+            List<ServiceActivityAccumulator> inMemory = new ArrayList<>(accumulators.values());
+            inMemory.sort(Comparator.comparing(ServiceActivityAccumulator::getServiceId));
+            cursors.add(RunCursor.of(inMemory));
+
+            PriorityQueue<RunCursor> heap = new PriorityQueue<>(
+                    Comparator.comparing((RunCursor cursor) -> cursor.current().getServiceId()));
+            for (RunCursor cursor : cursors) {
+                if (cursor.advance()) {
+                    heap.add(cursor);
+                }
+            }
+
+            while (!heap.isEmpty()) {
+                RunCursor head = heap.poll();
+                ServiceActivityAccumulator merged = head.current();
+                if (head.advance()) {
+                    heap.add(head);
+                }
+                while (!heap.isEmpty() && heap.peek().current().getServiceId().equals(merged.getServiceId())) {
+                    RunCursor next = heap.poll();
+                    merged.merge(next.current());
+                    if (next.advance()) {
+                        heap.add(next);
+                    }
+                }
+                action.accept(merged);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao ler runs de consolidação", e);
+        } finally {
+            cursors.forEach(RunCursor::closeQuietly);
+        }
+    }
+
+    /**
+     * Acumuladores ainda em memória (desde o último spill).
+     */
+    public Collection<ServiceActivityAccumulator> inMemory() {
+        return Collections.unmodifiableCollection(accumulators.values());
+    }
+
+    public boolean hasSpilled() {
+        return !runs.isEmpty();
+    }
+
+    public int getSpillCount() {
+        return runs.size();
+    }
+
+    /**
+     * Serviços com acumulador em memória (desde o último spill). Não inclui os runs em disco:
+     * após um spill, o total de serviços só é conhecido no merge (forEachMerged).
+     */
+    public int inMemorySize() {
+        return accumulators.size();
+    }
+
+    /**
+     * Remove os arquivos de run.
+     */
+    @Override
+    public void close() {
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                logger.warn("Erro ao remover run de consolidação: {}", run, e);
+            }
+        }
+        runs.clear();
+        accumulators.clear();
+        estimatedBytes = 0;
+    }
+
+    /**
+     * Cursor sequencial sobre um run ordenado (arquivo ou lista em memória).
+     */
+    private abstract static class RunCursor {
+
+        private ServiceActivityAccumulator current;
+
+        static RunCursor open(Path run) throws IOException {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(FileChannel.open(run, StandardOpenOption.READ)), IO_BUFFER_BYTES));
+            int count = in.readInt();
+            return new RunCursor() {
+                private int remaining = count;
+
+                @Override
+                ServiceActivityAccumulator next() throws IOException {
+                    return remaining-- > 0 ? ServiceActivityAccumulator.readFrom(in) : null;
+                }
+
+                @Override
+                void close() throws IOException {
+                    in.close();
+                }
+            };
+        }
+
+        static RunCursor of(List<ServiceActivityAccumulator> sorted) {
+            return new RunCursor() {
+                private int index;
+
+                @Override
+                ServiceActivityAccumulator next() {
+                    return index < sorted.size() ? sorted.get(index++) : null;
+                }
+
+                @Override
+                void close() {
+                }
+            };
+        }
+
+        abstract ServiceActivityAccumulator next() throws IOException;
+
+        abstract void close() throws IOException;
+
+        boolean advance() {
+            try {
+                current = next();
+                return current != null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        ServiceActivityAccumulator current() {
+            return current;
+        }
+
+        void closeQuietly() {
+            try {
+                close();
+            } catch (IOException e) {
+                logger.debug("Erro ao fechar run de consolidação", e);
+            }
+        }
+    }
+}
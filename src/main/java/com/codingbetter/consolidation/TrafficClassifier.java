@@ -24,11 +24,19 @@ public class TrafficClassifier {
      * - lastSeen > 30 dias → NO_TRAFFIC
      */
     public ServiceActivitySnapshot.Classification classify(Instant lastSeen) {
+        return classify(lastSeen, Instant.now());
+    }
+
+    /**
+     * Classifica um serviço em relação a um instante de referência explícito
+     * (ex.: fim do dia de um snapshot histórico em backfill).
+     */
+    public ServiceActivitySnapshot.Classification classify(Instant lastSeen, Instant referenceTime) {
         if (lastSeen == null) {
             return ServiceActivitySnapshot.Classification.NO_TRAFFIC;
         }
 
-        long daysSinceLastSeen = ChronoUnit.DAYS.between(lastSeen, Instant.now());
+        long daysSinceLastSeen = ChronoUnit.DAYS.between(lastSeen, referenceTime);
 
         if (daysSinceLastSeen <= ACTIVE_THRESHOLD_DAYS) {
             return ServiceActivitySnapshot.Classification.ACTIVE;
@@ -3,6 +3,7 @@ package com.codingbetter.finops;
 import com.codingbetter.schemas.v1.CostOptimizationRecommendation;
 import com.codingbetter.schemas.v1.ServiceFinOpsMetrics;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,11 +23,11 @@ public class EconomyReportGenerator {
 
     private static final Logger logger = LoggerFactory.getLogger(EconomyReportGenerator.class);
 
-    private final ObjectMapper objectMapper;
+    // Writer próprio com indentação: não altera o ObjectMapper compartilhado (payloads do Kafka)
+    private final ObjectWriter reportWriter;
 
     public EconomyReportGenerator(ObjectMapper objectMapper) {
-        this.objectMapper = objectMapper;
-        this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        this.reportWriter = objectMapper.writerFor(EconomyReport.class).with(SerializationFeature.INDENT_OUTPUT);
     }
 
     /**
@@ -89,7 +90,7 @@ public class EconomyReportGenerator {
      */
     public String exportToJson(EconomyReport report) {
         try {
-            return objectMapper.writeValueAsString(report);
+            return reportWriter.writeValueAsString(report);
         } catch (Exception e) {
             logger.error("Erro ao exportar relatório para JSON", e);
             throw new RuntimeException("Erro ao exportar relatório", e);
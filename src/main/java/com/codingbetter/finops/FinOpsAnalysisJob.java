@@ -2,6 +2,7 @@ package com.codingbetter.finops;
 
 import com.codingbetter.discovery.RepositoryCatalog;
 import com.codingbetter.kafka.KafkaProducer;
+import com.codingbetter.schemas.SchemaCodecs;
 import com.codingbetter.schemas.v1.CostOptimizationRecommendation;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -32,6 +33,7 @@ public class FinOpsAnalysisJob {
     private final EconomyReportGenerator reportGenerator;
     private final KafkaProducer kafkaProducer;
     private final MeterRegistry meterRegistry;
+    private final SchemaCodecs schemaCodecs;
 
     // Métricas Prometheus
     private final Counter servicesAnalyzedCounter;
@@ -42,12 +44,14 @@ public class FinOpsAnalysisJob {
             OptimizationRecommender optimizationRecommender,
             EconomyReportGenerator reportGenerator,
             KafkaProducer kafkaProducer,
-            MeterRegistry meterRegistry) {
+            MeterRegistry meterRegistry,
+            SchemaCodecs schemaCodecs) {
         this.repositoryCatalog = repositoryCatalog;
         this.optimizationRecommender = optimizationRecommender;
         this.reportGenerator = reportGenerator;
         this.kafkaProducer = kafkaProducer;
         this.meterRegistry = meterRegistry;
+        this.schemaCodecs = schemaCodecs;
 
         // Inicializa métricas
         this.servicesAnalyzedCounter = Counter.builder("finops_services_analyzed_total")
@@ -137,7 +141,7 @@ public class FinOpsAnalysisJob {
             }
 
             try {
-                String message = kafkaProducer.getObjectMapper().writeValueAsString(recommendation);
+                String message = schemaCodecs.writeRecommendation(recommendation);
                 kafkaProducer.send("governance.finops.recommendations", recommendation.getServiceId(), message);
                 
                 // Atualiza métrica por tipo
@@ -0,0 +1,161 @@
+package com.codingbetter.kafka;
+
+import com.codingbetter.schemas.v1.ActivityEventEnvelope;
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estágio reativo de publicação dos eventos de uma janela de extração em governance.activity.raw.
+ *
+ * - No máximo maxInFlight envios aguardando confirmação do broker: o flatMap só pede novos
+ *   eventos ao pipeline (e, por ele, ao orchestrateExtraction) quando envios são confirmados,
+ *   de modo que uma lentidão do broker vira backpressure em vez de buffer no KafkaTemplate.
+ * - Ao fim da janela, flush do produtor: o último lote sai sem esperar o linger.
+ * - O Mono só completa quando todos os envios foram confirmados (acks=all) ou falharam,
+ *   com as contagens da janela.
+ * - Com kafka.envelope.enabled, cada bloco de até envelopeMaxEvents eventos é agrupado por
+ *   partição e janela, e cada grupo vira um único registro (envelope colunar, ver
+ *   SchemaRegistry): menos requisições ao broker e menos overhead por registro no tópico raw.
+ *   Eventos sem service.id ou janela completa continuam como registros individuais.
+ */
+@Component
+public class ActivityEventPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActivityEventPublisher.class);
+
+    private final KafkaProducer kafkaProducer;
+    private final int maxInFlight;
+    private final boolean envelopeEnabled;
+    private final int envelopeMaxEvents;
+
+    public ActivityEventPublisher(
+            KafkaProducer kafkaProducer,
+            @Value("${kafka.publish.max-in-flight:512}") int maxInFlight,
+            @Value("${kafka.envelope.enabled:false}") boolean envelopeEnabled,
+            @Value("${kafka.envelope.max-events:2000}") int envelopeMaxEvents) {
+        this.kafkaProducer = kafkaProducer;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.envelopeEnabled = envelopeEnabled;
+        this.envelopeMaxEvents = Math.max(1, envelopeMaxEvents);
+    }
+
+    /**
+     * Publica os eventos da janela.
+     * Falhas de envio são contadas (e registradas pelo KafkaProducer) sem interromper a janela;
+     * erros do pipeline de origem são propagados.
+     */
+    public Mono<WindowPublishResult> publishWindow(Flux<ServiceActivityEvent> events) {
+        return Mono.defer(() -> {
+            AtomicLong published = new AtomicLong();
+            AtomicLong failed = new AtomicLong();
+            long startNanos = System.nanoTime();
+
+            // Unidade de envio: um evento, ou os eventos de um envelope
+            Flux<List<ServiceActivityEvent>> sends = envelopeEnabled
+                    ? events.buffer(envelopeMaxEvents).concatMapIterable(this::groupByPartitionAndWindow)
+                    : events.map(List::of);
+
+            return sends
+                    .concatWith(flushProducer())
+                    .flatMap(send -> Mono.fromFuture(() -> publish(send))
+                                    .doOnSuccess(result -> published.addAndGet(send.size()))
+                                    .onErrorResume(error -> {
+                                        failed.addAndGet(send.size());
+                                        return Mono.empty();
+                                    }),
+                            maxInFlight)
+                    .then(Mono.fromSupplier(() -> new WindowPublishResult(published.get(), failed.get(),
+                            Duration.ofNanos(System.nanoTime() - startNanos))));
+        });
+    }
+
+    private CompletableFuture<SendResult<String, byte[]>> publish(List<ServiceActivityEvent> send) {
+        if (send.size() == 1) {
+            return kafkaProducer.publishActivityEvent(send.get(0));
+        }
+        return kafkaProducer.publishActivityEnvelope(
+                kafkaProducer.partitionForActivity(send.get(0).getServiceId()), send);
+    }
+
+    /**
+     * Agrupa um bloco de eventos por partição de destino e janela (início e fim exatos),
+     * na ordem de chegada. Eventos que não cabem em envelope formam grupos unitários.
+     */
+    private List<List<ServiceActivityEvent>> groupByPartitionAndWindow(List<ServiceActivityEvent> events) {
+        Map<String, List<ServiceActivityEvent>> groups = new LinkedHashMap<>();
+        List<List<ServiceActivityEvent>> sends = new ArrayList<>();
+        for (ServiceActivityEvent event : events) {
+            if (!ActivityEventEnvelope.accepts(event)) {
+                sends.add(List.of(event));
+                continue;
+            }
+            String key = kafkaProducer.partitionForActivity(event.getServiceId()) + ":"
+                    + event.getWindow().getStart().toEpochMilli() + ":" + event.getWindow().getEnd().toEpochMilli();
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(event);
+        }
+        sends.addAll(groups.values());
+        return sends;
+    }
+
+    /**
+     * Flush ao fim dos eventos da janela, fora da thread do pipeline (flush bloqueia).
+     */
+    private Mono<List<ServiceActivityEvent>> flushProducer() {
+        return Mono.<List<ServiceActivityEvent>>fromRunnable(kafkaProducer::flushPayloads)
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(error -> {
+                    logger.warn("Erro no flush do produtor ao fim da janela", error);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Resultado da publicação de uma janela.
+     */
+    public static class WindowPublishResult {
+
+        private final long published;
+        private final long failed;
+        private final Duration duration;
+
+        public WindowPublishResult(long published, long failed, Duration duration) {
+            this.published = published;
+            this.failed = failed;
+            this.duration = duration;
+        }
+
+        public long getPublished() {
+            return published;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public Duration getDuration() {
+            return duration;
+        }
+
+        /**
+         * Todos os eventos da janela foram confirmados pelo broker.
+         */
+        public boolean isComplete() {
+            return failed == 0;
+        }
+    }
+}
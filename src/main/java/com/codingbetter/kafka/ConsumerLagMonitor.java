@@ -0,0 +1,146 @@
+package com.codingbetter.kafka;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publica o lag dos consumer groups do pipeline no Micrometer/Prometheus:
+ * - kafka_consumer_group_lag {group, topic, partition}: end offset - offset commitado
+ * - kafka_consumer_group_lag_total {group}: soma das partições, alvo externo dos HPAs
+ *   (escala pelo backlog, não por CPU)
+ *
+ * Lido via AdminClient (offsets commitados e end offsets), independente de quais partições
+ * estão atribuídas a este pod: todas as réplicas publicam o mesmo valor, e o HPA usa o máximo.
+ */
+@Component
+public class ConsumerLagMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsumerLagMonitor.class);
+
+    private final AdminClient adminClient;
+    private final MeterRegistry meterRegistry;
+
+    // Valores dos gauges (referência forte: o registry guarda apenas referência fraca)
+    private final Map<String, AtomicLong> partitionLag = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> groupLag = new ConcurrentHashMap<>();
+
+    @Value("${kafka.lag-monitor.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${kafka.lag-monitor.groups:governance-consolidation,governance-backstage,governance-backstage-activity,governance-consolidation-workers}")
+    private List<String> groups = List.of();
+
+    @Value("${kafka.lag-monitor.timeout-seconds:10}")
+    private int timeoutSeconds = 10;
+
+    public ConsumerLagMonitor(
+            MeterRegistry meterRegistry,
+            @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers) {
+        this.meterRegistry = meterRegistry;
+        Map<String, Object> config = new HashMap<>();
+        config.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        this.adminClient = AdminClient.create(config);
+    }
+
+    /**
+     * Atualiza o lag de todos os grupos monitorados.
+     */
+    @Scheduled(fixedRateString = "${kafka.lag-monitor.interval-seconds:30}000", initialDelay = 30000)
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        for (String group : groups) {
+            try {
+                refreshGroup(group);
+            } catch (Exception e) {
+                logger.warn("Erro ao calcular lag do consumer group {}", group, e);
+            }
+        }
+    }
+
+    private void refreshGroup(String group) throws Exception {
+        Map<TopicPartition, OffsetAndMetadata> committed = adminClient.listConsumerGroupOffsets(group)
+                .partitionsToOffsetAndMetadata()
+                .get(timeoutSeconds, TimeUnit.SECONDS);
+        if (committed.isEmpty()) {
+            return;
+        }
+
+        Map<TopicPartition, OffsetSpec> request = new HashMap<>();
+        committed.keySet().forEach(partition -> request.put(partition, OffsetSpec.latest()));
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> endOffsets = adminClient.listOffsets(request)
+                .all()
+                .get(timeoutSeconds, TimeUnit.SECONDS);
+
+        long total = 0;
+        for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : committed.entrySet()) {
+            TopicPartition partition = entry.getKey();
+            ListOffsetsResult.ListOffsetsResultInfo end = endOffsets.get(partition);
+            if (entry.getValue() == null || end == null) {
+                continue;
+            }
+            long lag = Math.max(0, end.offset() - entry.getValue().offset());
+            total += lag;
+            partitionGauge(group, partition).set(lag);
+        }
+        groupGauge(group).set(total);
+        logger.debug("Lag do consumer group {}: {} registros em {} partições", group, total, committed.size());
+    }
+
+    private AtomicLong partitionGauge(String group, TopicPartition partition) {
+        return partitionLag.computeIfAbsent(group + '|' + partition, key -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("kafka_consumer_group_lag", value, AtomicLong::get)
+                    .description("Lag do consumer group por partição (end offset - offset commitado)")
+                    .tags(Tags.of("group", group, "topic", partition.topic(),
+                            "partition", String.valueOf(partition.partition())))
+                    .register(meterRegistry);
+            return value;
+        });
+    }
+
+    private AtomicLong groupGauge(String group) {
+        return groupLag.computeIfAbsent(group, key -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("kafka_consumer_group_lag_total", value, AtomicLong::get)
+                    .description("Lag total do consumer group (alvo do HPA)")
+                    .tag("group", group)
+                    .register(meterRegistry);
+            return value;
+        });
+    }
+
+    /**
+     * Lag total atual de um grupo (-1 se ainda não calculado).
+     */
+    public long getGroupLag(String group) {
+        AtomicLong value = groupLag.get(group);
+        return value != null ? value.get() : -1;
+    }
+
+    @PreDestroy
+    public void close() {
+        adminClient.close();
+    }
+}
@@ -2,11 +2,14 @@ package com.codingbetter.kafka;
 
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
 import org.springframework.kafka.listener.ContainerProperties;
@@ -23,6 +26,40 @@ public class KafkaConfig {
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    // Perfil de fetch para replay em massa (consolidação)
+    @Value("${kafka.replay.max-poll-records:5000}")
+    private int replayMaxPollRecords;
+
+    @Value("${kafka.replay.fetch-max-bytes:52428800}")
+    private int replayFetchMaxBytes;
+
+    @Value("${kafka.replay.max-partition-fetch-bytes:10485760}")
+    private int replayMaxPartitionFetchBytes;
+
+    @Value("${kafka.replay.fetch-min-bytes:1048576}")
+    private int replayFetchMinBytes;
+
+    @Value("${kafka.replay.fetch-max-wait-ms:500}")
+    private int replayFetchMaxWaitMs;
+
+    @Value("${kafka.replay.receive-buffer-bytes:1048576}")
+    private int replayReceiveBufferBytes;
+
+    // Compressão do produtor de eventos/snapshots: gzip (padrão) | zstd | lz4 | snappy | none
+    @Value("${kafka.payload.compression-type:gzip}")
+    private String payloadCompressionType;
+
+    // Registros por poll (= tamanho do lote) dos listeners em lote
+    @Value("${kafka.listener.batch.max-poll-records:1000}")
+    private int batchMaxPollRecords;
+
+    // Lease de partição no modo distribuído: tempo máximo de processamento de um item
+    @Value("${consolidation.worker.lease-timeout-ms:3600000}")
+    private int workLeaseTimeoutMs;
+
+    @Value("${consolidation.worker.concurrency:1}")
+    private int workConcurrency;
+
     @Bean
     public ProducerFactory<String, String> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
@@ -43,7 +80,27 @@ public class KafkaConfig {
         return new KafkaTemplate<>(producerFactory());
     }
 
+    /**
+     * Produtor dos tópicos de atividade e snapshot: o payload já vem codificado
+     * (JSON ou binário, conforme kafka.wire-format.binary-topics; ver SchemaRegistry).
+     * A compressão é configurável à parte: com envelopes, zstd comprime um registro
+     * grande por lote em vez de muitos registros pequenos.
+     */
     @Bean
+    public ProducerFactory<String, byte[]> payloadProducerFactory() {
+        Map<String, Object> configProps = new HashMap<>(producerFactory().getConfigurationProperties());
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, payloadCompressionType);
+        return new DefaultKafkaProducerFactory<>(configProps);
+    }
+
+    @Bean
+    public KafkaTemplate<String, byte[]> payloadKafkaTemplate() {
+        return new KafkaTemplate<>(payloadProducerFactory());
+    }
+
+    @Bean
+    @Primary
     public ConsumerFactory<String, String> consumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
@@ -57,6 +114,40 @@ public class KafkaConfig {
         return new DefaultKafkaConsumerFactory<>(props);
     }
 
+    /**
+     * Consumer factory para leitura sequencial em massa (replay de partições).
+     * Separada da factory dos listeners: fetches grandes e lotes maiores por poll,
+     * para que o cliente mantenha o próximo fetch em andamento (prefetch) enquanto
+     * o lote atual é processado. Sem group.id: partições são atribuídas via assign().
+     */
+    @Bean
+    public ConsumerFactory<String, String> replayConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, replayMaxPollRecords);
+        props.put(ConsumerConfig.FETCH_MAX_BYTES_CONFIG, replayFetchMaxBytes);
+        props.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, replayMaxPartitionFetchBytes);
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, replayFetchMinBytes);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, replayFetchMaxWaitMs);
+        props.put(ConsumerConfig.RECEIVE_BUFFER_CONFIG, replayReceiveBufferBytes);
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
+    /**
+     * Variante de replayConsumerFactory com payload em bytes, para tópicos que podem estar
+     * em formato binário (a decodificação detecta o formato pelo primeiro byte).
+     */
+    @Bean
+    public ConsumerFactory<String, byte[]> replayPayloadConsumerFactory() {
+        Map<String, Object> props = new HashMap<>(replayConsumerFactory().getConfigurationProperties());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, String> factory =
@@ -66,5 +157,44 @@ public class KafkaConfig {
         factory.setConcurrency(5); // Permite processamento paralelo
         return factory;
     }
-}
 
+    /**
+     * Container em lote dos listeners de governance.activity.raw e governance.activity.snapshot:
+     * payload em bytes (JSON ou binário), decodificado via SchemaRegistry.
+     * Cada chamada recebe o resultado de um poll inteiro; com AckMode.MANUAL,
+     * um único acknowledge() confirma o lote.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> payloadBatchListenerContainerFactory() {
+        Map<String, Object> props = new HashMap<>(consumerFactory().getConfigurationProperties());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchMaxPollRecords);
+
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(props));
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.setConcurrency(5);
+        return factory;
+    }
+
+    /**
+     * Container dos itens de trabalho da consolidação distribuída.
+     * Um item por poll e max.poll.interval.ms = lease: se o processamento de uma partição
+     * exceder o lease, o consumer sai do grupo e o item é reatribuído a outro pod.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> consolidationWorkListenerContainerFactory() {
+        Map<String, Object> props = new HashMap<>(consumerFactory().getConfigurationProperties());
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1);
+        props.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, workLeaseTimeoutMs);
+
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(props));
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
+        factory.setConcurrency(workConcurrency);
+        return factory;
+    }
+}
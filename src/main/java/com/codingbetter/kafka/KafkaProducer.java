@@ -1,33 +1,66 @@
 package com.codingbetter.kafka;
 
+import com.codingbetter.schemas.SchemaCodecs;
+import com.codingbetter.schemas.SchemaRegistry;
 import com.codingbetter.schemas.v1.ServiceActivityEvent;
 import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 
 /**
  * Produtor Kafka para eventos de atividade e snapshots.
  * Particionamento por service.id para distribuição uniforme.
+ *
+ * Eventos e snapshots são codificados por tópico: JSON (padrão) ou binário compacto para os
+ * tópicos listados em kafka.wire-format.binary-topics (ver SchemaRegistry). Em ambos os casos
+ * os registros levam os headers "schema" e "source"; eventos levam também o "event-id"
+ * determinístico (serviço, origem e janela), usado na supressão de duplicatas.
+ * Com kafka.envelope.enabled, o ActivityEventPublisher agrupa os eventos de uma janela em
+ * envelopes por partição (publishActivityEnvelope).
  */
 @Component
 public class KafkaProducer {
 
     private static final Logger logger = LoggerFactory.getLogger(KafkaProducer.class);
 
+    // Origem registrada no header "source" dos snapshots
+    private static final String SNAPSHOT_SOURCE = "consolidation";
+
+    private static final String ACTIVITY_TOPIC = "governance.activity.raw";
+
     private final KafkaTemplate<String, String> kafkaTemplate;
+    private final KafkaTemplate<String, byte[]> payloadKafkaTemplate;
     private final ObjectMapper objectMapper;
+    private final SchemaCodecs schemaCodecs;
+
+    @Value("${kafka.wire-format.binary-topics:}")
+    private List<String> binaryTopics = List.of();
 
-    public KafkaProducer(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper) {
+    // Janela de agregação usada no alinhamento do event-id
+    @Value("${aggregation.temporal-window-minutes:5}")
+    private int windowMinutes = 5;
+
+    public KafkaProducer(KafkaTemplate<String, String> kafkaTemplate,
+                         KafkaTemplate<String, byte[]> payloadKafkaTemplate,
+                         ObjectMapper objectMapper,
+                         SchemaCodecs schemaCodecs) {
         this.kafkaTemplate = kafkaTemplate;
+        this.payloadKafkaTemplate = payloadKafkaTemplate;
         this.objectMapper = objectMapper;
+        this.schemaCodecs = schemaCodecs;
     }
 
     /**
@@ -35,19 +68,24 @@ public class KafkaProducer {
      * Particionamento por service.id garante que eventos do mesmo serviço
      * vão para a mesma partição, permitindo processamento ordenado.
      */
-    public CompletableFuture<SendResult<String, String>> publishActivityEvent(ServiceActivityEvent event) {
+    public CompletableFuture<SendResult<String, byte[]>> publishActivityEvent(ServiceActivityEvent event) {
         try {
-            String json = objectMapper.writeValueAsString(event);
-            ProducerRecord<String, String> record = new ProducerRecord<>(
-                    "governance.activity.raw",
+            ProducerRecord<String, byte[]> record = payloadRecord(
+                    ACTIVITY_TOPIC,
                     event.getServiceId(), // Key para particionamento
-                    json
+                    event,
+                    event.getMetadata() != null ? event.getMetadata().getSource() : null
             );
+            String eventId = SchemaRegistry.eventId(event, windowMinutes);
+            if (eventId != null) {
+                // Id determinístico: a consolidação descarta republicações da mesma janela
+                record.headers().add(SchemaRegistry.HEADER_EVENT_ID, eventId.getBytes(StandardCharsets.US_ASCII));
+            }
 
             logger.debug("Publicando evento de atividade: serviceId={}, partition={}",
                     event.getServiceId(), record.partition());
 
-            return kafkaTemplate.send(record)
+            return payloadKafkaTemplate.send(record)
                     .whenComplete((result, ex) -> {
                         if (ex != null) {
                             logger.error("Erro ao publicar evento de atividade: serviceId={}",
@@ -64,22 +102,80 @@ public class KafkaProducer {
         }
     }
 
+    /**
+     * Publica um envelope com vários eventos da mesma janela em uma única mensagem do tópico raw.
+     * O registro não tem chave: vai explicitamente para a partição de todos os seus serviços
+     * (ver partitionForActivity), a mesma que receberiam como registros individuais.
+     */
+    public CompletableFuture<SendResult<String, byte[]>> publishActivityEnvelope(
+            int partition, List<ServiceActivityEvent> events) {
+        long[] eventIds = new long[events.size()];
+        String source = null;
+        for (int i = 0; i < events.size(); i++) {
+            ServiceActivityEvent event = events.get(i);
+            eventIds[i] = SchemaRegistry.parseEventId(SchemaRegistry.eventId(event, windowMinutes));
+            String eventSource = event.getMetadata() != null ? event.getMetadata().getSource() : null;
+            source = i == 0 || Objects.equals(source, eventSource) ? eventSource : null;
+        }
+
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(ACTIVITY_TOPIC, partition, null,
+                SchemaRegistry.encodeEnvelope(events, eventIds));
+        record.headers().add(SchemaRegistry.HEADER_SCHEMA,
+                SchemaRegistry.SERVICE_ACTIVITY_ENVELOPE_V1.getBytes(StandardCharsets.UTF_8));
+        if (source != null) {
+            record.headers().add(SchemaRegistry.HEADER_SOURCE, source.getBytes(StandardCharsets.UTF_8));
+        }
+
+        logger.debug("Publicando envelope de atividade: partition={}, eventos={}, bytes={}",
+                partition, events.size(), record.value().length);
+
+        return payloadKafkaTemplate.send(record)
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        logger.error("Erro ao publicar envelope de atividade: partition={}, eventos={}",
+                                partition, events.size(), ex);
+                    }
+                });
+    }
+
+    /**
+     * Partição do tópico raw de um serviço: mesmo hash do partitioner padrão para a chave service.id.
+     */
+    public int partitionForActivity(String serviceId) {
+        int partitions = payloadKafkaTemplate.partitionsFor(ACTIVITY_TOPIC).size();
+        return Utils.toPositive(Utils.murmur2(serviceId.getBytes(StandardCharsets.UTF_8))) % partitions;
+    }
+
     /**
      * Publica snapshot consolidado no tópico de snapshots.
      */
-    public CompletableFuture<SendResult<String, String>> publishSnapshot(ServiceActivitySnapshot snapshot) {
+    public CompletableFuture<SendResult<String, byte[]>> publishSnapshot(ServiceActivitySnapshot snapshot) {
+        return publishSnapshot("governance.activity.snapshot", snapshot);
+    }
+
+    /**
+     * Publica snapshot histórico (backfill) em tópico próprio: snapshots de datas as-of passadas
+     * não passam pelos consumidores de governance.activity.snapshot (Backstage, métricas),
+     * que aplicam o último snapshot recebido como classificação atual.
+     */
+    public CompletableFuture<SendResult<String, byte[]>> publishBackfillSnapshot(ServiceActivitySnapshot snapshot) {
+        return publishSnapshot("governance.activity.snapshot.backfill", snapshot);
+    }
+
+    private CompletableFuture<SendResult<String, byte[]>> publishSnapshot(
+            String topic, ServiceActivitySnapshot snapshot) {
         try {
-            String json = objectMapper.writeValueAsString(snapshot);
-            ProducerRecord<String, String> record = new ProducerRecord<>(
-                    "governance.activity.snapshot",
+            ProducerRecord<String, byte[]> record = payloadRecord(
+                    topic,
                     snapshot.getServiceId(), // Key para particionamento
-                    json
+                    snapshot,
+                    SNAPSHOT_SOURCE
             );
 
             logger.debug("Publicando snapshot: serviceId={}, classification={}",
                     snapshot.getServiceId(), snapshot.getClassification());
 
-            return kafkaTemplate.send(record)
+            return payloadKafkaTemplate.send(record)
                     .whenComplete((result, ex) -> {
                         if (ex != null) {
                             logger.error("Erro ao publicar snapshot: serviceId={}",
@@ -96,6 +192,70 @@ public class KafkaProducer {
         }
     }
 
+    /**
+     * Publica o snapshot no tópico compactado de último snapshot por serviço,
+     * com o fingerprint e o lastSeen em headers (permitem reconstruir o índice sem desserializar).
+     */
+    public CompletableFuture<SendResult<String, byte[]>> publishLatestSnapshot(
+            ServiceActivitySnapshot snapshot, String fingerprint) {
+        try {
+            ProducerRecord<String, byte[]> record = payloadRecord(
+                    "governance.activity.snapshot.latest",
+                    snapshot.getServiceId(),
+                    snapshot,
+                    SNAPSHOT_SOURCE
+            );
+            record.headers().add("fingerprint", fingerprint.getBytes(StandardCharsets.UTF_8));
+            if (snapshot.getLastSeen() != null) {
+                record.headers().add("last-seen", String.valueOf(snapshot.getLastSeen().toEpochMilli())
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+
+            return payloadKafkaTemplate.send(record)
+                    .whenComplete((result, ex) -> {
+                        if (ex != null) {
+                            logger.error("Erro ao publicar último snapshot: serviceId={}",
+                                    snapshot.getServiceId(), ex);
+                        }
+                    });
+        } catch (JsonProcessingException e) {
+            logger.error("Erro ao serializar snapshot: serviceId={}",
+                    snapshot.getServiceId(), e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Monta o registro com o payload no formato configurado para o tópico
+     * e os headers de schema e origem.
+     */
+    private ProducerRecord<String, byte[]> payloadRecord(
+            String topic, String key, Object value, String source) throws JsonProcessingException {
+        byte[] payload = schemaCodecs.encode(value, isBinary(topic));
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, key, payload);
+        record.headers().add(SchemaRegistry.HEADER_SCHEMA,
+                SchemaRegistry.schemaOf(value).getBytes(StandardCharsets.UTF_8));
+        if (source != null) {
+            record.headers().add(SchemaRegistry.HEADER_SOURCE, source.getBytes(StandardCharsets.UTF_8));
+        }
+        return record;
+    }
+
+    /**
+     * Envia imediatamente os registros de evento/snapshot retidos pelo linger e aguarda
+     * a conclusão das requisições em curso. Bloqueante.
+     */
+    public void flushPayloads() {
+        payloadKafkaTemplate.flush();
+    }
+
+    /**
+     * Indica se o tópico usa o formato binário compacto.
+     */
+    public boolean isBinary(String topic) {
+        return binaryTopics.contains(topic);
+    }
+
     /**
      * Publica mensagem genérica em um tópico.
      */
@@ -112,6 +272,22 @@ public class KafkaProducer {
                 });
     }
 
+    /**
+     * Publica mensagem genérica em uma partição específica de um tópico.
+     */
+    public CompletableFuture<SendResult<String, String>> send(String topic, int partition, String key, String message) {
+        ProducerRecord<String, String> record = new ProducerRecord<>(topic, partition, key, message);
+        return kafkaTemplate.send(record)
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        logger.error("Erro ao publicar mensagem no tópico {}[{}]: key={}", topic, partition, key, ex);
+                    } else {
+                        logger.debug("Mensagem publicada com sucesso: topic={}, partition={}, key={}, offset={}",
+                                topic, partition, key, result.getRecordMetadata().offset());
+                    }
+                });
+    }
+
     /**
      * Retorna o ObjectMapper para serialização.
      */
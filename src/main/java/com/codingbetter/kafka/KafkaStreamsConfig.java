@@ -0,0 +1,65 @@
+package com.codingbetter.kafka;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.kstream.KStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.annotation.EnableKafkaStreams;
+import org.springframework.kafka.annotation.KafkaStreamsDefaultConfiguration;
+import org.springframework.kafka.config.KafkaStreamsConfiguration;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuração do Kafka Streams.
+ * Ativada quando alguma topologia está habilitada:
+ * - consolidation.mode=continuous (SnapshotStreamTopology)
+ * - aggregation.rollup.enabled=true (ActivityRollupTopology)
+ */
+@Configuration
+@EnableKafkaStreams
+@ConditionalOnExpression("'${consolidation.mode:batch}' == 'continuous' or ${aggregation.rollup.enabled:false}")
+public class KafkaStreamsConfig {
+
+    @Value("${spring.kafka.bootstrap-servers}")
+    private String bootstrapServers;
+
+    @Value("${consolidation.streaming.application-id:governance-snapshot-stream}")
+    private String applicationId;
+
+    @Value("${consolidation.streaming.state-dir:/tmp/kafka-streams}")
+    private String stateDir;
+
+    @Value("${consolidation.streaming.num-stream-threads:2}")
+    private int numStreamThreads;
+
+    @Bean(name = KafkaStreamsDefaultConfiguration.DEFAULT_STREAMS_CONFIG_BEAN_NAME)
+    public KafkaStreamsConfiguration defaultKafkaStreamsConfig() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, applicationId);
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.StringSerde.class);
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.StringSerde.class);
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir);
+        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, numStreamThreads);
+        props.put(StreamsConfig.REPLICATION_FACTOR_CONFIG, 3);
+        return new KafkaStreamsConfiguration(props);
+    }
+
+    /**
+     * Registra todas as topologias habilitadas no mesmo StreamsBuilder.
+     */
+    @Bean
+    public List<KStream<String, String>> governanceStreams(StreamsBuilder streamsBuilder,
+                                                          List<StreamTopology> topologies) {
+        return topologies.stream()
+                .map(topology -> topology.build(streamsBuilder))
+                .toList();
+    }
+}
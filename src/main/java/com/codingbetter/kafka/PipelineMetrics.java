@@ -0,0 +1,98 @@
+package com.codingbetter.kafka;
+
+import com.codingbetter.kafka.ActivityEventPublisher.WindowPublishResult;
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Métricas de vazão do pipeline (Micrometer/Prometheus):
+ * - governance_consumer_records_total / governance_consumer_bytes_total {group, topic}:
+ *   registros e bytes consumidos pelos listeners (records/s e bytes/s via rate())
+ * - governance_event_age_seconds {group}: idade fim a fim do evento no consumo (agora - window.end)
+ * - governance_events_published_total {result}: envios do ExtractionService por resultado
+ *
+ * O lag por grupo/partição é publicado pelo ConsumerLagMonitor.
+ */
+@Component
+public class PipelineMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Counter> recordCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> byteCounters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> eventAgeTimers = new ConcurrentHashMap<>();
+    private final Counter publishedCounter;
+    private final Counter publishFailedCounter;
+
+    public PipelineMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+
+        this.publishedCounter = Counter.builder("governance_events_published_total")
+                .description("Eventos de atividade publicados em governance.activity.raw")
+                .tag("result", "success")
+                .register(meterRegistry);
+
+        this.publishFailedCounter = Counter.builder("governance_events_published_total")
+                .description("Eventos de atividade publicados em governance.activity.raw")
+                .tag("result", "failure")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registra um lote consumido por um listener.
+     */
+    public void recordBatch(String group, List<ConsumerRecord<String, byte[]>> records) {
+        for (ConsumerRecord<String, byte[]> record : records) {
+            String key = group + '|' + record.topic();
+            recordCounters.computeIfAbsent(key, k -> Counter.builder("governance_consumer_records_total")
+                    .description("Registros consumidos por grupo e tópico")
+                    .tags("group", group, "topic", record.topic())
+                    .register(meterRegistry))
+                    .increment();
+            long bytes = Math.max(0, record.serializedKeySize()) + Math.max(0, record.serializedValueSize());
+            byteCounters.computeIfAbsent(key, k -> Counter.builder("governance_consumer_bytes_total")
+                    .description("Bytes (chave + valor) consumidos por grupo e tópico")
+                    .baseUnit("bytes")
+                    .tags("group", group, "topic", record.topic())
+                    .register(meterRegistry))
+                    .increment(bytes);
+        }
+    }
+
+    /**
+     * Registra a idade dos eventos no momento do consumo (agora - timestamps.window.end).
+     */
+    public void recordEventAge(String group, List<ServiceActivityEvent> events) {
+        Timer timer = eventAgeTimers.computeIfAbsent(group, g -> Timer.builder("governance_event_age")
+                .description("Idade fim a fim do evento no consumo (agora - window.end)")
+                .tag("group", g)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofSeconds(1))
+                .maximumExpectedValue(Duration.ofDays(1))
+                .register(meterRegistry));
+        long now = Instant.now().toEpochMilli();
+        for (ServiceActivityEvent event : events) {
+            if (event.getWindow() != null && event.getWindow().getEnd() != null) {
+                timer.record(Duration.ofMillis(Math.max(0, now - event.getWindow().getEnd().toEpochMilli())));
+            }
+        }
+    }
+
+    /**
+     * Registra o resultado da publicação de uma janela de extração.
+     */
+    public void recordPublished(WindowPublishResult result) {
+        publishedCounter.increment(result.getPublished());
+        publishFailedCounter.increment(result.getFailed());
+    }
+}
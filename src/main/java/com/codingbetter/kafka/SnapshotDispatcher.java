@@ -0,0 +1,156 @@
+package com.codingbetter.kafka;
+
+import com.codingbetter.schemas.SchemaCodecs;
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Único consumidor de governance.activity.snapshot (grupo governance-backstage).
+ *
+ * Cada lote é decodificado uma vez e entregue a todos os SnapshotHandler registrados, cada um
+ * com sua fila limitada (kafka.snapshot-dispatcher.queue-capacity lotes) e sua thread de entrega.
+ * Com a fila de um handler cheia, o listener aguarda: o handler mais lento limita o consumo,
+ * sem descartar snapshots. O lote é confirmado após entrar em todas as filas; como no buffer
+ * do Backstage, lotes ainda em fila se perdem se o processo cair.
+ */
+@Component
+public class SnapshotDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotDispatcher.class);
+
+    private static final String GROUP = "governance-backstage";
+
+    private final SchemaCodecs schemaCodecs;
+    private final PipelineMetrics pipelineMetrics;
+    private final List<HandlerQueue> queues = new ArrayList<>();
+
+    private volatile boolean running = true;
+
+    @Value("${kafka.snapshot-dispatcher.shutdown-timeout-seconds:30}")
+    private long shutdownTimeoutSeconds = 30;
+
+    public SnapshotDispatcher(
+            SchemaCodecs schemaCodecs,
+            PipelineMetrics pipelineMetrics,
+            MeterRegistry meterRegistry,
+            ObjectProvider<SnapshotHandler> handlers,
+            @Value("${kafka.snapshot-dispatcher.queue-capacity:64}") int queueCapacity) {
+        this.schemaCodecs = schemaCodecs;
+        this.pipelineMetrics = pipelineMetrics;
+        handlers.orderedStream().forEach(handler -> {
+            HandlerQueue queue = new HandlerQueue(handler, Math.max(1, queueCapacity));
+            Gauge.builder("governance_snapshot_handler_queue_size", queue.batches, BlockingQueue::size)
+                    .description("Lotes de snapshots aguardando o handler")
+                    .tag("handler", handler.getName())
+                    .register(meterRegistry);
+            queues.add(queue);
+        });
+        logger.info("Snapshots de governance.activity.snapshot despachados para {}",
+                queues.stream().map(queue -> queue.handler.getName()).toList());
+    }
+
+    @KafkaListener(
+            topics = "governance.activity.snapshot",
+            groupId = GROUP,
+            containerFactory = "payloadBatchListenerContainerFactory"
+    )
+    public void consumeSnapshots(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment) {
+        pipelineMetrics.recordBatch(GROUP, records);
+        List<ServiceActivitySnapshot> snapshots =
+                List.copyOf(schemaCodecs.decodeRecords(records, ServiceActivitySnapshot.class));
+        if (!snapshots.isEmpty()) {
+            dispatch(snapshots);
+        }
+        logger.debug("Lote de snapshots despachado: {} registros, {} decodificados",
+                records.size(), snapshots.size());
+        acknowledgment.acknowledge();
+    }
+
+    /**
+     * Enfileira o lote em todos os handlers, aguardando espaço nas filas cheias.
+     */
+    void dispatch(List<ServiceActivitySnapshot> snapshots) {
+        try {
+            for (HandlerQueue queue : queues) {
+                queue.batches.put(snapshots);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // Sem ack: o lote é relido após o rebalance
+            throw new IllegalStateException("Despacho de snapshots interrompido", e);
+        }
+    }
+
+    /**
+     * Entrega os lotes já enfileirados e encerra as threads dos handlers.
+     * Chamado após a parada dos listeners.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(shutdownTimeoutSeconds);
+        for (HandlerQueue queue : queues) {
+            long remaining = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            if (!queue.worker.join(Duration.ofMillis(remaining))) {
+                logger.warn("Handler {} não concluiu a tempo: {} lotes descartados",
+                        queue.handler.getName(), queue.batches.size());
+                queue.worker.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Fila limitada e thread de entrega de um handler.
+     */
+    private final class HandlerQueue {
+
+        private final SnapshotHandler handler;
+        private final BlockingQueue<List<ServiceActivitySnapshot>> batches;
+        private final Thread worker;
+
+        private HandlerQueue(SnapshotHandler handler, int capacity) {
+            this.handler = handler;
+            this.batches = new ArrayBlockingQueue<>(capacity);
+            this.worker = Thread.ofVirtual().name("snapshot-handler-" + handler.getName()).start(this::run);
+        }
+
+        private void run() {
+            try {
+                while (running || !batches.isEmpty()) {
+                    List<ServiceActivitySnapshot> batch = batches.poll(1, TimeUnit.SECONDS);
+                    if (batch != null) {
+                        deliver(batch);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void deliver(List<ServiceActivitySnapshot> batch) {
+            try {
+                handler.handle(batch);
+            } catch (Exception e) {
+                logger.error("Erro no handler de snapshots {}: lote de {} snapshots",
+                        handler.getName(), batch.size(), e);
+            }
+        }
+    }
+}
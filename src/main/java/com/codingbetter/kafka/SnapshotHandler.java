@@ -0,0 +1,26 @@
+package com.codingbetter.kafka;
+
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+
+import java.util.List;
+
+/**
+ * Destino em processo dos snapshots de governance.activity.snapshot (sincronização com o
+ * Backstage, métricas, dashboards). Implementações registradas como beans recebem, pelo
+ * SnapshotDispatcher, todos os snapshots consumidos, já decodificados uma única vez.
+ *
+ * Cada handler tem sua própria fila limitada e thread de entrega: lotes chegam em ordem,
+ * um de cada vez, e um handler lento não atrasa os demais até que sua fila encha.
+ */
+public interface SnapshotHandler {
+
+    /**
+     * Nome do handler, usado em logs, métricas e no nome da thread de entrega.
+     */
+    String getName();
+
+    /**
+     * Processa um lote (um poll do listener). A lista é imutável e compartilhada entre os handlers.
+     */
+    void handle(List<ServiceActivitySnapshot> snapshots);
+}
@@ -0,0 +1,43 @@
+package com.codingbetter.kafka;
+
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Handler de métricas dos snapshots consumidos:
+ * governance_snapshots_consumed_total {classification}.
+ */
+@Component
+public class SnapshotMetricsHandler implements SnapshotHandler {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public SnapshotMetricsHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String getName() {
+        return "metrics";
+    }
+
+    @Override
+    public void handle(List<ServiceActivitySnapshot> snapshots) {
+        for (ServiceActivitySnapshot snapshot : snapshots) {
+            String classification = snapshot.getClassification() != null
+                    ? snapshot.getClassification().name() : "UNKNOWN";
+            counters.computeIfAbsent(classification, c -> Counter.builder("governance_snapshots_consumed_total")
+                    .description("Snapshots consumidos de governance.activity.snapshot por classificação")
+                    .tag("classification", c)
+                    .register(meterRegistry))
+                    .increment();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.codingbetter.kafka;
+
+import com.codingbetter.schemas.SchemaRegistry;
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Supressão de duplicatas pelo header "event-id" nas topologias Kafka Streams, equivalente à
+ * do job batch (EventIdFilter): reextrações e backfills republicam a mesma janela com o mesmo
+ * id e, sem o filtro, seriam somados de novo aos rollups e aos buckets do modo contínuo.
+ *
+ * Os ids vistos ficam em um window store por task (com changelog), indexados pelo window.end
+ * do evento: a busca é exata (mesmo id, mesmo instante) e a retenção acompanha a do estado
+ * que o filtro protege. O valor é apenas um marcador.
+ */
+public class StreamEventIdFilter {
+
+    private final WindowStore<Long, Boolean> seen;
+
+    public StreamEventIdFilter(WindowStore<Long, Boolean> seen) {
+        this.seen = seen;
+    }
+
+    /**
+     * Store dos ids vistos; a retenção deve cobrir o período em que uma duplicata ainda
+     * alteraria o resultado (grace das janelas ou retenção dos buckets).
+     */
+    public static StoreBuilder<WindowStore<Long, Boolean>> storeBuilder(String name, Duration retention) {
+        return Stores.windowStoreBuilder(
+                Stores.persistentWindowStore(name, retention, Duration.ofMinutes(5), false),
+                Serdes.Long(),
+                Serdes.Boolean());
+    }
+
+    /**
+     * Eventos decodificados de um registro do tópico raw, sem os já vistos.
+     * Registros simples levam o id no header; envelopes, na primeira coluna (mesma ordem dos eventos).
+     * Eventos sem id ou sem window.end sempre passam.
+     */
+    public List<ServiceActivityEvent> distinct(Headers headers, byte[] payload, List<ServiceActivityEvent> events) {
+        long[] ids;
+        try {
+            ids = SchemaRegistry.isEnvelope(payload)
+                    ? SchemaRegistry.envelopeEventIds(payload)
+                    : new long[] {SchemaRegistry.eventIdOf(headers)};
+        } catch (IOException e) {
+            return events;
+        }
+        if (ids.length != events.size()) {
+            return events;
+        }
+
+        List<ServiceActivityEvent> distinct = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            ServiceActivityEvent event = events.get(i);
+            if (ids[i] == 0 || event.getWindow() == null || event.getWindow().getEnd() == null) {
+                distinct.add(event);
+                continue;
+            }
+            long windowEnd = event.getWindow().getEnd().toEpochMilli();
+            if (seen.fetch(ids[i], windowEnd) != null) {
+                continue;
+            }
+            seen.put(ids[i], Boolean.TRUE, windowEnd);
+            distinct.add(event);
+        }
+        return distinct;
+    }
+}
@@ -0,0 +1,16 @@
+package com.codingbetter.kafka;
+
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.KStream;
+
+/**
+ * Topologia Kafka Streams registrada no StreamsBuilder compartilhado da aplicação.
+ * Cada implementação é ativada por sua própria propriedade de configuração.
+ */
+public interface StreamTopology {
+
+    /**
+     * Registra a topologia e retorna o stream de saída principal.
+     */
+    KStream<String, String> build(StreamsBuilder builder);
+}
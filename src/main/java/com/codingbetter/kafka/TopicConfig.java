@@ -33,6 +33,16 @@ public class TopicConfig {
     @Value("${kafka.topics.activity-snapshot.replication-factor:3}")
     private short activitySnapshotReplicationFactor;
 
+    @Value("${kafka.topics.activity-rollup.partitions:30}")
+    private int activityRollupPartitions;
+
+    @Value("${kafka.topics.activity-rollup.replication-factor:3}")
+    private short activityRollupReplicationFactor;
+
+    // Limita o paralelismo do modo distribuído (máximo de pods de worker com trabalho)
+    @Value("${kafka.topics.consolidation-work.partitions:100}")
+    private int consolidationWorkPartitions;
+
     @Bean
     public KafkaAdmin kafkaAdmin() {
         Map<String, Object> configs = new HashMap<>();
@@ -59,5 +69,76 @@ public class TopicConfig {
                 .config("compression.type", "gzip")
                 .build();
     }
-}
 
+    @Bean
+    public NewTopic activitySnapshotLatestTopic() {
+        return TopicBuilder.name("governance.activity.snapshot.latest")
+                .partitions(activitySnapshotPartitions)
+                .replicas(activitySnapshotReplicationFactor)
+                .config("cleanup.policy", "compact")
+                .config("delete.retention.ms", String.valueOf(7L * 24 * 60 * 60 * 1000)) // tombstones por 7 dias
+                .config("compression.type", "gzip")
+                .build();
+    }
+
+    @Bean
+    public NewTopic activitySnapshotBackfillTopic() {
+        return TopicBuilder.name("governance.activity.snapshot.backfill")
+                .partitions(activitySnapshotPartitions)
+                .replicas(activitySnapshotReplicationFactor)
+                .config("retention.ms", String.valueOf(90L * 24 * 60 * 60 * 1000)) // 90 dias
+                .config("compression.type", "gzip")
+                .build();
+    }
+
+    @Bean
+    public NewTopic activityHourlyTopic() {
+        return TopicBuilder.name("governance.activity.hourly")
+                .partitions(activityRollupPartitions)
+                .replicas(activityRollupReplicationFactor)
+                .config("cleanup.policy", "compact,delete")
+                .config("retention.ms", String.valueOf(35L * 24 * 60 * 60 * 1000)) // 35 dias
+                .config("compression.type", "gzip")
+                .build();
+    }
+
+    @Bean
+    public NewTopic activityDailyTopic() {
+        return TopicBuilder.name("governance.activity.daily")
+                .partitions(activityRollupPartitions)
+                .replicas(activityRollupReplicationFactor)
+                .config("cleanup.policy", "compact,delete")
+                .config("retention.ms", String.valueOf(120L * 24 * 60 * 60 * 1000)) // 120 dias
+                .config("compression.type", "gzip")
+                .build();
+    }
+
+    @Bean
+    public NewTopic consolidationCheckpointTopic() {
+        return TopicBuilder.name("governance.consolidation.checkpoint")
+                .partitions(1)
+                .replicas(activitySnapshotReplicationFactor)
+                .config("cleanup.policy", "compact,delete")
+                .config("retention.ms", String.valueOf(7L * 24 * 60 * 60 * 1000)) // 7 dias
+                .build();
+    }
+
+    @Bean
+    public NewTopic consolidationOffsetIndexTopic() {
+        return TopicBuilder.name("governance.consolidation.offset-index")
+                .partitions(1)
+                .replicas(activitySnapshotReplicationFactor)
+                .config("cleanup.policy", "compact")
+                .config("compression.type", "gzip")
+                .build();
+    }
+
+    @Bean
+    public NewTopic consolidationWorkTopic() {
+        return TopicBuilder.name("governance.consolidation.work")
+                .partitions(consolidationWorkPartitions)
+                .replicas(activitySnapshotReplicationFactor)
+                .config("retention.ms", String.valueOf(2L * 24 * 60 * 60 * 1000)) // 2 dias
+                .build();
+    }
+}
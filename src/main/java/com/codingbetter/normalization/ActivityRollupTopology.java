@@ -0,0 +1,315 @@
+package com.codingbetter.normalization;
+
+import com.codingbetter.kafka.StreamEventIdFilter;
+import com.codingbetter.kafka.StreamTopology;
+import com.codingbetter.schemas.SchemaCodecs;
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.common.utils.Utils;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Suppressed;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.processor.StreamPartitioner;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.support.serializer.JsonSerde;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rollup hierárquico de eventos de atividade: 5m (raw) -> horário -> diário.
+ * Mantém os tópicos compactados governance.activity.hourly e governance.activity.daily,
+ * com chave "serviceId:inícioDoBucket" e o mesmo schema de ServiceActivityEvent.
+ * Registros são particionados por service.id (mesma partição que no tópico raw).
+ *
+ * Os buckets são definidos pelo window.end dos eventos (WindowEndTimestampExtractor), não pelo
+ * CreateTime: reextrações tardias e backfills dentro do grace caem na hora e no dia corretos.
+ *
+ * O bucket horário é emitido uma única vez, após o fechamento da janela (+ grace).
+ * O diário é recalculado a partir dos buckets horários do dia (último valor de cada chave horária,
+ * em um window store) e reemitido a cada bucket horário recebido: um bucket horário reemitido
+ * substitui o anterior em vez de ser somado de novo. O tópico compactado mantém a última versão.
+ * Consumidores devem considerar apenas o último valor de cada chave.
+ *
+ * Eventos com event-id já visto (reextração ou backfill da mesma janela) são descartados antes
+ * do rollup horário (StreamEventIdFilter), como no job batch. Duplicatas chegam à mesma
+ * partição do raw (mesma chave ou envelope na partição dos seus serviços).
+ */
+@Component
+@ConditionalOnProperty(name = "aggregation.rollup.enabled", havingValue = "true")
+public class ActivityRollupTopology implements StreamTopology {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActivityRollupTopology.class);
+
+    public static final String HOURLY_TOPIC = "governance.activity.hourly";
+    public static final String DAILY_TOPIC = "governance.activity.daily";
+    static final String HOURLY_BUCKETS_STORE = "activity-rollup-hourly-buckets";
+    static final String SEEN_EVENT_IDS_STORE = "activity-rollup-seen-event-ids";
+
+    private final ObjectMapper objectMapper;
+    private final SchemaCodecs schemaCodecs;
+
+    @Value("${aggregation.rollup.hourly-grace-minutes:10}")
+    private long hourlyGraceMinutes = 10;
+
+    @Value("${aggregation.rollup.daily-grace-minutes:120}")
+    private long dailyGraceMinutes = 120;
+
+    public ActivityRollupTopology(ObjectMapper objectMapper, SchemaCodecs schemaCodecs) {
+        this.objectMapper = objectMapper;
+        this.schemaCodecs = schemaCodecs;
+    }
+
+    @Override
+    public KStream<String, String> build(StreamsBuilder builder) {
+        Serde<ServiceActivityEvent> eventSerde = eventSerde();
+
+        // Ids vistos: retenção cobre a janela horária + grace (depois disso o evento seria descartado)
+        builder.addStateStore(StreamEventIdFilter.storeBuilder(SEEN_EVENT_IDS_STORE,
+                Duration.ofHours(1).plusMinutes(hourlyGraceMinutes)));
+
+        // 5m -> horário (resultado final por bucket, após fechamento da janela).
+        // Envelopes não têm chave: os eventos são rechaveados por service.id, o que faz o
+        // Streams reparticionar (activity-rollup-hourly-repartition) antes do agrupamento
+        builder.stream("governance.activity.raw", Consumed.with(Serdes.String(), Serdes.ByteArray())
+                        .withTimestampExtractor(new WindowEndTimestampExtractor(objectMapper.getFactory())))
+                .process(DistinctEventsProcessor::new, SEEN_EVENT_IDS_STORE)
+                .groupByKey(Grouped.with("activity-rollup-hourly", Serdes.String(), eventSerde))
+                .windowedBy(TimeWindows.ofSizeAndGrace(Duration.ofHours(1), Duration.ofMinutes(hourlyGraceMinutes)))
+                .reduce(ActivityRollupTopology::combine,
+                        Materialized.<String, ServiceActivityEvent, WindowStore<Bytes, byte[]>>as("activity-rollup-hourly-store")
+                                .withKeySerde(Serdes.String())
+                                .withValueSerde(eventSerde))
+                .suppress(Suppressed.untilWindowCloses(Suppressed.BufferConfig.unbounded()))
+                .toStream()
+                .map((window, event) -> KeyValue.pair(
+                        rollupKey(window.key(), window.window().start()), encode(event)))
+                .to(HOURLY_TOPIC, Produced.with(Serdes.String(), Serdes.String())
+                        .withStreamPartitioner(byServiceId()));
+
+        // horário -> diário: o tópico horário já é particionado por service.id (sem repartição).
+        // Retenção cobre o dia inteiro até o fim do grace
+        builder.addStateStore(Stores.windowStoreBuilder(
+                Stores.persistentWindowStore(HOURLY_BUCKETS_STORE,
+                        Duration.ofDays(1).plusMinutes(dailyGraceMinutes).plusHours(1),
+                        Duration.ofHours(1), false),
+                Serdes.String(),
+                eventSerde));
+
+        KStream<String, String> daily = builder
+                .stream(HOURLY_TOPIC, Consumed.with(Serdes.String(), Serdes.String()))
+                .process(DailyRollupProcessor::new, HOURLY_BUCKETS_STORE);
+
+        daily.to(DAILY_TOPIC, Produced.with(Serdes.String(), Serdes.String())
+                .withStreamPartitioner(byServiceId()));
+
+        logger.info("Topologia de rollup registrada: {} -> {} -> {}",
+                "governance.activity.raw", HOURLY_TOPIC, DAILY_TOPIC);
+        return daily;
+    }
+
+    /**
+     * Decodifica os eventos de cada registro do raw (qualquer wire format), descarta os event-ids
+     * já vistos e os inválidos e os rechaveia por service.id.
+     */
+    private class DistinctEventsProcessor implements Processor<String, byte[], String, ServiceActivityEvent> {
+
+        private ProcessorContext<String, ServiceActivityEvent> context;
+        private StreamEventIdFilter eventIds;
+
+        @Override
+        public void init(ProcessorContext<String, ServiceActivityEvent> context) {
+            this.context = context;
+            this.eventIds = new StreamEventIdFilter(context.getStateStore(SEEN_EVENT_IDS_STORE));
+        }
+
+        @Override
+        public void process(Record<String, byte[]> record) {
+            for (ServiceActivityEvent event : eventIds.distinct(
+                    record.headers(), record.value(), decodePayload(record.value()))) {
+                if (isValid(event)) {
+                    context.forward(record.withKey(event.getServiceId()).withValue(event));
+                }
+            }
+        }
+    }
+
+    /**
+     * Guarda o último valor de cada bucket horário (chave serviceId:inícioDaHora) e emite
+     * o dia do serviço combinando todos os buckets horários do dia.
+     * Buckets de dias já fechados (fim do dia + grace antes do stream time) são descartados:
+     * o store pode já não ter as demais horas do dia e o recálculo sairia parcial.
+     */
+    private class DailyRollupProcessor implements Processor<String, String, String, String> {
+
+        private ProcessorContext<String, String> context;
+        private WindowStore<String, ServiceActivityEvent> hourlyBuckets;
+
+        @Override
+        public void init(ProcessorContext<String, String> context) {
+            this.context = context;
+            this.hourlyBuckets = context.getStateStore(HOURLY_BUCKETS_STORE);
+        }
+
+        @Override
+        public void process(Record<String, String> record) {
+            ServiceActivityEvent event = decode(record.value());
+            int separator = record.key() != null ? record.key().lastIndexOf(':') : -1;
+            if (!isValid(event) || separator < 0) {
+                return;
+            }
+            String serviceId = record.key().substring(0, separator);
+            long hourStart;
+            try {
+                hourStart = Long.parseLong(record.key().substring(separator + 1));
+            } catch (NumberFormatException e) {
+                logger.warn("Chave horária inválida no rollup: {}", record.key());
+                return;
+            }
+
+            long dayStart = Instant.ofEpochMilli(hourStart).truncatedTo(ChronoUnit.DAYS).toEpochMilli();
+            long dayEnd = dayStart + Duration.ofDays(1).toMillis();
+            if (dayEnd + Duration.ofMinutes(dailyGraceMinutes).toMillis() <= context.currentStreamTimeMs()) {
+                logger.warn("Bucket horário de dia já fechado ignorado no rollup: {}", record.key());
+                return;
+            }
+
+            hourlyBuckets.put(serviceId, event, hourStart);
+
+            ServiceActivityEvent day = null;
+            try (WindowStoreIterator<ServiceActivityEvent> hours = hourlyBuckets.fetch(serviceId, dayStart, dayEnd - 1)) {
+                while (hours.hasNext()) {
+                    ServiceActivityEvent hour = hours.next().value;
+                    day = day == null ? hour : combine(day, hour);
+                }
+            }
+            context.forward(new Record<>(rollupKey(serviceId, dayStart), encode(day), record.timestamp()));
+        }
+    }
+
+    /**
+     * Combina dois eventos do mesmo serviço, com as mesmas regras do TemporalAggregator:
+     * soma de atividade, união de callers, janela [menor início, maior fim],
+     * maior confiança (ordinal) e metadados do primeiro evento.
+     */
+    static ServiceActivityEvent combine(ServiceActivityEvent aggregate, ServiceActivityEvent event) {
+        ServiceActivityEvent combined = new ServiceActivityEvent();
+        combined.setServiceId(aggregate.getServiceId());
+        combined.setActivityCount(count(aggregate) + count(event));
+
+        Set<String> callers = new LinkedHashSet<>();
+        if (aggregate.getCallers() != null) {
+            callers.addAll(aggregate.getCallers());
+        }
+        if (event.getCallers() != null) {
+            callers.addAll(event.getCallers());
+        }
+        combined.setCallers(List.copyOf(callers));
+
+        Instant start = aggregate.getWindow().getStart().isBefore(event.getWindow().getStart())
+                ? aggregate.getWindow().getStart() : event.getWindow().getStart();
+        Instant end = aggregate.getWindow().getEnd().isAfter(event.getWindow().getEnd())
+                ? aggregate.getWindow().getEnd() : event.getWindow().getEnd();
+        combined.setWindow(new ServiceActivityEvent.TimeWindow(start, end));
+
+        ServiceActivityEvent.ConfidenceLevel confidence = aggregate.getConfidenceLevel();
+        if (confidence == null || (event.getConfidenceLevel() != null
+                && event.getConfidenceLevel().ordinal() > confidence.ordinal())) {
+            confidence = event.getConfidenceLevel();
+        }
+        combined.setConfidenceLevel(confidence);
+
+        combined.setMetadata(aggregate.getMetadata());
+        combined.setRepository(aggregate.getRepository() != null ? aggregate.getRepository() : event.getRepository());
+        combined.setDiscoverySource(aggregate.getDiscoverySource() != null
+                ? aggregate.getDiscoverySource() : event.getDiscoverySource());
+        return combined;
+    }
+
+    /**
+     * Chave dos tópicos de rollup: serviceId + início do bucket (epoch millis),
+     * no mesmo formato da chave de agrupamento do TemporalAggregator.
+     */
+    public static String rollupKey(String serviceId, long bucketStart) {
+        return serviceId + ":" + bucketStart;
+    }
+
+    /**
+     * Particiona pelo service.id com o mesmo hash do partitioner padrão do produtor,
+     * mantendo todos os buckets de um serviço na mesma partição do tópico raw.
+     */
+    private static StreamPartitioner<String, String> byServiceId() {
+        return (topic, key, value, numPartitions) -> {
+            String serviceId = key.substring(0, key.lastIndexOf(':'));
+            return Utils.toPositive(Utils.murmur2(serviceId.getBytes(StandardCharsets.UTF_8))) % numPartitions;
+        };
+    }
+
+    private static long count(ServiceActivityEvent event) {
+        return event.getActivityCount() != null ? event.getActivityCount() : 0L;
+    }
+
+    private static boolean isValid(ServiceActivityEvent event) {
+        return event != null && event.getServiceId() != null && event.getWindow() != null
+                && event.getWindow().getStart() != null && event.getWindow().getEnd() != null;
+    }
+
+    private ServiceActivityEvent decode(String json) {
+        try {
+            return schemaCodecs.readEvent(json);
+        } catch (Exception e) {
+            logger.warn("Evento ignorado no rollup: erro de deserialização", e);
+            return null;
+        }
+    }
+
+    /**
+     * Eventos de um registro do tópico raw, em qualquer wire format (JSON, binário ou envelope).
+     */
+    private List<ServiceActivityEvent> decodePayload(byte[] payload) {
+        try {
+            return schemaCodecs.decodeEvents(payload);
+        } catch (Exception e) {
+            logger.warn("Evento ignorado no rollup: erro de deserialização", e);
+            return List.of();
+        }
+    }
+
+    private String encode(ServiceActivityEvent event) {
+        try {
+            return schemaCodecs.writeEventAsString(event);
+        } catch (Exception e) {
+            throw new IllegalStateException("Erro ao serializar evento de rollup: " + event.getServiceId(), e);
+        }
+    }
+
+    private Serde<ServiceActivityEvent> eventSerde() {
+        return new JsonSerde<>(ServiceActivityEvent.class, objectMapper)
+                .noTypeInfo()
+                .ignoreTypeHeaders();
+    }
+}
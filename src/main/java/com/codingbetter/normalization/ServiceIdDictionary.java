@@ -0,0 +1,118 @@
+package com.codingbetter.normalization;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dicionário de service.id -> id inteiro denso, usado pelos acumuladores da consolidação.
+ * Permite representar conjuntos de callers como bitmaps comprimidos (RoaringBitmap),
+ * de modo que uniões entre janelas e snapshots sejam ORs palavra a palavra,
+ * sem alocar strings. Strings só são materializadas na fronteira do schema
+ * (ServiceActivityEvent/ServiceActivitySnapshot e formatos serializados).
+ *
+ * Os ids são válidos apenas no dicionário que os gerou: nunca devem ser persistidos ou publicados.
+ * Cada acumulador guarda o dicionário corrente ({@link #current()}) ao ser criado. Quando o
+ * corrente atinge maxIds, novos acumuladores passam a usar um dicionário novo; o anterior é
+ * coletado junto com os últimos acumuladores que o referenciam (ao fim da execução ou da emissão).
+ * Assim a memória de pods de longa duração acompanha a frota ativa, não todos os service.ids já vistos.
+ */
+public final class ServiceIdDictionary {
+
+    static final int DEFAULT_MAX_IDS = 1 << 18;
+
+    private static volatile ServiceIdDictionary current = new ServiceIdDictionary();
+
+    private final int maxIds;
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[1024];
+    private int size; // protegido por this
+
+    public ServiceIdDictionary() {
+        this(DEFAULT_MAX_IDS);
+    }
+
+    ServiceIdDictionary(int maxIds) {
+        this.maxIds = maxIds;
+    }
+
+    /**
+     * Dicionário para novos acumuladores; substituído por um novo quando atinge maxIds.
+     */
+    public static ServiceIdDictionary current() {
+        ServiceIdDictionary dictionary = current;
+        if (dictionary.size() < dictionary.maxIds) {
+            return dictionary;
+        }
+        synchronized (ServiceIdDictionary.class) {
+            if (current == dictionary) {
+                current = new ServiceIdDictionary(dictionary.maxIds);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Retorna o id do service.id, registrando-o se ainda não existir.
+     */
+    public int intern(String serviceId) {
+        Integer existing = ids.get(serviceId);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (this) {
+            existing = ids.get(serviceId);
+            if (existing != null) {
+                return existing;
+            }
+            int id = size;
+            String[] current = names;
+            if (id == current.length) {
+                current = Arrays.copyOf(current, id * 2);
+            }
+            current[id] = serviceId;
+            names = current;
+            size = id + 1;
+            // Publicado no mapa só depois de visível no array
+            ids.put(serviceId, id);
+            return id;
+        }
+    }
+
+    public String lookup(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Adiciona os service.ids ao bitmap.
+     */
+    public void addAll(RoaringBitmap target, Collection<String> serviceIds) {
+        for (String serviceId : serviceIds) {
+            target.add(intern(serviceId));
+        }
+    }
+
+    public RoaringBitmap encode(Collection<String> serviceIds) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        addAll(bitmap, serviceIds);
+        return bitmap;
+    }
+
+    /**
+     * Materializa o bitmap como service.ids em ordem lexicográfica (determinística entre processos).
+     */
+    public List<String> decode(RoaringBitmap bitmap) {
+        List<String> serviceIds = new ArrayList<>(bitmap.getCardinality());
+        bitmap.forEach((int id) -> serviceIds.add(lookup(id)));
+        serviceIds.sort(null);
+        return serviceIds;
+    }
+}
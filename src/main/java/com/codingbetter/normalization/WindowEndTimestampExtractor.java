@@ -0,0 +1,41 @@
+package com.codingbetter.normalization;
+
+import com.codingbetter.consolidation.ActivityEventDecoder;
+import com.codingbetter.consolidation.ActivityProjection;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.streams.processor.TimestampExtractor;
+
+/**
+ * Timestamp de evento para o Kafka Streams: window.end do ServiceActivityEvent do registro,
+ * em vez do CreateTime. Reextrações tardias e backfills caem no bucket da janela que medem,
+ * não no da hora em que foram publicados.
+ *
+ * Lê apenas a janela (ActivityEventDecoder#windowEndOf): o cabeçalho dos envelopes, que
+ * compartilham uma única janela, e timestamps.window dos eventos JSON; o decode completo fica
+ * para a topologia. Registros sem janela legível mantêm o timestamp do registro (ou o da
+ * partição, se inválido) e são descartados adiante pela validação da topologia.
+ */
+public class WindowEndTimestampExtractor implements TimestampExtractor {
+
+    private final JsonFactory jsonFactory;
+
+    public WindowEndTimestampExtractor(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    @Override
+    public long extract(ConsumerRecord<Object, Object> record, long partitionTime) {
+        if (record.value() instanceof byte[] payload) {
+            try {
+                long windowEnd = ActivityEventDecoder.windowEndOf(payload, jsonFactory);
+                if (windowEnd != ActivityProjection.NO_WINDOW_END) {
+                    return windowEnd;
+                }
+            } catch (Exception e) {
+                // Payload inválido: o decode da topologia registra o erro
+            }
+        }
+        return record.timestamp() >= 0 ? record.timestamp() : partitionTime;
+    }
+}
@@ -0,0 +1,184 @@
+package com.codingbetter.schemas;
+
+import com.codingbetter.schemas.v1.CostOptimizationRecommendation;
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codecs JSON pré-compilados dos tipos versionados (schemas.v1) usados nos caminhos quentes.
+ *
+ * ObjectReader/ObjectWriter por tipo resolvem o (de)serializador raiz uma única vez, em vez
+ * da busca por tipo a cada readValue/writeValueAsString do ObjectMapper. São imutáveis e
+ * thread-safe. Os writers desligam INDENT_OUTPUT explicitamente: a formatação de relatórios
+ * não pode vazar para os payloads do Kafka, qualquer que seja a configuração do ObjectMapper.
+ *
+ * Payloads em bytes passam pela detecção de formato do SchemaRegistry (JSON, binário v1 ou,
+ * no tópico raw, envelope de eventos).
+ */
+@Component
+public class SchemaCodecs {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaCodecs.class);
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectReader eventReader;
+    private final ObjectWriter eventWriter;
+    private final ObjectReader snapshotReader;
+    private final ObjectWriter snapshotWriter;
+    private final ObjectReader recommendationReader;
+    private final ObjectWriter recommendationWriter;
+
+    public SchemaCodecs(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.eventReader = objectMapper.readerFor(ServiceActivityEvent.class);
+        this.eventWriter = compactWriter(objectMapper, ServiceActivityEvent.class);
+        this.snapshotReader = objectMapper.readerFor(ServiceActivitySnapshot.class);
+        this.snapshotWriter = compactWriter(objectMapper, ServiceActivitySnapshot.class);
+        this.recommendationReader = objectMapper.readerFor(CostOptimizationRecommendation.class);
+        this.recommendationWriter = compactWriter(objectMapper, CostOptimizationRecommendation.class);
+    }
+
+    private static ObjectWriter compactWriter(ObjectMapper objectMapper, Class<?> type) {
+        return objectMapper.writerFor(type).without(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    // ServiceActivityEvent
+
+    public byte[] writeEvent(ServiceActivityEvent event) throws JsonProcessingException {
+        return eventWriter.writeValueAsBytes(event);
+    }
+
+    public String writeEventAsString(ServiceActivityEvent event) throws JsonProcessingException {
+        return eventWriter.writeValueAsString(event);
+    }
+
+    public ServiceActivityEvent readEvent(String json) throws IOException {
+        return eventReader.readValue(json);
+    }
+
+    /**
+     * Decodifica um payload de evento em qualquer wire format (JSON ou binário v1).
+     */
+    public ServiceActivityEvent decodeEvent(byte[] payload) throws IOException {
+        return SchemaRegistry.isBinary(payload)
+                ? SchemaRegistry.decodeBinaryEvent(payload)
+                : eventReader.readValue(payload);
+    }
+
+    /**
+     * Decodifica um registro do tópico raw: um evento (JSON ou binário v1) ou todos os
+     * eventos de um envelope.
+     */
+    public List<ServiceActivityEvent> decodeEvents(byte[] payload) throws IOException {
+        return SchemaRegistry.isEnvelope(payload)
+                ? SchemaRegistry.decodeEnvelope(payload)
+                : List.of(decodeEvent(payload));
+    }
+
+    // ServiceActivitySnapshot
+
+    public byte[] writeSnapshot(ServiceActivitySnapshot snapshot) throws JsonProcessingException {
+        return snapshotWriter.writeValueAsBytes(snapshot);
+    }
+
+    public String writeSnapshotAsString(ServiceActivitySnapshot snapshot) throws JsonProcessingException {
+        return snapshotWriter.writeValueAsString(snapshot);
+    }
+
+    /**
+     * Decodifica um payload de snapshot em qualquer wire format (JSON ou binário v1).
+     */
+    public ServiceActivitySnapshot decodeSnapshot(byte[] payload) throws IOException {
+        return SchemaRegistry.isBinary(payload)
+                ? SchemaRegistry.decode(payload, ServiceActivitySnapshot.class, objectMapper)
+                : snapshotReader.readValue(payload);
+    }
+
+    // CostOptimizationRecommendation
+
+    public String writeRecommendation(CostOptimizationRecommendation recommendation) throws JsonProcessingException {
+        return recommendationWriter.writeValueAsString(recommendation);
+    }
+
+    public CostOptimizationRecommendation readRecommendation(String json) throws IOException {
+        return recommendationReader.readValue(json);
+    }
+
+    /**
+     * Decodifica um payload (JSON ou binário v1) pelo codec do tipo; tipos sem codec
+     * dedicado caem no ObjectMapper.
+     */
+    public <T> T decode(byte[] payload, Class<T> type) throws IOException {
+        if (type == ServiceActivityEvent.class) {
+            return type.cast(decodeEvent(payload));
+        }
+        if (type == ServiceActivitySnapshot.class) {
+            return type.cast(decodeSnapshot(payload));
+        }
+        return SchemaRegistry.decode(payload, type, objectMapper);
+    }
+
+    /**
+     * Como decode, mas para registros que podem conter vários valores: envelopes de eventos
+     * são expandidos; demais payloads resultam em um único valor.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> decodeAll(byte[] payload, Class<T> type) throws IOException {
+        if (type == ServiceActivityEvent.class) {
+            return (List<T>) decodeEvents(payload);
+        }
+        return List.of(decode(payload, type));
+    }
+
+    /**
+     * Decodifica um lote de registros consumido por um listener (JSON, binário ou envelope de eventos).
+     * Registros nulos (tombstones) são ignorados; registros inválidos são registrados em log e
+     * descartados, sem impedir o commit do lote.
+     */
+    public <T> List<T> decodeRecords(List<ConsumerRecord<String, byte[]>> records, Class<T> type) {
+        List<T> decoded = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            if (record.value() == null) {
+                continue;
+            }
+            try {
+                decoded.addAll(decodeAll(record.value(), type));
+            } catch (Exception e) {
+                // Em produção, considerar DLQ (Dead Letter Queue)
+                logger.error("Erro ao decodificar {}: topic={}, partition={}, offset={}",
+                        type.getSimpleName(), record.topic(), record.partition(), record.offset(), e);
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Codifica evento ou snapshot para o tópico: binário compacto ou JSON pré-compilado.
+     */
+    public byte[] encode(Object value, boolean binary) throws JsonProcessingException {
+        if (binary) {
+            return SchemaRegistry.encodeBinary(value, objectMapper);
+        }
+        if (value instanceof ServiceActivityEvent event) {
+            return writeEvent(event);
+        }
+        if (value instanceof ServiceActivitySnapshot snapshot) {
+            return writeSnapshot(snapshot);
+        }
+        return objectMapper.writeValueAsBytes(value);
+    }
+}
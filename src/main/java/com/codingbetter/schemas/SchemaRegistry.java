@@ -1,16 +1,56 @@
 package com.codingbetter.schemas;
 
+import com.codingbetter.schemas.v1.ActivityEventEnvelope;
+import com.codingbetter.schemas.v1.CompactBinaryCodec;
 import com.codingbetter.schemas.v1.ServiceActivityEvent;
 import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
 
 /**
  * Registry centralizado para versionamento de schemas.
  * Facilita evolução e compatibilidade retroativa.
+ *
+ * Formatos de payload (wire format) dos tópicos de atividade e snapshot:
+ * - JSON (padrão, compatível com consumidores existentes): sempre começa com '{'
+ * - Binário compacto: primeiro byte = versão do formato (BINARY_V1), seguido do
+ *   identificador do schema e dos campos (CompactBinaryCodec)
+ * - Envelope (apenas governance.activity.raw): primeiro byte = ENVELOPE_V1, seguido de vários
+ *   eventos da mesma partição e janela em layout colunar (ActivityEventEnvelope)
+ * A leitura detecta o formato pelo primeiro byte, de modo que um tópico pode migrar
+ * de JSON para binário sem parada dos consumidores.
+ * Os registros levam os headers "schema" (ex.: ServiceActivityEvent.v1) e "source".
  */
 public class SchemaRegistry {
 
     public static final String SERVICE_ACTIVITY_EVENT_V1 = "ServiceActivityEvent.v1";
     public static final String SERVICE_ACTIVITY_SNAPSHOT_V1 = "ServiceActivitySnapshot.v1";
+    public static final String SERVICE_ACTIVITY_ENVELOPE_V1 = "ServiceActivityEventEnvelope.v1";
+
+    public static final String HEADER_SCHEMA = "schema";
+    public static final String HEADER_SOURCE = "source";
+    public static final String HEADER_EVENT_ID = "event-id";
+
+    public static final byte BINARY_V1 = 0x01;
+    public static final byte ENVELOPE_V1 = 0x02;
+
+    private static final byte EVENT_TAG = 0x01;
+    private static final byte SNAPSHOT_TAG = 0x02;
 
     public static Class<?> getSchemaClass(String schemaVersion) {
         return switch (schemaVersion) {
@@ -24,5 +64,196 @@ public class SchemaRegistry {
         return schemaVersion.equals(SERVICE_ACTIVITY_EVENT_V1) ||
                schemaVersion.equals(SERVICE_ACTIVITY_SNAPSHOT_V1);
     }
-}
 
+    /**
+     * Schema (header "schema") de um objeto dos tipos versionados.
+     */
+    public static String schemaOf(Object value) {
+        if (value instanceof ServiceActivityEvent) {
+            return SERVICE_ACTIVITY_EVENT_V1;
+        }
+        if (value instanceof ServiceActivitySnapshot) {
+            return SERVICE_ACTIVITY_SNAPSHOT_V1;
+        }
+        throw new IllegalArgumentException("Tipo sem schema registrado: " + value.getClass().getName());
+    }
+
+    /**
+     * Id determinístico do evento (header "event-id"): hash de service.id, metadata.source e
+     * window.start alinhado à janela de agregação. Reextrações da mesma janela (execução manual,
+     * backfill, execuções agendadas sobrepostas) geram o mesmo id.
+     * @return 16 caracteres hexadecimais (64 bits), ou null sem service.id ou window.start
+     */
+    public static String eventId(ServiceActivityEvent event, int windowMinutes) {
+        if (event.getServiceId() == null || event.getWindow() == null || event.getWindow().getStart() == null) {
+            return null;
+        }
+        long windowMillis = Math.max(1, windowMinutes) * 60_000L;
+        long alignedStart = Math.floorDiv(event.getWindow().getStart().toEpochMilli(), windowMillis) * windowMillis;
+        String source = event.getMetadata() != null ? event.getMetadata().getSource() : null;
+        // Separador fora do conjunto de caracteres de service.id
+        String canonical = event.getServiceId() + '\n' + (source != null ? source : "") + '\n' + alignedStart;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    /**
+     * Valor do header "event-id" como long, ou 0 se ausente/inválido (registros anteriores ao header).
+     */
+    public static long eventIdOf(Headers headers) {
+        Header header = headers.lastHeader(HEADER_EVENT_ID);
+        if (header == null || header.value() == null || header.value().length != 16) {
+            return 0;
+        }
+        try {
+            return parseEventId(new String(header.value(), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Event-id (16 caracteres hexadecimais) como long; null vira 0 (sem id).
+     */
+    public static long parseEventId(String eventId) {
+        return eventId != null ? HexFormat.fromHexDigitsToLong(eventId) : 0;
+    }
+
+    public static boolean isBinary(byte[] payload) {
+        return payload != null && payload.length > 0 && payload[0] == BINARY_V1;
+    }
+
+    public static boolean isEnvelope(byte[] payload) {
+        return payload != null && payload.length > 0 && payload[0] == ENVELOPE_V1;
+    }
+
+    /**
+     * Codifica eventos da mesma janela em um envelope colunar (ENVELOPE_V1).
+     * @param eventIds Event-id de cada evento, na mesma ordem (0 = sem id)
+     */
+    public static byte[] encodeEnvelope(List<ServiceActivityEvent> events, long[] eventIds) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * events.size());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(ENVELOPE_V1);
+            ActivityEventEnvelope.write(out, events, eventIds);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decodifica todos os eventos de um envelope (isEnvelope).
+     */
+    public static List<ServiceActivityEvent> decodeEnvelope(byte[] payload) throws IOException {
+        return ActivityEventEnvelope.read(envelopeInput(payload));
+    }
+
+    /**
+     * Event-ids de um envelope, sem decodificar os eventos.
+     */
+    public static long[] envelopeEventIds(byte[] payload) throws IOException {
+        return ActivityEventEnvelope.readEventIds(envelopeInput(payload));
+    }
+
+    /**
+     * Fim da janela compartilhada de um envelope (epoch millis), lido do cabeçalho.
+     */
+    public static long envelopeWindowEnd(byte[] payload) throws IOException {
+        return ActivityEventEnvelope.readWindowEnd(envelopeInput(payload));
+    }
+
+    /**
+     * Service ids de um envelope, na ordem dos eventos, sem decodificar os demais campos.
+     */
+    public static List<String> envelopeServiceIds(byte[] payload) throws IOException {
+        return ActivityEventEnvelope.readServiceIds(envelopeInput(payload));
+    }
+
+    /**
+     * Reescreve o envelope apenas com os eventos marcados em keep, preservando os event-ids.
+     */
+    public static byte[] retainEnvelope(byte[] payload, boolean[] keep) throws IOException {
+        long[] eventIds = envelopeEventIds(payload);
+        List<ServiceActivityEvent> events = decodeEnvelope(payload);
+        List<ServiceActivityEvent> retained = new ArrayList<>(events.size());
+        long[] retainedIds = new long[events.size()];
+        for (int i = 0; i < events.size(); i++) {
+            if (keep[i]) {
+                retainedIds[retained.size()] = eventIds[i];
+                retained.add(events.get(i));
+            }
+        }
+        return encodeEnvelope(retained, Arrays.copyOf(retainedIds, retained.size()));
+    }
+
+    private static DataInputStream envelopeInput(byte[] payload) throws IOException {
+        if (!isEnvelope(payload)) {
+            throw new IOException("Payload não é um envelope de eventos");
+        }
+        return new DataInputStream(new ByteArrayInputStream(payload, 1, payload.length - 1));
+    }
+
+    /**
+     * Codifica no formato binário compacto corrente (BINARY_V1).
+     * @param objectMapper Usado apenas para os campos embutidos como JSON (FinOps)
+     */
+    public static byte[] encodeBinary(Object value, ObjectMapper objectMapper) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(BINARY_V1);
+            if (value instanceof ServiceActivityEvent event) {
+                out.writeByte(EVENT_TAG);
+                CompactBinaryCodec.writeEvent(out, event);
+            } else if (value instanceof ServiceActivitySnapshot snapshot) {
+                out.writeByte(SNAPSHOT_TAG);
+                CompactBinaryCodec.writeSnapshot(out, snapshot, objectMapper);
+            } else {
+                throw new IllegalArgumentException("Tipo sem codificação binária: " + value.getClass().getName());
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decodifica um payload em qualquer formato suportado (JSON ou binário v1).
+     */
+    public static <T> T decode(byte[] payload, Class<T> type, ObjectMapper objectMapper) throws IOException {
+        if (!isBinary(payload)) {
+            return objectMapper.readValue(payload, type);
+        }
+
+        return readBinary(payload, type, objectMapper);
+    }
+
+    /**
+     * Decodifica um evento já identificado como binário (isBinary), sem ObjectMapper:
+     * eventos não têm campos embutidos como JSON.
+     */
+    public static ServiceActivityEvent decodeBinaryEvent(byte[] payload) throws IOException {
+        return readBinary(payload, ServiceActivityEvent.class, null);
+    }
+
+    private static <T> T readBinary(byte[] payload, Class<T> type, ObjectMapper objectMapper) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, 1, payload.length - 1));
+        byte tag = in.readByte();
+        Object value = switch (tag) {
+            case EVENT_TAG -> CompactBinaryCodec.readEvent(in);
+            case SNAPSHOT_TAG -> CompactBinaryCodec.readSnapshot(in, objectMapper);
+            default -> throw new IOException("Schema binário desconhecido: " + tag);
+        };
+        if (!type.isInstance(value)) {
+            throw new IOException("Payload de " + value.getClass().getSimpleName()
+                    + " onde era esperado " + type.getSimpleName());
+        }
+        return type.cast(value);
+    }
+}
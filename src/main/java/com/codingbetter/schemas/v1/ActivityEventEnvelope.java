@@ -0,0 +1,310 @@
+package com.codingbetter.schemas.v1;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Envelope colunar de eventos de atividade (formato envelope v1 do SchemaRegistry):
+ * vários eventos da mesma partição e da mesma janela em um único registro Kafka.
+ *
+ * Layout, após o byte de formato:
+ * - quantidade de eventos (varint) e os event-ids (8 bytes cada, 0 = sem id), primeiro para
+ *   que a supressão de duplicatas os leia sem percorrer o restante
+ * - janela compartilhada: início (epoch millis) e duração
+ * - dicionário de strings (service ids, callers, metadata, repository), referenciadas
+ *   pelo índice + 1 (0 = null)
+ * - colunas, na ordem dos eventos: service.id, bitmask de presença, activity.count,
+ *   confidence, callers, metadata, repository e discoverySource
+ *
+ * Colunas de campos repetidos (confidence, environment, source, callers comuns) ficam
+ * curtas e homogêneas, o que também favorece a compressão do lote pelo produtor.
+ * Novos campos só podem ser acrescentados como novas colunas ao final, sob novos bits do bitmask.
+ */
+public final class ActivityEventEnvelope {
+
+    private static final int ACTIVITY_COUNT = 1;
+    private static final int CALLERS = 1 << 1;
+    private static final int CONFIDENCE = 1 << 2;
+    private static final int METADATA = 1 << 3;
+    private static final int REPOSITORY = 1 << 4;
+    private static final int DISCOVERY_SOURCE = 1 << 5;
+
+    private ActivityEventEnvelope() {
+    }
+
+    /**
+     * Indica se o evento pode entrar em um envelope: exige service.id e janela completa.
+     */
+    public static boolean accepts(ServiceActivityEvent event) {
+        return event.getServiceId() != null && event.getWindow() != null
+                && event.getWindow().getStart() != null && event.getWindow().getEnd() != null;
+    }
+
+    /**
+     * Escreve os eventos, todos com a mesma janela (ver accepts).
+     * @param eventIds Event-id de cada evento, na mesma ordem (0 = sem id)
+     */
+    public static void write(DataOutputStream out, List<ServiceActivityEvent> events, long[] eventIds)
+            throws IOException {
+        if (events.isEmpty() || eventIds.length != events.size()) {
+            throw new IllegalArgumentException("Envelope requer eventos e um event-id por evento");
+        }
+        ServiceActivityEvent.TimeWindow window = events.get(0).getWindow();
+        long start = window.getStart().toEpochMilli();
+        long end = window.getEnd().toEpochMilli();
+
+        CompactBinaryCodec.writeVarLong(out, events.size());
+        for (long eventId : eventIds) {
+            out.writeLong(eventId);
+        }
+        CompactBinaryCodec.writeSignedVarLong(out, start);
+        CompactBinaryCodec.writeSignedVarLong(out, end - start);
+
+        Dictionary dictionary = new Dictionary();
+        int[] masks = new int[events.size()];
+        for (int i = 0; i < events.size(); i++) {
+            ServiceActivityEvent event = events.get(i);
+            if (!accepts(event) || event.getWindow().getStart().toEpochMilli() != start
+                    || event.getWindow().getEnd().toEpochMilli() != end) {
+                throw new IllegalArgumentException("Evento fora da janela do envelope: " + event.getServiceId());
+            }
+            masks[i] = (event.getActivityCount() != null ? ACTIVITY_COUNT : 0)
+                    | (event.getCallers() != null ? CALLERS : 0)
+                    | (event.getConfidenceLevel() != null ? CONFIDENCE : 0)
+                    | (event.getMetadata() != null ? METADATA : 0)
+                    | (event.getRepository() != null ? REPOSITORY : 0)
+                    | (event.getDiscoverySource() != null ? DISCOVERY_SOURCE : 0);
+            dictionary.collect(event);
+        }
+        dictionary.write(out);
+
+        for (ServiceActivityEvent event : events) {
+            dictionary.writeRef(out, event.getServiceId());
+        }
+        for (int mask : masks) {
+            CompactBinaryCodec.writeVarLong(out, mask);
+        }
+        for (int i = 0; i < events.size(); i++) {
+            if ((masks[i] & ACTIVITY_COUNT) != 0) {
+                CompactBinaryCodec.writeSignedVarLong(out, events.get(i).getActivityCount());
+            }
+        }
+        for (int i = 0; i < events.size(); i++) {
+            if ((masks[i] & CONFIDENCE) != 0) {
+                out.writeByte(events.get(i).getConfidenceLevel().ordinal());
+            }
+        }
+        for (int i = 0; i < events.size(); i++) {
+            if ((masks[i] & CALLERS) != 0) {
+                List<String> callers = events.get(i).getCallers();
+                CompactBinaryCodec.writeVarLong(out, callers.size());
+                for (String caller : callers) {
+                    dictionary.writeRef(out, caller);
+                }
+            }
+        }
+        for (int i = 0; i < events.size(); i++) {
+            if ((masks[i] & METADATA) != 0) {
+                ServiceActivityEvent.Metadata metadata = events.get(i).getMetadata();
+                dictionary.writeRef(out, metadata.getEnvironment());
+                dictionary.writeRef(out, metadata.getSource());
+            }
+        }
+        for (int i = 0; i < events.size(); i++) {
+            if ((masks[i] & REPOSITORY) != 0) {
+                ServiceActivityEvent.RepositoryInfo repository = events.get(i).getRepository();
+                dictionary.writeRef(out, repository.getName());
+                dictionary.writeRef(out, repository.getFullName());
+                dictionary.writeRef(out, repository.getSigla());
+                dictionary.writeRef(out, repository.getType());
+                dictionary.writeRef(out, repository.getServiceName());
+                dictionary.writeRef(out, repository.getUrl());
+            }
+        }
+        for (int i = 0; i < events.size(); i++) {
+            if ((masks[i] & DISCOVERY_SOURCE) != 0) {
+                out.writeByte(events.get(i).getDiscoverySource().ordinal());
+            }
+        }
+    }
+
+    /**
+     * Lê apenas os event-ids do envelope.
+     */
+    public static long[] readEventIds(DataInputStream in) throws IOException {
+        int count = readCount(in);
+        long[] eventIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            eventIds[i] = in.readLong();
+        }
+        return eventIds;
+    }
+
+    /**
+     * Lê apenas o fim da janela compartilhada (epoch millis), pulando os event-ids.
+     */
+    public static long readWindowEnd(DataInputStream in) throws IOException {
+        int count = readCount(in);
+        in.skipNBytes((long) count * Long.BYTES);
+        long start = CompactBinaryCodec.readSignedVarLong(in);
+        return start + CompactBinaryCodec.readSignedVarLong(in);
+    }
+
+    /**
+     * Lê apenas os service ids do envelope (dicionário e primeira coluna), sem materializar os eventos.
+     */
+    public static List<String> readServiceIds(DataInputStream in) throws IOException {
+        int count = readEventIds(in).length;
+        CompactBinaryCodec.readSignedVarLong(in);
+        CompactBinaryCodec.readSignedVarLong(in);
+        String[] dictionary = readDictionary(in);
+        List<String> serviceIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            serviceIds.add(readRef(in, dictionary));
+        }
+        return serviceIds;
+    }
+
+    public static List<ServiceActivityEvent> read(DataInputStream in) throws IOException {
+        int count = readEventIds(in).length;
+        long start = CompactBinaryCodec.readSignedVarLong(in);
+        long end = start + CompactBinaryCodec.readSignedVarLong(in);
+        String[] dictionary = readDictionary(in);
+
+        List<ServiceActivityEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ServiceActivityEvent event = new ServiceActivityEvent();
+            event.setServiceId(readRef(in, dictionary));
+            event.setWindow(new ServiceActivityEvent.TimeWindow(Instant.ofEpochMilli(start), Instant.ofEpochMilli(end)));
+            events.add(event);
+        }
+        int[] masks = new int[count];
+        for (int i = 0; i < count; i++) {
+            masks[i] = (int) CompactBinaryCodec.readVarLong(in);
+        }
+        for (int i = 0; i < count; i++) {
+            if ((masks[i] & ACTIVITY_COUNT) != 0) {
+                events.get(i).setActivityCount(CompactBinaryCodec.readSignedVarLong(in));
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if ((masks[i] & CONFIDENCE) != 0) {
+                events.get(i).setConfidenceLevel(ServiceActivityEvent.ConfidenceLevel.values()[in.readUnsignedByte()]);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if ((masks[i] & CALLERS) != 0) {
+                int callerCount = (int) CompactBinaryCodec.readVarLong(in);
+                List<String> callers = new ArrayList<>(callerCount);
+                for (int c = 0; c < callerCount; c++) {
+                    callers.add(readRef(in, dictionary));
+                }
+                events.get(i).setCallers(callers);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if ((masks[i] & METADATA) != 0) {
+                events.get(i).setMetadata(new ServiceActivityEvent.Metadata(
+                        readRef(in, dictionary), readRef(in, dictionary)));
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if ((masks[i] & REPOSITORY) != 0) {
+                events.get(i).setRepository(new ServiceActivityEvent.RepositoryInfo(
+                        readRef(in, dictionary), readRef(in, dictionary), readRef(in, dictionary),
+                        readRef(in, dictionary), readRef(in, dictionary), readRef(in, dictionary)));
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if ((masks[i] & DISCOVERY_SOURCE) != 0) {
+                events.get(i).setDiscoverySource(ServiceActivityEvent.DiscoverySource.values()[in.readUnsignedByte()]);
+            }
+        }
+        return events;
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        long count = CompactBinaryCodec.readVarLong(in);
+        // Cada evento ocupa ao menos os 8 bytes do event-id
+        if (count <= 0 || count * Long.BYTES > in.available()) {
+            throw new IOException("Envelope inválido: " + count + " eventos");
+        }
+        return (int) count;
+    }
+
+    private static String[] readDictionary(DataInputStream in) throws IOException {
+        int size = (int) CompactBinaryCodec.readVarLong(in);
+        if (size > in.available()) {
+            throw new IOException("Envelope inválido: dicionário de " + size + " strings");
+        }
+        String[] dictionary = new String[size];
+        for (int i = 0; i < size; i++) {
+            dictionary[i] = CompactBinaryCodec.readString(in);
+        }
+        return dictionary;
+    }
+
+    private static String readRef(DataInputStream in, String[] dictionary) throws IOException {
+        int ref = (int) CompactBinaryCodec.readVarLong(in);
+        if (ref == 0) {
+            return null;
+        }
+        if (ref > dictionary.length) {
+            throw new IOException("Referência fora do dicionário: " + ref);
+        }
+        return dictionary[ref - 1];
+    }
+
+    /**
+     * Dicionário de strings do envelope, na ordem da primeira ocorrência.
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> refs = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        void collect(ServiceActivityEvent event) {
+            add(event.getServiceId());
+            if (event.getCallers() != null) {
+                event.getCallers().forEach(this::add);
+            }
+            if (event.getMetadata() != null) {
+                add(event.getMetadata().getEnvironment());
+                add(event.getMetadata().getSource());
+            }
+            ServiceActivityEvent.RepositoryInfo repository = event.getRepository();
+            if (repository != null) {
+                add(repository.getName());
+                add(repository.getFullName());
+                add(repository.getSigla());
+                add(repository.getType());
+                add(repository.getServiceName());
+                add(repository.getUrl());
+            }
+        }
+
+        private void add(String value) {
+            if (value != null && !refs.containsKey(value)) {
+                values.add(value);
+                refs.put(value, values.size());
+            }
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            CompactBinaryCodec.writeVarLong(out, values.size());
+            for (String value : values) {
+                CompactBinaryCodec.writeString(out, value);
+            }
+        }
+
+        void writeRef(DataOutputStream out, String value) throws IOException {
+            CompactBinaryCodec.writeVarLong(out, value != null ? refs.get(value) : 0);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.codingbetter.schemas.v1;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codificação binária compacta dos schemas v1 (formato binário v1 do SchemaRegistry).
+ *
+ * Campos em ordem fixa, sem nomes: inteiros em varint (zigzag), instantes em epoch millis,
+ * enums pelo ordinal, strings UTF-8 prefixadas pelo tamanho (0 = null) e um bitmask de
+ * presença para os campos opcionais. Métricas de FinOps e recomendações de custo (raras
+ * e extensas no snapshot) são embutidas como JSON.
+ *
+ * Novos campos só podem ser acrescentados ao final, sob novos bits do bitmask;
+ * mudanças incompatíveis exigem um novo byte de versão no SchemaRegistry.
+ */
+public final class CompactBinaryCodec {
+
+    private static final int EVENT_ACTIVITY_COUNT = 1;
+    private static final int EVENT_CALLERS = 1 << 1;
+    private static final int EVENT_WINDOW_START = 1 << 2;
+    private static final int EVENT_WINDOW_END = 1 << 3;
+    private static final int EVENT_CONFIDENCE = 1 << 4;
+    private static final int EVENT_METADATA = 1 << 5;
+    private static final int EVENT_REPOSITORY = 1 << 6;
+    private static final int EVENT_DISCOVERY_SOURCE = 1 << 7;
+
+    private static final int SNAPSHOT_RECEIVES_TRAFFIC = 1;
+    private static final int SNAPSHOT_TRAFFIC_VOLUME = 1 << 1;
+    private static final int SNAPSHOT_LAST_SEEN = 1 << 2;
+    private static final int SNAPSHOT_ACTIVE_CALLERS = 1 << 3;
+    private static final int SNAPSHOT_CONFIDENCE = 1 << 4;
+    private static final int SNAPSHOT_CLASSIFICATION = 1 << 5;
+    private static final int SNAPSHOT_DATE = 1 << 6;
+    private static final int SNAPSHOT_HORIZONS = 1 << 7;
+    private static final int SNAPSHOT_DAILY_TREND = 1 << 8;
+    private static final int SNAPSHOT_FINOPS = 1 << 9;
+    private static final int SNAPSHOT_COST_OPTIMIZATION = 1 << 10;
+
+    private CompactBinaryCodec() {
+    }
+
+    public static void writeEvent(DataOutputStream out, ServiceActivityEvent event) throws IOException {
+        ServiceActivityEvent.TimeWindow window = event.getWindow();
+        int mask = (event.getActivityCount() != null ? EVENT_ACTIVITY_COUNT : 0)
+                | (event.getCallers() != null ? EVENT_CALLERS : 0)
+                | (window != null && window.getStart() != null ? EVENT_WINDOW_START : 0)
+                | (window != null && window.getEnd() != null ? EVENT_WINDOW_END : 0)
+                | (event.getConfidenceLevel() != null ? EVENT_CONFIDENCE : 0)
+                | (event.getMetadata() != null ? EVENT_METADATA : 0)
+                | (event.getRepository() != null ? EVENT_REPOSITORY : 0)
+                | (event.getDiscoverySource() != null ? EVENT_DISCOVERY_SOURCE : 0);
+
+        writeString(out, event.getServiceId());
+        writeVarLong(out, mask);
+        if ((mask & EVENT_ACTIVITY_COUNT) != 0) {
+            writeSignedVarLong(out, event.getActivityCount());
+        }
+        if ((mask & EVENT_CALLERS) != 0) {
+            writeStrings(out, event.getCallers());
+        }
+        if ((mask & EVENT_WINDOW_START) != 0) {
+            writeSignedVarLong(out, window.getStart().toEpochMilli());
+        }
+        if ((mask & EVENT_WINDOW_END) != 0) {
+            // Fim relativo ao início quando ambos existem (janelas de 5 minutos: 3 bytes)
+            long end = window.getEnd().toEpochMilli();
+            writeSignedVarLong(out, (mask & EVENT_WINDOW_START) != 0 ? end - window.getStart().toEpochMilli() : end);
+        }
+        if ((mask & EVENT_CONFIDENCE) != 0) {
+            out.writeByte(event.getConfidenceLevel().ordinal());
+        }
+        if ((mask & EVENT_METADATA) != 0) {
+            writeString(out, event.getMetadata().getEnvironment());
+            writeString(out, event.getMetadata().getSource());
+        }
+        if ((mask & EVENT_REPOSITORY) != 0) {
+            ServiceActivityEvent.RepositoryInfo repository = event.getRepository();
+            writeString(out, repository.getName());
+            writeString(out, repository.getFullName());
+            writeString(out, repository.getSigla());
+            writeString(out, repository.getType());
+            writeString(out, repository.getServiceName());
+            writeString(out, repository.getUrl());
+        }
+        if ((mask & EVENT_DISCOVERY_SOURCE) != 0) {
+            out.writeByte(event.getDiscoverySource().ordinal());
+        }
+    }
+
+    public static ServiceActivityEvent readEvent(DataInputStream in) throws IOException {
+        ServiceActivityEvent event = new ServiceActivityEvent();
+        event.setServiceId(readString(in));
+        int mask = (int) readVarLong(in);
+        if ((mask & EVENT_ACTIVITY_COUNT) != 0) {
+            event.setActivityCount(readSignedVarLong(in));
+        }
+        if ((mask & EVENT_CALLERS) != 0) {
+            event.setCallers(readStrings(in));
+        }
+        if ((mask & (EVENT_WINDOW_START | EVENT_WINDOW_END)) != 0) {
+            ServiceActivityEvent.TimeWindow window = new ServiceActivityEvent.TimeWindow();
+            long start = 0;
+            if ((mask & EVENT_WINDOW_START) != 0) {
+                start = readSignedVarLong(in);
+                window.setStart(Instant.ofEpochMilli(start));
+            }
+            if ((mask & EVENT_WINDOW_END) != 0) {
+                window.setEnd(Instant.ofEpochMilli(start + readSignedVarLong(in)));
+            }
+            event.setWindow(window);
+        }
+        if ((mask & EVENT_CONFIDENCE) != 0) {
+            event.setConfidenceLevel(ServiceActivityEvent.ConfidenceLevel.values()[in.readUnsignedByte()]);
+        }
+        if ((mask & EVENT_METADATA) != 0) {
+            event.setMetadata(new ServiceActivityEvent.Metadata(readString(in), readString(in)));
+        }
+        if ((mask & EVENT_REPOSITORY) != 0) {
+            event.setRepository(new ServiceActivityEvent.RepositoryInfo(
+                    readString(in), readString(in), readString(in), readString(in), readString(in), readString(in)));
+        }
+        if ((mask & EVENT_DISCOVERY_SOURCE) != 0) {
+            event.setDiscoverySource(ServiceActivityEvent.DiscoverySource.values()[in.readUnsignedByte()]);
+        }
+        return event;
+    }
+
+    public static void writeSnapshot(DataOutputStream out, ServiceActivitySnapshot snapshot,
+                                     ObjectMapper objectMapper) throws IOException {
+        int mask = (snapshot.getReceivesTraffic() != null ? SNAPSHOT_RECEIVES_TRAFFIC : 0)
+                | (snapshot.getTrafficVolume() != null ? SNAPSHOT_TRAFFIC_VOLUME : 0)
+                | (snapshot.getLastSeen() != null ? SNAPSHOT_LAST_SEEN : 0)
+                | (snapshot.getActiveCallers() != null ? SNAPSHOT_ACTIVE_CALLERS : 0)
+                | (snapshot.getConfidenceLevel() != null ? SNAPSHOT_CONFIDENCE : 0)
+                | (snapshot.getClassification() != null ? SNAPSHOT_CLASSIFICATION : 0)
+                | (snapshot.getSnapshotDate() != null ? SNAPSHOT_DATE : 0)
+                | (snapshot.getActivityHorizons() != null ? SNAPSHOT_HORIZONS : 0)
+                | (snapshot.getDailyTrend() != null ? SNAPSHOT_DAILY_TREND : 0)
+                | (snapshot.getFinOpsMetrics() != null ? SNAPSHOT_FINOPS : 0)
+                | (snapshot.getCostOptimization() != null ? SNAPSHOT_COST_OPTIMIZATION : 0);
+
+        writeString(out, snapshot.getServiceId());
+        writeVarLong(out, mask);
+        if ((mask & SNAPSHOT_RECEIVES_TRAFFIC) != 0) {
+            out.writeBoolean(snapshot.getReceivesTraffic());
+        }
+        if ((mask & SNAPSHOT_TRAFFIC_VOLUME) != 0) {
+            writeSignedVarLong(out, snapshot.getTrafficVolume());
+        }
+        if ((mask & SNAPSHOT_LAST_SEEN) != 0) {
+            writeSignedVarLong(out, snapshot.getLastSeen().toEpochMilli());
+        }
+        if ((mask & SNAPSHOT_ACTIVE_CALLERS) != 0) {
+            writeStrings(out, snapshot.getActiveCallers());
+        }
+        if ((mask & SNAPSHOT_CONFIDENCE) != 0) {
+            out.writeByte(snapshot.getConfidenceLevel().ordinal());
+        }
+        if ((mask & SNAPSHOT_CLASSIFICATION) != 0) {
+            out.writeByte(snapshot.getClassification().ordinal());
+        }
+        if ((mask & SNAPSHOT_DATE) != 0) {
+            writeSignedVarLong(out, snapshot.getSnapshotDate().toEpochDay());
+        }
+        if ((mask & SNAPSHOT_HORIZONS) != 0) {
+            writeVarLong(out, snapshot.getActivityHorizons().size());
+            for (ServiceActivitySnapshot.ActivityHorizon horizon : snapshot.getActivityHorizons()) {
+                writeNullableLong(out, horizon.getDays() != null ? horizon.getDays().longValue() : null);
+                writeNullableLong(out, horizon.getTrafficVolume());
+                writeNullableLong(out, horizon.getDistinctCallers() != null ? horizon.getDistinctCallers().longValue() : null);
+            }
+        }
+        if ((mask & SNAPSHOT_DAILY_TREND) != 0) {
+            ServiceActivitySnapshot.DailyTrend trend = snapshot.getDailyTrend();
+            writeNullableLong(out, trend.getLastDayVolume());
+            writeNullableLong(out, trend.getPreviousDayVolume());
+            out.writeBoolean(trend.getChangeRatio() != null);
+            if (trend.getChangeRatio() != null) {
+                out.writeDouble(trend.getChangeRatio());
+            }
+        }
+        if ((mask & SNAPSHOT_FINOPS) != 0) {
+            writeBytes(out, objectMapper.writeValueAsBytes(snapshot.getFinOpsMetrics()));
+        }
+        if ((mask & SNAPSHOT_COST_OPTIMIZATION) != 0) {
+            writeBytes(out, objectMapper.writeValueAsBytes(snapshot.getCostOptimization()));
+        }
+    }
+
+    public static ServiceActivitySnapshot readSnapshot(DataInputStream in, ObjectMapper objectMapper) throws IOException {
+        ServiceActivitySnapshot snapshot = new ServiceActivitySnapshot();
+        snapshot.setServiceId(readString(in));
+        int mask = (int) readVarLong(in);
+        if ((mask & SNAPSHOT_RECEIVES_TRAFFIC) != 0) {
+            snapshot.setReceivesTraffic(in.readBoolean());
+        }
+        if ((mask & SNAPSHOT_TRAFFIC_VOLUME) != 0) {
+            snapshot.setTrafficVolume(readSignedVarLong(in));
+        }
+        if ((mask & SNAPSHOT_LAST_SEEN) != 0) {
+            snapshot.setLastSeen(Instant.ofEpochMilli(readSignedVarLong(in)));
+        }
+        if ((mask & SNAPSHOT_ACTIVE_CALLERS) != 0) {
+            snapshot.setActiveCallers(readStrings(in));
+        }
+        if ((mask & SNAPSHOT_CONFIDENCE) != 0) {
+            snapshot.setConfidenceLevel(ServiceActivityEvent.ConfidenceLevel.values()[in.readUnsignedByte()]);
+        }
+        if ((mask & SNAPSHOT_CLASSIFICATION) != 0) {
+            snapshot.setClassification(ServiceActivitySnapshot.Classification.values()[in.readUnsignedByte()]);
+        }
+        if ((mask & SNAPSHOT_DATE) != 0) {
+            snapshot.setSnapshotDate(LocalDate.ofEpochDay(readSignedVarLong(in)));
+        }
+        if ((mask & SNAPSHOT_HORIZONS) != 0) {
+            int count = (int) readVarLong(in);
+            List<ServiceActivitySnapshot.ActivityHorizon> horizons = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Long days = readNullableLong(in);
+                Long volume = readNullableLong(in);
+                Long callers = readNullableLong(in);
+                horizons.add(new ServiceActivitySnapshot.ActivityHorizon(
+                        days != null ? days.intValue() : null, volume, callers != null ? callers.intValue() : null));
+            }
+            snapshot.setActivityHorizons(horizons);
+        }
+        if ((mask & SNAPSHOT_DAILY_TREND) != 0) {
+            Long lastDay = readNullableLong(in);
+            Long previousDay = readNullableLong(in);
+            Double changeRatio = in.readBoolean() ? in.readDouble() : null;
+            snapshot.setDailyTrend(new ServiceActivitySnapshot.DailyTrend(lastDay, previousDay, changeRatio));
+        }
+        if ((mask & SNAPSHOT_FINOPS) != 0) {
+            snapshot.setFinOpsMetrics(objectMapper.readValue(readBytes(in), ServiceFinOpsMetrics.class));
+        }
+        if ((mask & SNAPSHOT_COST_OPTIMIZATION) != 0) {
+            snapshot.setCostOptimization(objectMapper.readValue(readBytes(in), CostOptimizationRecommendation.class));
+        }
+        return snapshot;
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint inválido");
+    }
+
+    static void writeSignedVarLong(DataOutputStream out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static long readSignedVarLong(DataInputStream in) throws IOException {
+        long zigzag = readVarLong(in);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private static void writeNullableLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeSignedVarLong(out, value);
+        }
+    }
+
+    private static Long readNullableLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readSignedVarLong(in) : null;
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = (int) readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        writeVarLong(out, values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = (int) readVarLong(in);
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = (int) readVarLong(in);
+        if (length > in.available()) {
+            throw new EOFException("Payload truncado: campo de " + length + " bytes");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -47,6 +47,13 @@ public class ServiceActivitySnapshot {
     @JsonProperty("snapshotDate")
     private LocalDate snapshotDate;
 
+    // Volume e callers distintos por horizonte (dias UTC completos até o dia anterior à referência)
+    @JsonProperty("activityHorizons")
+    private List<ActivityHorizon> activityHorizons;
+
+    @JsonProperty("dailyTrend")
+    private DailyTrend dailyTrend;
+
     @JsonProperty("finOpsMetrics")
     private ServiceFinOpsMetrics finOpsMetrics;
 
@@ -135,6 +142,22 @@ public class ServiceActivitySnapshot {
         this.snapshotDate = snapshotDate;
     }
 
+    public List<ActivityHorizon> getActivityHorizons() {
+        return activityHorizons;
+    }
+
+    public void setActivityHorizons(List<ActivityHorizon> activityHorizons) {
+        this.activityHorizons = activityHorizons;
+    }
+
+    public DailyTrend getDailyTrend() {
+        return dailyTrend;
+    }
+
+    public void setDailyTrend(DailyTrend dailyTrend) {
+        this.dailyTrend = dailyTrend;
+    }
+
     public ServiceFinOpsMetrics getFinOpsMetrics() {
         return finOpsMetrics;
     }
@@ -151,6 +174,90 @@ public class ServiceActivitySnapshot {
         this.costOptimization = costOptimization;
     }
 
+    /**
+     * Atividade agregada nos últimos N dias.
+     */
+    public static class ActivityHorizon {
+        private Integer days;
+        private Long trafficVolume;
+        private Integer distinctCallers;
+
+        public ActivityHorizon() {
+        }
+
+        public ActivityHorizon(Integer days, Long trafficVolume, Integer distinctCallers) {
+            this.days = days;
+            this.trafficVolume = trafficVolume;
+            this.distinctCallers = distinctCallers;
+        }
+
+        public Integer getDays() {
+            return days;
+        }
+
+        public void setDays(Integer days) {
+            this.days = days;
+        }
+
+        public Long getTrafficVolume() {
+            return trafficVolume;
+        }
+
+        public void setTrafficVolume(Long trafficVolume) {
+            this.trafficVolume = trafficVolume;
+        }
+
+        public Integer getDistinctCallers() {
+            return distinctCallers;
+        }
+
+        public void setDistinctCallers(Integer distinctCallers) {
+            this.distinctCallers = distinctCallers;
+        }
+    }
+
+    /**
+     * Variação do volume do último dia completo em relação ao dia anterior.
+     */
+    public static class DailyTrend {
+        private Long lastDayVolume;
+        private Long previousDayVolume;
+        private Double changeRatio; // (último - anterior) / anterior; null se anterior = 0
+
+        public DailyTrend() {
+        }
+
+        public DailyTrend(Long lastDayVolume, Long previousDayVolume, Double changeRatio) {
+            this.lastDayVolume = lastDayVolume;
+            this.previousDayVolume = previousDayVolume;
+            this.changeRatio = changeRatio;
+        }
+
+        public Long getLastDayVolume() {
+            return lastDayVolume;
+        }
+
+        public void setLastDayVolume(Long lastDayVolume) {
+            this.lastDayVolume = lastDayVolume;
+        }
+
+        public Long getPreviousDayVolume() {
+            return previousDayVolume;
+        }
+
+        public void setPreviousDayVolume(Long previousDayVolume) {
+            this.previousDayVolume = previousDayVolume;
+        }
+
+        public Double getChangeRatio() {
+            return changeRatio;
+        }
+
+        public void setChangeRatio(Double changeRatio) {
+            this.changeRatio = changeRatio;
+        }
+    }
+
     public enum Classification {
         ACTIVE,      // lastSeen <= 7 dias
         LOW_USAGE,   // 8 <= lastSeen <= 30 dias
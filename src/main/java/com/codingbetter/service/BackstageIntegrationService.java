@@ -2,109 +2,109 @@ package com.codingbetter.service;
 
 import com.codingbetter.backstage.BackstageClient;
 import com.codingbetter.backstage.BackstageMapper;
+import com.codingbetter.kafka.PipelineMetrics;
+import com.codingbetter.kafka.SnapshotHandler;
+import com.codingbetter.schemas.SchemaCodecs;
 import com.codingbetter.schemas.v1.ServiceActivityEvent;
 import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.handler.annotation.Header;
-import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Serviço de integração com Backstage.
- * Consome snapshots do Kafka e atualiza Backstage em batch.
+ * Recebe snapshots do SnapshotDispatcher e eventos do tópico raw e atualiza Backstage em batch.
  */
 @Service
-public class BackstageIntegrationService {
+public class BackstageIntegrationService implements SnapshotHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(BackstageIntegrationService.class);
 
     private final BackstageClient backstageClient;
     private final ObjectMapper objectMapper;
+    private final SchemaCodecs schemaCodecs;
+    private final PipelineMetrics pipelineMetrics;
 
     // Buffer para acumular snapshots antes de enviar em batch
-    private final Map<String, ServiceActivitySnapshot> snapshotBuffer = new HashMap<>();
+    // (ConcurrentHashMap: escrito pelo dispatcher/listener e lido pelo sync agendado)
+    private final Map<String, ServiceActivitySnapshot> snapshotBuffer = new ConcurrentHashMap<>();
     
     // Buffer para eventos de atividade (Fase 2)
-    private final Map<String, ServiceActivityEvent> activityEventBuffer = new HashMap<>();
+    private final Map<String, ServiceActivityEvent> activityEventBuffer = new ConcurrentHashMap<>();
 
     @Value("${backstage.integration.phase:1}")
     private int currentPhase;
 
     public BackstageIntegrationService(
             BackstageClient backstageClient,
-            ObjectMapper objectMapper) {
+            ObjectMapper objectMapper,
+            SchemaCodecs schemaCodecs,
+            PipelineMetrics pipelineMetrics) {
         this.backstageClient = backstageClient;
         this.objectMapper = objectMapper;
+        this.schemaCodecs = schemaCodecs;
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    @Override
+    public String getName() {
+        return "backstage";
     }
 
     /**
-     * Consome snapshots do tópico e acumula no buffer.
+     * Recebe do SnapshotDispatcher um lote de snapshots já decodificado e acumula no buffer,
+     * aplicado de uma vez.
      */
-    @KafkaListener(
-            topics = "governance.activity.snapshot",
-            groupId = "governance-backstage",
-            containerFactory = "kafkaListenerContainerFactory"
-    )
-    public void consumeSnapshot(
-            @Payload String message,
-            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
-            @Header(KafkaHeaders.OFFSET) long offset,
-            Acknowledgment acknowledgment) {
-
-        try {
-            ServiceActivitySnapshot snapshot = objectMapper.readValue(message, ServiceActivitySnapshot.class);
-
-            // Adiciona ao buffer (substitui snapshot anterior do mesmo serviço)
-            snapshotBuffer.put(snapshot.getServiceId(), snapshot);
-
-            logger.debug("Snapshot acumulado no buffer: serviceId={}, buffer size={}",
-                    snapshot.getServiceId(), snapshotBuffer.size());
-
-            acknowledgment.acknowledge();
-        } catch (Exception e) {
-            logger.error("Erro ao processar snapshot para Backstage: partition={}, offset={}",
-                    partition, offset, e);
+    @Override
+    public void handle(List<ServiceActivitySnapshot> snapshots) {
+        Map<String, ServiceActivitySnapshot> latest = new HashMap<>();
+        for (ServiceActivitySnapshot snapshot : snapshots) {
+            // Substitui snapshot anterior do mesmo serviço (lote em ordem de offset)
+            if (snapshot.getServiceId() != null) {
+                latest.put(snapshot.getServiceId(), snapshot);
+            }
         }
+        snapshotBuffer.putAll(latest);
+
+        logger.debug("Lote de {} snapshots acumulado no buffer: {} serviços, buffer size={}",
+                snapshots.size(), latest.size(), snapshotBuffer.size());
     }
 
     /**
-     * Consome eventos de atividade (Fase 2).
+     * Consome eventos de atividade em lote (Fase 2).
      */
     @KafkaListener(
             topics = "governance.activity.raw",
             groupId = "governance-backstage-activity",
-            containerFactory = "kafkaListenerContainerFactory"
+            containerFactory = "payloadBatchListenerContainerFactory"
     )
-    public void consumeActivityEvent(
-            @Payload String message,
-            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
-            @Header(KafkaHeaders.OFFSET) long offset,
-            Acknowledgment acknowledgment) {
-
+    public void consumeActivityEvents(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment) {
+        pipelineMetrics.recordBatch("governance-backstage-activity", records);
         if (currentPhase < 2) {
             acknowledgment.acknowledge();
             return; // Fase 2 ainda não ativa
         }
 
-        try {
-            ServiceActivityEvent event = objectMapper.readValue(message, ServiceActivityEvent.class);
-            activityEventBuffer.put(event.getServiceId(), event);
-            acknowledgment.acknowledge();
-        } catch (Exception e) {
-            logger.error("Erro ao processar evento de atividade para Backstage: partition={}, offset={}",
-                    partition, offset, e);
+        Map<String, ServiceActivityEvent> latest = new HashMap<>();
+        for (ServiceActivityEvent event : schemaCodecs.decodeRecords(records, ServiceActivityEvent.class)) {
+            if (event.getServiceId() != null) {
+                latest.put(event.getServiceId(), event);
+            }
         }
+        activityEventBuffer.putAll(latest);
+        acknowledgment.acknowledge();
     }
 
     /**
@@ -1,15 +1,17 @@
 package com.codingbetter.service;
 
-import com.codingbetter.kafka.KafkaProducer;
+import com.codingbetter.adapters.ActivityAdapter;
+import com.codingbetter.kafka.ActivityEventPublisher;
+import com.codingbetter.kafka.ActivityEventPublisher.WindowPublishResult;
+import com.codingbetter.kafka.PipelineMetrics;
 import com.codingbetter.normalization.EventNormalizer;
 import com.codingbetter.normalization.TemporalAggregator;
 import com.codingbetter.orchestration.ExtractionOrchestrator;
-import com.codingbetter.schemas.v1.ServiceActivityEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -26,17 +28,20 @@ public class ExtractionService {
     private final ExtractionOrchestrator orchestrator;
     private final EventNormalizer normalizer;
     private final TemporalAggregator aggregator;
-    private final KafkaProducer kafkaProducer;
+    private final ActivityEventPublisher eventPublisher;
+    private final PipelineMetrics pipelineMetrics;
 
     public ExtractionService(
             ExtractionOrchestrator orchestrator,
             EventNormalizer normalizer,
             TemporalAggregator aggregator,
-            KafkaProducer kafkaProducer) {
+            ActivityEventPublisher eventPublisher,
+            PipelineMetrics pipelineMetrics) {
         this.orchestrator = orchestrator;
         this.normalizer = normalizer;
         this.aggregator = aggregator;
-        this.kafkaProducer = kafkaProducer;
+        this.eventPublisher = eventPublisher;
+        this.pipelineMetrics = pipelineMetrics;
     }
 
     /**
@@ -51,19 +56,15 @@ public class ExtractionService {
             // Define janela de tempo (últimos 5 minutos)
             Instant end = Instant.now();
             Instant start = end.minus(5, ChronoUnit.MINUTES);
-            var window = new com.codingbetter.adapters.ActivityAdapter.TimeWindow(start, end);
-
-            // Pipeline completo: Extração -> Normalização -> Agregação -> Publicação
-            orchestrator.orchestrateExtraction(window)
-                    .transform(normalizer::normalizeStream)
-                    .transform(aggregator::aggregate)
-                    .flatMap(event -> {
-                        kafkaProducer.publishActivityEvent(event);
-                        return Flux.just(event);
-                    })
-                    .doOnComplete(() -> logger.info("Extração concluída com sucesso"))
+            var window = new ActivityAdapter.TimeWindow(start, end);
+
+            // Pipeline completo: Extração -> Normalização -> Agregação -> Publicação.
+            // Bloqueia até a janela estar confirmada em governance.activity.raw:
+            // a próxima execução só começa depois disso.
+            WindowPublishResult result = runPipeline(window)
                     .doOnError(error -> logger.error("Erro na extração", error))
-                    .blockLast(); // Em produção, considerar processamento assíncrono contínuo
+                    .block();
+            logResult("Extração", result);
 
         } catch (Exception e) {
             logger.error("Erro crítico na execução de extração", e);
@@ -76,18 +77,33 @@ public class ExtractionService {
     public void executeExtractionManual(Instant start, Instant end) {
         logger.info("Executando extração manual: {} to {}", start, end);
 
-        var window = new com.codingbetter.adapters.ActivityAdapter.TimeWindow(start, end);
+        var window = new ActivityAdapter.TimeWindow(start, end);
 
-        orchestrator.orchestrateExtraction(window)
+        WindowPublishResult result = runPipeline(window)
+                .doOnError(error -> logger.error("Erro na extração manual", error))
+                .block();
+        logResult("Extração manual", result);
+    }
+
+    private Mono<WindowPublishResult> runPipeline(ActivityAdapter.TimeWindow window) {
+        return orchestrator.orchestrateExtraction(window)
                 .transform(normalizer::normalizeStream)
                 .transform(aggregator::aggregate)
-                .flatMap(event -> {
-                    kafkaProducer.publishActivityEvent(event);
-                    return Flux.just(event);
-                })
-                .doOnComplete(() -> logger.info("Extração manual concluída"))
-                .doOnError(error -> logger.error("Erro na extração manual", error))
-                .blockLast();
+                .as(eventPublisher::publishWindow);
+    }
+
+    private void logResult(String label, WindowPublishResult result) {
+        if (result == null) {
+            return;
+        }
+        pipelineMetrics.recordPublished(result);
+        if (result.isComplete()) {
+            logger.info("{} concluída com sucesso: {} eventos publicados em {} ms",
+                    label, result.getPublished(), result.getDuration().toMillis());
+        } else {
+            logger.error("{} concluída com falhas: {} eventos publicados, {} com erro de envio em {} ms",
+                    label, result.getPublished(), result.getFailed(), result.getDuration().toMillis());
+        }
     }
 }
 
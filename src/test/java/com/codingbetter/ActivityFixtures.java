@@ -0,0 +1,55 @@
+package com.codingbetter;
+
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.kafka.streams.StreamsConfig;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Fixtures compartilhadas dos testes: eventos de atividade de 5 minutos e configuração
+ * do TopologyTestDriver.
+ */
+public final class ActivityFixtures {
+
+    private ActivityFixtures() {
+    }
+
+    /**
+     * ObjectMapper com a mesma configuração de datas da aplicação (ISO-8601, sem timestamps numéricos).
+     */
+    public static ObjectMapper objectMapper() {
+        return new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    /**
+     * Evento de 5 minutos terminando em end, com confiança HIGH, em produção via Dynatrace.
+     */
+    public static ServiceActivityEvent event(String serviceId, long count, Instant end, List<String> callers) {
+        return event(serviceId, count, end, ServiceActivityEvent.ConfidenceLevel.HIGH, callers);
+    }
+
+    public static ServiceActivityEvent event(String serviceId, long count, Instant end,
+                                             ServiceActivityEvent.ConfidenceLevel confidence,
+                                             List<String> callers) {
+        return new ServiceActivityEvent(serviceId, count, callers,
+                new ServiceActivityEvent.TimeWindow(end.minusSeconds(300), end),
+                confidence, new ServiceActivityEvent.Metadata("production", "dynatrace"));
+    }
+
+    /**
+     * Propriedades mínimas do TopologyTestDriver.
+     */
+    public static Properties streamsProperties(String applicationId) {
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, applicationId);
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        return props;
+    }
+}
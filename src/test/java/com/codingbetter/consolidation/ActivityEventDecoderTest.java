@@ -0,0 +1,104 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.SchemaRegistry;
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActivityEventDecoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final ActivityEventDecoder decoder = new ActivityEventDecoder(objectMapper.getFactory());
+
+    private static ServiceActivityEvent event(Instant end) {
+        ServiceActivityEvent event = new ServiceActivityEvent("svc-a", 42L, List.of("gtw-1", "svc-b"),
+                new ServiceActivityEvent.TimeWindow(end.minusSeconds(300), end),
+                ServiceActivityEvent.ConfidenceLevel.MEDIUM,
+                new ServiceActivityEvent.Metadata("production", "dynatrace"));
+        event.setRepository(new ServiceActivityEvent.RepositoryInfo());
+        return event;
+    }
+
+    @Test
+    void testProjectsSameFieldsAsDataBinding() throws Exception {
+        Instant end = Instant.parse("2026-10-01T10:05:00.123456Z");
+        String json = objectMapper.writeValueAsString(event(end));
+
+        ActivityProjection projection = decoder.decode(json, 0L);
+        ServiceActivityEvent bound = objectMapper.readValue(json, ServiceActivityEvent.class);
+
+        assertEquals(bound.getServiceId(), projection.getServiceId());
+        assertEquals(bound.getActivityCount(), projection.getActivityCount());
+        assertEquals(bound.getWindow().getEnd().toEpochMilli(), projection.getWindowEndMillis());
+        assertEquals(bound.getCallers(), projection.getCallers());
+        assertEquals(bound.getConfidenceLevel(), projection.getConfidenceLevel());
+    }
+
+    @Test
+    void testFiltersByWindowEnd() throws Exception {
+        Instant end = Instant.parse("2026-10-01T10:05:00Z");
+        String json = objectMapper.writeValueAsString(event(end));
+
+        assertNull(decoder.decode(json, end.toEpochMilli() + 1));
+        assertNotNull(decoder.decode(json, end.toEpochMilli()));
+    }
+
+    @Test
+    void testNumericAndOffsetTimestamps() throws Exception {
+        String numeric = "{\"service.id\":\"svc-a\",\"timestamps.window\":{\"end\":1790000000.5}}";
+        assertEquals(1_790_000_000_500L, decoder.decode(numeric, 0L).getWindowEndMillis());
+
+        String offset = "{\"service.id\":\"svc-a\",\"timestamps.window\":{\"end\":\"2026-10-01T12:05:00+02:00\"}}";
+        assertEquals(Instant.parse("2026-10-01T10:05:00Z").toEpochMilli(), decoder.decode(offset, 0L).getWindowEndMillis());
+    }
+
+    @Test
+    void testRejectsEventWithoutServiceId() {
+        assertThrows(Exception.class, () -> decoder.decode("{\"activity.count\":1}", 0L));
+    }
+
+    @Test
+    void testDecodesEnvelopeFilteredByServiceAndWindowEnd() throws Exception {
+        Instant end = Instant.parse("2026-10-01T10:05:00Z");
+        ServiceActivityEvent other = event(end);
+        other.setServiceId("svc-c");
+        byte[] envelope = SchemaRegistry.encodeEnvelope(List.of(event(end), other), new long[2]);
+
+        assertEquals(List.of("svc-a", "svc-c"), decoder.decodeEnvelope(envelope, 0L, null).stream()
+                .map(ActivityProjection::getServiceId).toList());
+        List<ActivityProjection> projections = decoder.decodeEnvelope(envelope, 0L, "svc-c");
+        assertEquals(1, projections.size());
+        assertEquals(42L, projections.get(0).getActivityCount());
+        assertEquals(List.of("gtw-1", "svc-b"), projections.get(0).getCallers());
+        assertTrue(decoder.decodeEnvelope(envelope, end.toEpochMilli() + 1, null).isEmpty());
+    }
+
+    @Test
+    void testReadsOnlyTheWindowEndInEveryWireFormat() throws Exception {
+        Instant end = Instant.parse("2026-10-01T10:05:00Z");
+        ServiceActivityEvent event = event(end);
+
+        assertEquals(end.toEpochMilli(), ActivityEventDecoder.windowEndOf(
+                objectMapper.writeValueAsBytes(event), objectMapper.getFactory()));
+        assertEquals(end.toEpochMilli(), ActivityEventDecoder.windowEndOf(
+                SchemaRegistry.encodeBinary(event, objectMapper), objectMapper.getFactory()));
+        assertEquals(end.toEpochMilli(), ActivityEventDecoder.windowEndOf(
+                SchemaRegistry.encodeEnvelope(List.of(event, event), new long[] {1, 2}), objectMapper.getFactory()));
+        // O restante do JSON não é lido depois da janela
+        assertEquals(end.toEpochMilli(), ActivityEventDecoder.windowEndOf(
+                "{\"timestamps.window\":{\"end\":\"2026-10-01T10:05:00Z\"},\"activity.count\":[".getBytes(),
+                objectMapper.getFactory()));
+        assertEquals(ActivityProjection.NO_WINDOW_END, ActivityEventDecoder.windowEndOf(
+                "{\"service.id\":\"svc-a\"}".getBytes(), objectMapper.getFactory()));
+    }
+}
@@ -0,0 +1,51 @@
+package com.codingbetter.consolidation;
+
+import org.apache.kafka.clients.consumer.ConsumerGroupMetadata;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsolidationLeaseTest {
+
+    /**
+     * Consumer cuja geração no grupo pode ser alterada pelo teste.
+     */
+    private static class GroupConsumer extends MockConsumer<String, String> {
+
+        private ConsumerGroupMetadata metadata = new ConsumerGroupMetadata(
+                "governance-consolidation-workers", 7, "member-1", Optional.empty());
+
+        GroupConsumer() {
+            super(OffsetResetStrategy.EARLIEST);
+        }
+
+        @Override
+        public synchronized ConsumerGroupMetadata groupMetadata() {
+            return metadata;
+        }
+    }
+
+    @Test
+    void testLeaseIsLostWhenTheConsumerLeavesTheGroup() {
+        GroupConsumer consumer = new GroupConsumer();
+        ConsolidationLease lease = ConsolidationLease.of(consumer, "partição 3");
+        lease.verify();
+
+        // max.poll.interval.ms excedido: o consumer sai do grupo e descarta geração e member id
+        consumer.metadata = new ConsumerGroupMetadata("governance-consolidation-workers", -1, "", Optional.empty());
+        assertThrows(ConsolidationLease.LostException.class, lease::verify);
+
+        // De volta ao grupo em outra geração: o item pode ter sido processado por outro pod
+        consumer.metadata = new ConsumerGroupMetadata("governance-consolidation-workers", 9, "member-2", Optional.empty());
+        assertThrows(ConsolidationLease.LostException.class, lease::verify);
+    }
+
+    @Test
+    void testNoLeaseAlwaysVerifies() {
+        assertDoesNotThrow(ConsolidationLease.NONE::verify);
+    }
+}
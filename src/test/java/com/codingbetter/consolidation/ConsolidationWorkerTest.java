@@ -0,0 +1,46 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.SchemaRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsolidationWorkerTest {
+
+    private static ConsumerRecord<String, byte[]> record(long offset, long eventId) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>("governance.activity.raw", 0, offset,
+                "svc-a", "{}".getBytes(StandardCharsets.UTF_8));
+        record.headers().add(SchemaRegistry.HEADER_EVENT_ID,
+                HexFormat.of().toHexDigits(eventId).getBytes(StandardCharsets.US_ASCII));
+        return record;
+    }
+
+    // Offsets [from, to); o offset 6 repete o event-id do offset 1 (reextração da mesma janela)
+    private static List<ConsumerRecord<String, byte[]>> poll(long from, long to) {
+        List<ConsumerRecord<String, byte[]>> records = new ArrayList<>();
+        for (long offset = from; offset < to; offset++) {
+            records.add(record(offset, offset == 6 ? 2 : offset + 1));
+        }
+        return records;
+    }
+
+    @Test
+    void testSubRangesSharingAFilterIgnoreThePollOverflowOfTheirNeighbour() {
+        EventIdFilter eventIds = new EventIdFilter(1_000);
+
+        // Sub-faixa [0, 5): o poll devolve até o offset 7, que pertence à sub-faixa seguinte
+        List<ConsumerRecord<String, byte[]>> first = ConsolidationWorker.distinct(poll(0, 8), 5, eventIds);
+        List<ConsumerRecord<String, byte[]>> second = ConsolidationWorker.distinct(poll(5, 8), 8, eventIds);
+
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L), first.stream().map(ConsumerRecord::offset).toList());
+        assertEquals(List.of(5L, 7L), second.stream().map(ConsumerRecord::offset).toList());
+        assertEquals(1, eventIds.getDuplicates());
+        assertEquals(7, eventIds.size());
+    }
+}
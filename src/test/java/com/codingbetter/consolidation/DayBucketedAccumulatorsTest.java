@@ -0,0 +1,61 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.codingbetter.ActivityFixtures.event;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DayBucketedAccumulatorsTest {
+
+    private final DecisionEngine engine = new DecisionEngine(new TrafficClassifier());
+
+
+    @Test
+    void testEachAsOfDateMatchesSingleDateConsolidation() {
+        int windowDays = 7;
+        List<LocalDate> asOfDates = List.of(LocalDate.parse("2026-09-10"), LocalDate.parse("2026-09-20"));
+
+        List<ServiceActivityEvent> events = new ArrayList<>();
+        Instant start = Instant.parse("2026-08-25T06:00:00Z");
+        for (int i = 0; i < 30 * 4; i++) {
+            events.add(event("svc-" + (i % 3), i, start.plus(i * 6L, ChronoUnit.HOURS), List.of("caller-" + (i % 5))));
+        }
+
+        DayBucketedAccumulators buckets = new DayBucketedAccumulators(asOfDates, windowDays, 14);
+        events.forEach(buckets::add);
+
+        Map<LocalDate, Map<String, ServiceActivitySnapshot>> backfilled = new HashMap<>();
+        buckets.forEachAsOfDate((asOfDate, accumulator) -> backfilled
+                .computeIfAbsent(asOfDate, date -> new HashMap<>())
+                .put(accumulator.getServiceId(), engine.generateSnapshot(accumulator, asOfDate)));
+
+        for (LocalDate asOfDate : asOfDates) {
+            Instant reference = DecisionEngine.referenceTimeOf(asOfDate);
+            Instant cutoff = reference.minus(windowDays, ChronoUnit.DAYS);
+
+            Map<String, ServiceActivityAccumulator> expected = new HashMap<>();
+            events.stream()
+                    .filter(e -> !e.getWindow().getEnd().isBefore(cutoff) && e.getWindow().getEnd().isBefore(reference))
+                    .forEach(e -> SnapshotGenerator.accumulate(expected, e));
+
+            assertEquals(expected.keySet(), backfilled.get(asOfDate).keySet());
+            expected.forEach((serviceId, accumulator) -> {
+                ServiceActivitySnapshot snapshot = backfilled.get(asOfDate).get(serviceId);
+                assertEquals(accumulator.getTotalActivity(), snapshot.getTrafficVolume());
+                assertEquals(accumulator.getLastSeen(), snapshot.getLastSeen());
+                assertEquals(asOfDate, snapshot.getSnapshotDate());
+                assertEquals(ServiceActivitySnapshot.Classification.ACTIVE, snapshot.getClassification());
+            });
+        }
+    }
+}
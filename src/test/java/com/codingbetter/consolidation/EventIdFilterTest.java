@@ -0,0 +1,37 @@
+package com.codingbetter.consolidation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventIdFilterTest {
+
+    @Test
+    void testSuppressesRepeatedIdsAcrossGrowth() {
+        EventIdFilter filter = new EventIdFilter(100_000);
+        for (long id = 1; id <= 50_000; id++) {
+            assertTrue(filter.firstSeen(id * 0x9E3779B97F4A7C15L));
+        }
+        for (long id = 1; id <= 50_000; id++) {
+            assertFalse(filter.firstSeen(id * 0x9E3779B97F4A7C15L));
+        }
+
+        assertEquals(50_000, filter.size());
+        assertEquals(50_000, filter.getDuplicates());
+    }
+
+    @Test
+    void testRecordsWithoutIdAndIdsBeyondLimitAlwaysPass() {
+        EventIdFilter filter = new EventIdFilter(2);
+        assertTrue(filter.firstSeen(0));
+        assertTrue(filter.firstSeen(0));
+        assertTrue(filter.firstSeen(10));
+        assertTrue(filter.firstSeen(-20));
+        assertTrue(filter.firstSeen(30));
+        assertTrue(filter.firstSeen(30));
+
+        assertFalse(filter.firstSeen(-20));
+        assertEquals(2, filter.size());
+        assertEquals(2, filter.getOverflow());
+    }
+}
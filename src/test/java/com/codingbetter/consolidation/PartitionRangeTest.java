@@ -0,0 +1,36 @@
+package com.codingbetter.consolidation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionRangeTest {
+
+    @Test
+    void testSplitCoversRangeContiguously() {
+        PartitionRange range = new PartitionRange(3, 100L, 200L, 1_000, 11_003);
+
+        List<PartitionRange> subRanges = range.split(4);
+
+        assertEquals(4, subRanges.size());
+        assertEquals(1_000, subRanges.get(0).getStartOffset());
+        assertEquals(11_003, subRanges.get(3).getEndOffset());
+        for (int i = 1; i < subRanges.size(); i++) {
+            assertEquals(subRanges.get(i - 1).getEndOffset(), subRanges.get(i).getStartOffset());
+        }
+        assertEquals(range.getRecordCount(), subRanges.stream().mapToLong(PartitionRange::getRecordCount).sum());
+        subRanges.forEach(subRange -> {
+            assertEquals(3, subRange.getPartition());
+            assertEquals(100L, subRange.getCutoffTimestamp());
+            assertEquals(200L, subRange.getWindowCutoffTimestamp());
+        });
+    }
+
+    @Test
+    void testSplitNeverProducesEmptySubRanges() {
+        assertEquals(2, new PartitionRange(0, 0L, 0L, 10, 12).split(8).size());
+        assertEquals(1, new PartitionRange(0, 0L, 0L, 10, 10).split(8).size());
+    }
+}
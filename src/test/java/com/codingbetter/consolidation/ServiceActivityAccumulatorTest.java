@@ -0,0 +1,156 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.normalization.ServiceIdDictionary;
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.codingbetter.ActivityFixtures.event;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceActivityAccumulatorTest {
+
+
+    @Test
+    void testAddFoldsEvents() {
+        Instant now = Instant.now();
+        ServiceActivityAccumulator accumulator = new ServiceActivityAccumulator("svc-a")
+                .add(event("svc-a", 10, now.minus(2, ChronoUnit.DAYS),
+                        ServiceActivityEvent.ConfidenceLevel.HIGH, List.of("caller-1")))
+                .add(event("svc-a", 5, now, ServiceActivityEvent.ConfidenceLevel.MEDIUM, List.of("caller-1", "caller-2")));
+
+        assertEquals(15, accumulator.getTotalActivity());
+        assertEquals(now, accumulator.getLastSeen());
+        assertEquals(Set.of("caller-1", "caller-2"), accumulator.getCallers());
+        assertEquals(ServiceActivityEvent.ConfidenceLevel.MEDIUM, accumulator.getMaxConfidence());
+        assertEquals(2, accumulator.getEventCount());
+    }
+
+    @Test
+    void testMergeEqualsSingleFold() {
+        Instant now = Instant.now();
+        List<ServiceActivityEvent> events = List.of(
+                event("svc-a", 1, now.minus(3, ChronoUnit.DAYS), ServiceActivityEvent.ConfidenceLevel.HIGH, List.of("x")),
+                event("svc-a", 2, now.minus(1, ChronoUnit.DAYS), ServiceActivityEvent.ConfidenceLevel.LOW, List.of("y")),
+                event("svc-a", 3, now, ServiceActivityEvent.ConfidenceLevel.MEDIUM, null));
+
+        ServiceActivityAccumulator single = new ServiceActivityAccumulator("svc-a");
+        events.forEach(single::add);
+
+        ServiceActivityAccumulator left = new ServiceActivityAccumulator("svc-a").add(events.get(2));
+        ServiceActivityAccumulator right = new ServiceActivityAccumulator("svc-a").add(events.get(0)).add(events.get(1));
+        ServiceActivityAccumulator merged = left.merge(right);
+
+        assertEquals(single.getTotalActivity(), merged.getTotalActivity());
+        assertEquals(single.getLastSeen(), merged.getLastSeen());
+        assertEquals(single.getCallers(), merged.getCallers());
+        assertEquals(single.getMaxConfidence(), merged.getMaxConfidence());
+        assertEquals(single.getEventCount(), merged.getEventCount());
+    }
+
+    @Test
+    void testMergeRejectsDifferentServices() {
+        ServiceActivityAccumulator accumulator = new ServiceActivityAccumulator("svc-a");
+        assertThrows(IllegalArgumentException.class,
+                () -> accumulator.merge(new ServiceActivityAccumulator("svc-b")));
+    }
+
+    @Test
+    void testSnapshotMatchesListBasedGeneration() {
+        DecisionEngine engine = new DecisionEngine(new TrafficClassifier());
+        Instant now = Instant.now();
+        List<ServiceActivityEvent> events = List.of(
+                event("svc-a", 4, now.minus(10, ChronoUnit.DAYS), ServiceActivityEvent.ConfidenceLevel.HIGH, List.of("x")),
+                event("svc-a", 6, now.minus(9, ChronoUnit.DAYS), ServiceActivityEvent.ConfidenceLevel.HIGH, List.of("x", "y")));
+
+        ServiceActivityAccumulator accumulator = new ServiceActivityAccumulator("svc-a");
+        events.forEach(accumulator::add);
+
+        ServiceActivitySnapshot fromList = engine.generateSnapshot("svc-a", events);
+        ServiceActivitySnapshot fromAccumulator = engine.generateSnapshot(accumulator);
+
+        assertEquals(fromList.getTrafficVolume(), fromAccumulator.getTrafficVolume());
+        assertEquals(fromList.getLastSeen(), fromAccumulator.getLastSeen());
+        assertEquals(Set.copyOf(fromList.getActiveCallers()), Set.copyOf(fromAccumulator.getActiveCallers()));
+        assertEquals(ServiceActivitySnapshot.Classification.LOW_USAGE, fromAccumulator.getClassification());
+    }
+
+    @Test
+    void testEmptyAccumulatorGeneratesNoTrafficSnapshot() {
+        DecisionEngine engine = new DecisionEngine(new TrafficClassifier());
+        ServiceActivitySnapshot snapshot = engine.generateSnapshot(new ServiceActivityAccumulator("svc-a"));
+
+        assertEquals(ServiceActivitySnapshot.Classification.NO_TRAFFIC, snapshot.getClassification());
+        assertEquals(0L, snapshot.getTrafficVolume());
+    }
+
+    @Test
+    void testHorizonsAndTrendFromDailyBuckets() throws Exception {
+        DecisionEngine engine = new DecisionEngine(new TrafficClassifier());
+        LocalDate asOf = LocalDate.parse("2026-09-30");
+        Instant lastDay = asOf.atTime(12, 0).toInstant(ZoneOffset.UTC);
+
+        ServiceActivityAccumulator accumulator = new ServiceActivityAccumulator("svc-a")
+                .add(event("svc-a", 10, lastDay, ServiceActivityEvent.ConfidenceLevel.HIGH, List.of("x")))
+                .add(event("svc-a", 5, lastDay.minus(1, ChronoUnit.DAYS), ServiceActivityEvent.ConfidenceLevel.HIGH, List.of("y")))
+                .add(event("svc-a", 20, lastDay.minus(20, ChronoUnit.DAYS), ServiceActivityEvent.ConfidenceLevel.HIGH, List.of("z")))
+                .addHistory(event("svc-a", 100, lastDay.minus(60, ChronoUnit.DAYS), ServiceActivityEvent.ConfidenceLevel.HIGH, List.of("w")));
+
+        // Buckets diários sobrevivem à serialização (checkpoints, state stores)
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        accumulator.writeTo(new DataOutputStream(bytes));
+        ServiceActivityAccumulator restored = ServiceActivityAccumulator.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        ServiceActivitySnapshot snapshot = engine.generateSnapshot(restored, asOf);
+
+        // Histórico não entra no volume da janela
+        assertEquals(35L, snapshot.getTrafficVolume());
+
+        Map<Integer, ServiceActivitySnapshot.ActivityHorizon> horizons = new HashMap<>();
+        snapshot.getActivityHorizons().forEach(horizon -> horizons.put(horizon.getDays(), horizon));
+        assertEquals(10L, horizons.get(1).getTrafficVolume());
+        assertEquals(15L, horizons.get(7).getTrafficVolume());
+        assertEquals(2, horizons.get(7).getDistinctCallers());
+        assertEquals(35L, horizons.get(30).getTrafficVolume());
+        assertEquals(135L, horizons.get(90).getTrafficVolume());
+        assertEquals(4, horizons.get(90).getDistinctCallers());
+
+        assertEquals(10L, snapshot.getDailyTrend().getLastDayVolume());
+        assertEquals(5L, snapshot.getDailyTrend().getPreviousDayVolume());
+        assertEquals(1.0, snapshot.getDailyTrend().getChangeRatio());
+    }
+
+    @Test
+    void testMergeAcrossDictionaryGenerationsKeepsCallers() {
+        Instant now = Instant.now();
+        ServiceActivityAccumulator older = new ServiceActivityAccumulator("svc-a")
+                .add(event("svc-a", 1, now, ServiceActivityEvent.ConfidenceLevel.HIGH, List.of("caller-1", "caller-2")));
+
+        // Enche o dicionário corrente até a troca
+        ServiceIdDictionary full = ServiceIdDictionary.current();
+        for (int i = 0; ServiceIdDictionary.current() == full; i++) {
+            full.intern("filler-" + i);
+        }
+
+        ServiceActivityAccumulator newer = new ServiceActivityAccumulator("svc-a")
+                .add(event("svc-a", 1, now, ServiceActivityEvent.ConfidenceLevel.HIGH, List.of("caller-3")));
+        newer.merge(older);
+
+        assertEquals(List.of("caller-1", "caller-2", "caller-3"), newer.getCallerList());
+        assertEquals(3, newer.getDistinctCallersBetween(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,83 @@
+package com.codingbetter.consolidation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceOffsetIndexTest {
+
+    private static final long DAY_1 = LocalDate.parse("2026-10-01").toEpochDay() * 86_400_000L;
+    private static final long DAY_2 = LocalDate.parse("2026-10-02").toEpochDay() * 86_400_000L;
+
+    @Test
+    void testRecorderCoalescesNearbyOffsetsPerServiceAndDay() {
+        ServiceOffsetIndex.Recorder recorder = new ServiceOffsetIndex.Recorder(3, 10, 24);
+        recorder.record("svc-a", 100, DAY_1);
+        recorder.record("svc-b", 101, DAY_1);
+        recorder.record("svc-a", 105, DAY_1);
+        recorder.record("svc-a", 500, DAY_1 + 3_600_000);
+        recorder.record("svc-a", 900, DAY_2);
+        recorder.record(null, 901, DAY_2);
+
+        Map<LocalDate, ServiceOffsetIndex.Segment> byDay = new TreeMap<>();
+        recorder.drain().forEach(segment -> byDay.put(segment.getDay(), segment));
+
+        ServiceOffsetIndex.Segment first = byDay.get(LocalDate.parse("2026-10-01"));
+        assertEquals(3, first.getPartition());
+        assertEquals(500, first.getLastOffset());
+        assertArrayEquals(new long[]{100, 105, 500, 500}, first.getRanges().get("svc-a"));
+        assertArrayEquals(new long[]{101, 101}, first.getRanges().get("svc-b"));
+
+        ServiceOffsetIndex.Segment second = byDay.get(LocalDate.parse("2026-10-02"));
+        assertArrayEquals(new long[]{900, 900}, second.getRanges().get("svc-a"));
+        assertTrue(recorder.isEmpty());
+    }
+
+    @Test
+    void testSegmentsAreShardedByServiceHash() throws Exception {
+        ServiceOffsetIndex.Recorder recorder = new ServiceOffsetIndex.Recorder(3, 10, 24, 4);
+        List<String> services = List.of("svc-a", "svc-b", "svc-c", "svc-d", "svc-e", "svc-f");
+        for (int i = 0; i < services.size(); i++) {
+            recorder.record(services.get(i), 100 + i, DAY_1);
+        }
+
+        List<ServiceOffsetIndex.Segment> segments = recorder.drain();
+        assertTrue(segments.size() > 1);
+        for (ServiceOffsetIndex.Segment segment : segments) {
+            assertEquals("3:2026-10-01:" + segment.getShard(), segment.key());
+            assertEquals(105, segment.getLastOffset());
+            segment.getRanges().keySet().forEach(serviceId ->
+                    assertEquals(segment.getShard(), ServiceOffsetIndex.shardOf(serviceId, 4)));
+        }
+        assertEquals(services.size(), segments.stream().mapToInt(segment -> segment.getRanges().size()).sum());
+
+        // Segmentos gravados antes dos shards mantêm a chave original
+        ServiceOffsetIndex.Segment legacy = new ObjectMapper().findAndRegisterModules().readValue(
+                "{\"partition\":3,\"day\":\"2026-10-01\",\"lastOffset\":9,\"ranges\":{}}",
+                ServiceOffsetIndex.Segment.class);
+        assertEquals("3:2026-10-01", legacy.key());
+    }
+
+    @Test
+    void testRangesAreCappedByMergingClosestAndSegmentsMergeAcrossCommits() {
+        ServiceOffsetIndex.Recorder recorder = new ServiceOffsetIndex.Recorder(0, 0, 2);
+        for (long offset : List.of(10L, 20L, 22L, 100L)) {
+            recorder.record("svc-a", offset, DAY_1);
+        }
+        ServiceOffsetIndex.Segment segment = recorder.drain().get(0);
+        // 4 faixas -> 2: une primeiro 20-22 (intervalo 2), depois 10-22 (intervalo 10)
+        assertArrayEquals(new long[]{10, 22, 100, 100}, segment.getRanges().get("svc-a"));
+
+        recorder.record("svc-a", 101, DAY_1);
+        recorder.record("svc-a", 300, DAY_1);
+        ServiceOffsetIndex.Segment merged = segment.merge(recorder.drain().get(0), 1, 2);
+        assertArrayEquals(new long[]{10, 101, 300, 300}, merged.getRanges().get("svc-a"));
+        assertEquals(300, merged.getLastOffset());
+    }
+}
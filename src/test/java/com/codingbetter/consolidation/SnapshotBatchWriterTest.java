@@ -0,0 +1,59 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotBatchWriterTest {
+
+    private static ServiceActivitySnapshot snapshot(int i) {
+        ServiceActivitySnapshot snapshot = new ServiceActivitySnapshot();
+        snapshot.setServiceId("svc-" + i);
+        return snapshot;
+    }
+
+    @Test
+    void testBoundsInFlightBatchesAndFansOut() throws Exception {
+        AtomicInteger batches = new AtomicInteger();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        SnapshotSink slow = new SnapshotSink() {
+            @Override
+            public String getName() {
+                return "slow";
+            }
+
+            @Override
+            public PartitionWriter open(String runId, int partition) {
+                return batch -> {
+                    batches.incrementAndGet();
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    // Confirmação assíncrona, como um destino remoto
+                    return CompletableFuture.runAsync(inFlight::decrementAndGet,
+                            CompletableFuture.delayedExecutor(5, TimeUnit.MILLISECONDS));
+                };
+            }
+        };
+        InMemorySnapshotSink memory = new InMemorySnapshotSink();
+        CompositeSnapshotSink sink = new CompositeSnapshotSink(List.of(slow, memory));
+
+        long written;
+        try (SnapshotBatchWriter writer = new SnapshotBatchWriter(sink.open("run", 0), 10, 2)) {
+            for (int i = 0; i < 95; i++) {
+                writer.accept(snapshot(i));
+            }
+            written = writer.finish();
+        }
+
+        assertEquals(95, written);
+        assertEquals(95, memory.size());
+        assertEquals(10, batches.get());
+        assertTrue(maxInFlight.get() <= 2);
+    }
+}
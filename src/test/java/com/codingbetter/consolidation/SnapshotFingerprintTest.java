@@ -0,0 +1,64 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotFingerprintTest {
+
+    private static ServiceActivitySnapshot snapshot(long volume, List<String> callers,
+                                                    ServiceActivitySnapshot.Classification classification) {
+        ServiceActivitySnapshot snapshot = new ServiceActivitySnapshot();
+        snapshot.setServiceId("svc-a");
+        snapshot.setTrafficVolume(volume);
+        snapshot.setActiveCallers(callers);
+        snapshot.setClassification(classification);
+        snapshot.setReceivesTraffic(true);
+        snapshot.setLastSeen(Instant.now().minusSeconds(volume));
+        snapshot.setSnapshotDate(LocalDate.now().minusDays(volume));
+        return snapshot;
+    }
+
+    @Test
+    void testIgnoresVolumeDatesAndCallerOrder() {
+        String first = SnapshotFingerprint.of(snapshot(10, List.of("a", "b"), ServiceActivitySnapshot.Classification.ACTIVE));
+        String second = SnapshotFingerprint.of(snapshot(99, List.of("b", "a"), ServiceActivitySnapshot.Classification.ACTIVE));
+
+        assertEquals(first, second);
+    }
+
+    @Test
+    void testChangesWithClassificationOrCallers() {
+        String base = SnapshotFingerprint.of(snapshot(10, List.of("a"), ServiceActivitySnapshot.Classification.ACTIVE));
+
+        assertNotEquals(base, SnapshotFingerprint.of(snapshot(10, List.of("a"), ServiceActivitySnapshot.Classification.NO_TRAFFIC)));
+        assertNotEquals(base, SnapshotFingerprint.of(snapshot(10, List.of("a", "c"), ServiceActivitySnapshot.Classification.ACTIVE)));
+    }
+
+    @Test
+    void testChangesWithHorizonMagnitudeOrTrendDirection() {
+        ServiceActivitySnapshot base = snapshot(10, List.of("a"), ServiceActivitySnapshot.Classification.ACTIVE);
+        base.setActivityHorizons(List.of(new ServiceActivitySnapshot.ActivityHorizon(30, 1000L, 3)));
+        base.setDailyTrend(new ServiceActivitySnapshot.DailyTrend(100L, 90L, 0.11));
+
+        ServiceActivitySnapshot sameMagnitude = snapshot(10, List.of("a"), ServiceActivitySnapshot.Classification.ACTIVE);
+        sameMagnitude.setActivityHorizons(List.of(new ServiceActivitySnapshot.ActivityHorizon(30, 900L, 2)));
+        sameMagnitude.setDailyTrend(new ServiceActivitySnapshot.DailyTrend(90L, 100L, -0.1));
+        assertEquals(SnapshotFingerprint.of(base), SnapshotFingerprint.of(sameMagnitude));
+
+        ServiceActivitySnapshot tenfold = snapshot(10, List.of("a"), ServiceActivitySnapshot.Classification.ACTIVE);
+        tenfold.setActivityHorizons(List.of(new ServiceActivitySnapshot.ActivityHorizon(30, 10_000L, 3)));
+        tenfold.setDailyTrend(base.getDailyTrend());
+        assertNotEquals(SnapshotFingerprint.of(base), SnapshotFingerprint.of(tenfold));
+
+        ServiceActivitySnapshot falling = snapshot(10, List.of("a"), ServiceActivitySnapshot.Classification.ACTIVE);
+        falling.setActivityHorizons(base.getActivityHorizons());
+        falling.setDailyTrend(new ServiceActivitySnapshot.DailyTrend(10L, 100L, -0.9));
+        assertNotEquals(SnapshotFingerprint.of(base), SnapshotFingerprint.of(falling));
+    }
+}
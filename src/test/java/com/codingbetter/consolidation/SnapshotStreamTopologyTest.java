@@ -0,0 +1,180 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.SchemaCodecs;
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.test.TestRecord;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import static com.codingbetter.ActivityFixtures.event;
+import static com.codingbetter.ActivityFixtures.objectMapper;
+import static com.codingbetter.ActivityFixtures.streamsProperties;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotStreamTopologyTest {
+
+    private final ObjectMapper objectMapper = objectMapper();
+
+    private final SchemaCodecs schemaCodecs = new SchemaCodecs(objectMapper);
+
+    private final DecisionEngine decisionEngine = new DecisionEngine(new TrafficClassifier());
+
+
+    @Test
+    void testEmitsSameSnapshotAsBatchMode() throws Exception {
+        StreamsBuilder builder = new StreamsBuilder();
+        new SnapshotStreamTopology(decisionEngine, schemaCodecs).build(builder);
+
+        Properties props = streamsProperties("snapshot-stream-test");
+
+        Instant now = Instant.now();
+        List<ServiceActivityEvent> events = List.of(
+                event("svc-a", 10, now.minus(3, ChronoUnit.DAYS), List.of("caller-1")),
+                event("svc-a", 5, now.minus(1, ChronoUnit.DAYS), List.of("caller-2")),
+                event("svc-a", 7, now.minus(1, ChronoUnit.HOURS), List.of("caller-1")));
+
+        try (TopologyTestDriver driver = new TopologyTestDriver(builder.build(), props)) {
+            TestInputTopic<String, String> raw = driver.createInputTopic(
+                    "governance.activity.raw", new StringSerializer(), new StringSerializer());
+            TestOutputTopic<String, String> snapshots = driver.createOutputTopic(
+                    "governance.activity.snapshot", new StringDeserializer(), new StringDeserializer());
+
+            for (ServiceActivityEvent event : events) {
+                raw.pipeInput(event.getServiceId(), objectMapper.writeValueAsString(event), event.getWindow().getEnd());
+            }
+            assertTrue(snapshots.isEmpty());
+
+            driver.advanceWallClockTime(Duration.ofSeconds(60));
+
+            List<String> emitted = snapshots.readValuesToList();
+            assertEquals(1, emitted.size());
+
+            ServiceActivitySnapshot streamed = objectMapper.readValue(emitted.get(0), ServiceActivitySnapshot.class);
+            ServiceActivitySnapshot batch = decisionEngine.generateSnapshot("svc-a", events);
+
+            assertEquals(batch.getTrafficVolume(), streamed.getTrafficVolume());
+            assertEquals(batch.getLastSeen(), streamed.getLastSeen());
+            assertEquals(batch.getClassification(), streamed.getClassification());
+            assertEquals(Set.copyOf(batch.getActiveCallers()), Set.copyOf(streamed.getActiveCallers()));
+        }
+    }
+
+    @Test
+    void testWindowCutoffIsTheExactBatchCutoffOnTheRecordTimestamp() throws Exception {
+        StreamsBuilder builder = new StreamsBuilder();
+        new SnapshotStreamTopology(decisionEngine, schemaCodecs).build(builder);
+
+        Instant cutoff = Instant.now().minus(30, ChronoUnit.DAYS);
+
+        try (TopologyTestDriver driver = new TopologyTestDriver(builder.build(),
+                streamsProperties("snapshot-stream-cutoff-test"))) {
+            TestInputTopic<String, String> raw = driver.createInputTopic(
+                    "governance.activity.raw", new StringSerializer(), new StringSerializer());
+            TestOutputTopic<String, String> snapshots = driver.createOutputTopic(
+                    "governance.activity.snapshot", new StringDeserializer(), new StringDeserializer());
+
+            // Mesmo dia UTC do corte (ou vizinho): só o timestamp do registro decide
+            ServiceActivityEvent before = event("svc-a", 10, cutoff.minus(2, ChronoUnit.HOURS), List.of());
+            ServiceActivityEvent after = event("svc-a", 5, cutoff.plus(2, ChronoUnit.HOURS), List.of());
+            for (ServiceActivityEvent event : List.of(before, after)) {
+                raw.pipeInput(event.getServiceId(), objectMapper.writeValueAsString(event), event.getWindow().getEnd());
+            }
+
+            driver.advanceWallClockTime(Duration.ofSeconds(60));
+
+            List<String> emitted = snapshots.readValuesToList();
+            assertEquals(1, emitted.size());
+            assertEquals(5L, objectMapper.readValue(emitted.get(0), ServiceActivitySnapshot.class).getTrafficVolume());
+        }
+    }
+
+    @Test
+    void testUnchangedSnapshotIsNotRepublished() throws Exception {
+        StreamsBuilder builder = new StreamsBuilder();
+        new SnapshotStreamTopology(decisionEngine, schemaCodecs).build(builder);
+
+        Instant now = Instant.now();
+
+        try (TopologyTestDriver driver = new TopologyTestDriver(builder.build(),
+                streamsProperties("snapshot-stream-change-test"))) {
+            TestInputTopic<String, String> raw = driver.createInputTopic(
+                    "governance.activity.raw", new StringSerializer(), new StringSerializer());
+            TestOutputTopic<String, String> snapshots = driver.createOutputTopic(
+                    "governance.activity.snapshot", new StringDeserializer(), new StringDeserializer());
+            TestOutputTopic<String, String> latest = driver.createOutputTopic(
+                    SnapshotChangePublisher.LATEST_TOPIC, new StringDeserializer(), new StringDeserializer());
+
+            ServiceActivityEvent first = event("svc-a", 10, now.minus(2, ChronoUnit.HOURS), List.of("caller-1"));
+            raw.pipeInput(first.getServiceId(), objectMapper.writeValueAsString(first), first.getWindow().getEnd());
+            driver.advanceWallClockTime(Duration.ofSeconds(60));
+
+            assertEquals(1, snapshots.readValuesToList().size());
+            TestRecord<String, String> published = latest.readRecord();
+            ServiceActivitySnapshot snapshot = objectMapper.readValue(published.value(), ServiceActivitySnapshot.class);
+            assertEquals(SnapshotFingerprint.of(snapshot), new String(
+                    published.headers().lastHeader("fingerprint").value(), StandardCharsets.UTF_8));
+
+            // Mais volume, mesmos callers e classificação: nada a publicar
+            ServiceActivityEvent second = event("svc-a", 4, now.minus(1, ChronoUnit.HOURS), List.of("caller-1"));
+            raw.pipeInput(second.getServiceId(), objectMapper.writeValueAsString(second), second.getWindow().getEnd());
+            driver.advanceWallClockTime(Duration.ofSeconds(60));
+
+            assertTrue(snapshots.isEmpty());
+            assertTrue(latest.isEmpty());
+        }
+    }
+
+    @Test
+    void testQuietServiceIsReclassifiedByTheDailyPass() throws Exception {
+        StreamsBuilder builder = new StreamsBuilder();
+        new SnapshotStreamTopology(decisionEngine, schemaCodecs).build(builder);
+
+        Instant now = Instant.now();
+        ServiceActivityEvent event = event("svc-quiet", 10, now.minus(6, ChronoUnit.DAYS), List.of("caller-1"));
+
+        try (TopologyTestDriver driver = new TopologyTestDriver(builder.build(),
+                streamsProperties("snapshot-stream-quiet-test"))) {
+            TestInputTopic<String, String> raw = driver.createInputTopic(
+                    "governance.activity.raw", new StringSerializer(), new StringSerializer());
+            TestOutputTopic<String, String> snapshots = driver.createOutputTopic(
+                    "governance.activity.snapshot", new StringDeserializer(), new StringDeserializer());
+
+            raw.pipeInput(event.getServiceId(), objectMapper.writeValueAsString(event), event.getWindow().getEnd());
+            // Pendência no store (changelog), não em memória do processor
+            KeyValueStore<String, Boolean> dirty = driver.getKeyValueStore(SnapshotStreamTopology.DIRTY_STORE);
+            assertNotNull(dirty.get("svc-quiet"));
+
+            driver.advanceWallClockTime(Duration.ofSeconds(60));
+            assertEquals(ServiceActivitySnapshot.Classification.ACTIVE, readClassification(snapshots));
+            assertNull(dirty.get("svc-quiet"));
+
+            // Sem eventos novos, a passagem diária reclassifica o serviço
+            driver.advanceWallClockTime(Duration.ofDays(3));
+            assertEquals(ServiceActivitySnapshot.Classification.LOW_USAGE, readClassification(snapshots));
+            assertTrue(snapshots.isEmpty());
+        }
+    }
+
+    private ServiceActivitySnapshot.Classification readClassification(TestOutputTopic<String, String> snapshots)
+            throws Exception {
+        List<String> emitted = snapshots.readValuesToList();
+        assertEquals(1, emitted.size());
+        return objectMapper.readValue(emitted.get(0), ServiceActivitySnapshot.class).getClassification();
+    }
+}
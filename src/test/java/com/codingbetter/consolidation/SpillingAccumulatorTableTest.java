@@ -0,0 +1,74 @@
+package com.codingbetter.consolidation;
+
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillingAccumulatorTableTest {
+
+    @TempDir
+    Path spillDir;
+
+    private static List<ServiceActivityEvent> events() {
+        Instant now = Instant.now();
+        List<ServiceActivityEvent> events = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String serviceId = "svc-" + (i % 7);
+            events.add(new ServiceActivityEvent(serviceId, (long) i, List.of("caller-" + (i % 11)),
+                    new ServiceActivityEvent.TimeWindow(now.minus(i, ChronoUnit.HOURS).minusSeconds(300),
+                            now.minus(i, ChronoUnit.HOURS)),
+                    ServiceActivityEvent.ConfidenceLevel.values()[i % 3],
+                    new ServiceActivityEvent.Metadata("production", "dynatrace")));
+        }
+        return events;
+    }
+
+    @Test
+    void testSpilledMergeEqualsInMemoryFold() {
+        List<ServiceActivityEvent> events = events();
+        Map<String, ServiceActivityAccumulator> expected = new HashMap<>();
+        events.forEach(event -> SnapshotGenerator.accumulate(expected, event));
+
+        Map<String, ServiceActivityAccumulator> merged = new HashMap<>();
+        try (SpillingAccumulatorTable table = new SpillingAccumulatorTable(2_000, spillDir)) {
+            events.forEach(table::add);
+            assertTrue(table.hasSpilled());
+
+            table.forEachMerged(accumulator ->
+                    assertNull(merged.put(accumulator.getServiceId(), accumulator), "serviço entregue duas vezes"));
+        }
+
+        assertEquals(expected.keySet(), merged.keySet());
+        expected.forEach((serviceId, accumulator) -> {
+            ServiceActivityAccumulator actual = merged.get(serviceId);
+            assertEquals(accumulator.getTotalActivity(), actual.getTotalActivity());
+            assertEquals(accumulator.getEventCount(), actual.getEventCount());
+            assertEquals(accumulator.getLastSeen(), actual.getLastSeen());
+            assertEquals(accumulator.getCallers(), actual.getCallers());
+            assertEquals(accumulator.getMaxConfidence(), actual.getMaxConfidence());
+        });
+    }
+
+    @Test
+    void testCloseRemovesRuns() throws Exception {
+        try (SpillingAccumulatorTable table = new SpillingAccumulatorTable(1, spillDir)) {
+            events().forEach(table::add);
+            assertTrue(table.getSpillCount() > 0);
+        }
+
+        try (var files = Files.list(spillDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -38,5 +38,13 @@ class TrafficClassifierTest {
         ServiceActivitySnapshot.Classification result = classifier.classify(null);
         assertEquals(ServiceActivitySnapshot.Classification.NO_TRAFFIC, result);
     }
-}
 
+    @Test
+    void testClassifyAgainstReferenceTime() {
+        Instant reference = Instant.parse("2026-09-01T00:00:00Z");
+        Instant lastSeen = reference.minus(10, ChronoUnit.DAYS);
+        assertEquals(ServiceActivitySnapshot.Classification.LOW_USAGE, classifier.classify(lastSeen, reference));
+        assertEquals(ServiceActivitySnapshot.Classification.ACTIVE,
+                classifier.classify(lastSeen, reference.minus(5, ChronoUnit.DAYS)));
+    }
+}
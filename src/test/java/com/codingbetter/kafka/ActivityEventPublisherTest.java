@@ -0,0 +1,118 @@
+package com.codingbetter.kafka;
+
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.SendResult;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActivityEventPublisherTest {
+
+    @Test
+    void testBoundsInFlightSendsAndCountsFailures() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger flushes = new AtomicInteger();
+        KafkaProducer slowProducer = new KafkaProducer(null, null, null, null) {
+            @Override
+            public CompletableFuture<SendResult<String, byte[]>> publishActivityEvent(ServiceActivityEvent event) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                boolean fail = event.getActivityCount() % 10 == 0;
+                // Confirmação assíncrona, como o broker
+                return CompletableFuture.supplyAsync(() -> {
+                    inFlight.decrementAndGet();
+                    if (fail) {
+                        throw new IllegalStateException("broker indisponível");
+                    }
+                    return (SendResult<String, byte[]>) null;
+                }, CompletableFuture.delayedExecutor(2, TimeUnit.MILLISECONDS));
+            }
+
+            @Override
+            public void flushPayloads() {
+                flushes.incrementAndGet();
+            }
+        };
+
+        ActivityEventPublisher publisher = new ActivityEventPublisher(slowProducer, 4, false, 0);
+        Flux<ServiceActivityEvent> events = Flux.range(1, 100).map(i -> {
+            ServiceActivityEvent event = new ServiceActivityEvent();
+            event.setServiceId("svc-" + i);
+            event.setActivityCount((long) i);
+            return event;
+        });
+
+        ActivityEventPublisher.WindowPublishResult result = publisher.publishWindow(events).block();
+
+        assertNotNull(result);
+        assertEquals(90, result.getPublished());
+        assertEquals(10, result.getFailed());
+        assertFalse(result.isComplete());
+        assertEquals(0, inFlight.get());
+        assertTrue(maxInFlight.get() <= 4, "max in flight: " + maxInFlight.get());
+        assertEquals(1, flushes.get());
+    }
+
+    @Test
+    void testEnvelopeModeGroupsEventsByPartitionAndWindow() {
+        Map<Integer, List<String>> envelopes = new ConcurrentHashMap<>();
+        List<String> individual = new CopyOnWriteArrayList<>();
+        KafkaProducer producer = new KafkaProducer(null, null, null, null) {
+            @Override
+            public int partitionForActivity(String serviceId) {
+                return Integer.parseInt(serviceId.substring(4)) % 3;
+            }
+
+            @Override
+            public CompletableFuture<SendResult<String, byte[]>> publishActivityEnvelope(
+                    int partition, List<ServiceActivityEvent> events) {
+                events.forEach(event -> assertEquals(partition, partitionForActivity(event.getServiceId())));
+                envelopes.put(partition, events.stream().map(ServiceActivityEvent::getServiceId).toList());
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public CompletableFuture<SendResult<String, byte[]>> publishActivityEvent(ServiceActivityEvent event) {
+                individual.add(event.getServiceId());
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public void flushPayloads() {
+            }
+        };
+
+        Instant end = Instant.parse("2026-10-01T10:05:00Z");
+        Flux<ServiceActivityEvent> events = Flux.range(0, 7).map(i -> {
+            ServiceActivityEvent event = new ServiceActivityEvent();
+            event.setServiceId("svc-" + i);
+            event.setActivityCount((long) i);
+            // svc-5: outra janela na mesma partição de svc-2; svc-6: sem janela, não cabe em envelope
+            Instant windowEnd = i == 5 ? end.plusSeconds(300) : end;
+            if (i != 6) {
+                event.setWindow(new ServiceActivityEvent.TimeWindow(windowEnd.minusSeconds(300), windowEnd));
+            }
+            return event;
+        });
+
+        ActivityEventPublisher.WindowPublishResult result =
+                new ActivityEventPublisher(producer, 4, true, 100).publishWindow(events).block();
+
+        assertNotNull(result);
+        assertEquals(7, result.getPublished());
+        assertEquals(Map.of(0, List.of("svc-0", "svc-3"), 1, List.of("svc-1", "svc-4")), envelopes);
+        // Grupos unitários e eventos sem janela seguem como registros individuais
+        assertEquals(Set.of("svc-2", "svc-5", "svc-6"), Set.copyOf(individual));
+    }
+}
@@ -0,0 +1,42 @@
+package com.codingbetter.kafka;
+
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineMetricsTest {
+
+    private static ConsumerRecord<String, byte[]> record(long offset, String key, int valueSize) {
+        return new ConsumerRecord<>("governance.activity.raw", 0, offset, 0L, TimestampType.CREATE_TIME,
+                key.length(), valueSize, key, new byte[valueSize], new RecordHeaders(), Optional.empty());
+    }
+
+    @Test
+    void testCountsRecordsBytesAndEventAge() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PipelineMetrics metrics = new PipelineMetrics(registry);
+
+        metrics.recordBatch("governance-consolidation", List.of(record(0, "svc-a", 100), record(1, "svc-b", 50)));
+
+        ServiceActivityEvent event = new ServiceActivityEvent();
+        Instant end = Instant.now().minusSeconds(120);
+        event.setWindow(new ServiceActivityEvent.TimeWindow(end.minusSeconds(300), end));
+        metrics.recordEventAge("governance-consolidation", List.of(event, new ServiceActivityEvent()));
+
+        assertEquals(2.0, registry.get("governance_consumer_records_total")
+                .tags("group", "governance-consolidation", "topic", "governance.activity.raw").counter().count());
+        assertEquals(160.0, registry.get("governance_consumer_bytes_total").counter().count());
+        assertEquals(1, registry.get("governance_event_age").timer().count());
+        assertTrue(registry.get("governance_event_age").timer().max(TimeUnit.SECONDS) >= 120);
+    }
+}
@@ -0,0 +1,113 @@
+package com.codingbetter.kafka;
+
+import com.codingbetter.schemas.SchemaCodecs;
+import com.codingbetter.schemas.SchemaRegistry;
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotDispatcherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private static ServiceActivitySnapshot snapshot(String serviceId) {
+        ServiceActivitySnapshot snapshot = new ServiceActivitySnapshot();
+        snapshot.setServiceId(serviceId);
+        snapshot.setClassification(ServiceActivitySnapshot.Classification.ACTIVE);
+        return snapshot;
+    }
+
+    private static SnapshotHandler handler(String name, List<List<ServiceActivitySnapshot>> received,
+                                           CountDownLatch release) {
+        return new SnapshotHandler() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public void handle(List<ServiceActivitySnapshot> snapshots) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                received.add(snapshots);
+            }
+        };
+    }
+
+    private SnapshotDispatcher dispatcher(int queueCapacity, SnapshotHandler... handlers) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        for (SnapshotHandler handler : handlers) {
+            beanFactory.registerSingleton(handler.getName(), handler);
+        }
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        return new SnapshotDispatcher(new SchemaCodecs(objectMapper), new PipelineMetrics(meterRegistry),
+                meterRegistry, beanFactory.getBeanProvider(SnapshotHandler.class), queueCapacity);
+    }
+
+    @Test
+    void testDecodesOnceAndDeliversEveryBatchToEveryHandler() throws Exception {
+        List<List<ServiceActivitySnapshot>> backstage = new CopyOnWriteArrayList<>();
+        List<List<ServiceActivitySnapshot>> metrics = new CopyOnWriteArrayList<>();
+        CountDownLatch open = new CountDownLatch(0);
+        SnapshotDispatcher dispatcher = dispatcher(4,
+                handler("backstage", backstage, open), handler("metrics", metrics, open));
+
+        AtomicInteger acks = new AtomicInteger();
+        dispatcher.consumeSnapshots(List.of(
+                new ConsumerRecord<>("governance.activity.snapshot", 0, 0L, "svc-a",
+                        new SchemaCodecs(objectMapper).writeSnapshot(snapshot("svc-a"))),
+                new ConsumerRecord<>("governance.activity.snapshot", 1, 0L, "svc-b",
+                        SchemaRegistry.encodeBinary(snapshot("svc-b"), objectMapper)),
+                new ConsumerRecord<>("governance.activity.snapshot", 1, 1L, "svc-c", "{invalid".getBytes())),
+                acks::incrementAndGet);
+        dispatcher.close();
+
+        assertEquals(1, acks.get());
+        assertEquals(1, backstage.size());
+        assertEquals(List.of("svc-a", "svc-b"),
+                backstage.get(0).stream().map(ServiceActivitySnapshot::getServiceId).toList());
+        // Mesma lista decodificada para todos os handlers
+        assertSame(backstage.get(0), metrics.get(0));
+    }
+
+    @Test
+    void testFullHandlerQueueBlocksTheListener() throws Exception {
+        List<List<ServiceActivitySnapshot>> received = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        SnapshotDispatcher dispatcher = dispatcher(1, handler("slow", received, release));
+
+        // Um lote em entrega (bloqueado no handler) e um na fila
+        dispatcher.dispatch(List.of(snapshot("svc-a")));
+        dispatcher.dispatch(List.of(snapshot("svc-b")));
+        CompletableFuture<Void> third = CompletableFuture.runAsync(
+                () -> dispatcher.dispatch(List.of(snapshot("svc-c"))));
+
+        assertThrows(TimeoutException.class, () -> third.get(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        third.get(5, TimeUnit.SECONDS);
+        dispatcher.close();
+
+        assertEquals(List.of("svc-a", "svc-b", "svc-c"),
+                received.stream().map(batch -> batch.get(0).getServiceId()).toList());
+    }
+}
@@ -0,0 +1,181 @@
+package com.codingbetter.normalization;
+
+import com.codingbetter.schemas.SchemaCodecs;
+import com.codingbetter.schemas.SchemaRegistry;
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.test.TestRecord;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.codingbetter.ActivityFixtures.event;
+import static com.codingbetter.ActivityFixtures.objectMapper;
+import static com.codingbetter.ActivityFixtures.streamsProperties;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActivityRollupTopologyTest {
+
+    private final ObjectMapper objectMapper = objectMapper();
+
+    private final SchemaCodecs schemaCodecs = new SchemaCodecs(objectMapper);
+
+
+    @Test
+    void testHourlyBucketIsEmittedOnceAfterWindowCloses() throws Exception {
+        StreamsBuilder builder = new StreamsBuilder();
+        new ActivityRollupTopology(objectMapper, schemaCodecs).build(builder);
+
+        Properties props = streamsProperties("activity-rollup-test");
+
+        Instant hour = Instant.parse("2026-10-01T10:00:00Z");
+
+        try (TopologyTestDriver driver = new TopologyTestDriver(builder.build(), props)) {
+            TestInputTopic<String, String> raw = driver.createInputTopic(
+                    "governance.activity.raw", new StringSerializer(), new StringSerializer());
+            TestOutputTopic<String, String> hourly = driver.createOutputTopic(
+                    ActivityRollupTopology.HOURLY_TOPIC, new StringDeserializer(), new StringDeserializer());
+
+            for (ServiceActivityEvent e : List.of(
+                    event("svc-a", 3, hour.plusSeconds(600), List.of("x")),
+                    event("svc-a", 4, hour.plusSeconds(1800), List.of("y")),
+                    event("svc-a", 5, hour.plusSeconds(3000), List.of("x")))) {
+                // CreateTime da publicação (reextração horas depois): o bucket segue window.end
+                raw.pipeInput("svc-a", objectMapper.writeValueAsString(e), hour.plusSeconds(5 * 3600));
+            }
+            assertTrue(hourly.isEmpty());
+
+            // Avança o stream time além da janela + grace
+            ServiceActivityEvent later = event("svc-a", 1, hour.plusSeconds(2 * 3600), List.of());
+            raw.pipeInput("svc-a", objectMapper.writeValueAsString(later), later.getWindow().getEnd());
+
+            List<KeyValue<String, String>> emitted = hourly.readKeyValuesToList();
+            assertEquals(1, emitted.size());
+            assertEquals(ActivityRollupTopology.rollupKey("svc-a", hour.toEpochMilli()), emitted.get(0).key);
+
+            ServiceActivityEvent rollup = objectMapper.readValue(emitted.get(0).value, ServiceActivityEvent.class);
+            assertEquals(12L, rollup.getActivityCount());
+            assertEquals(Set.of("x", "y"), Set.copyOf(rollup.getCallers()));
+            assertEquals(hour.plusSeconds(3000), rollup.getWindow().getEnd());
+        }
+    }
+
+    @Test
+    void testEnvelopeEventsAreRolledUpPerService() throws Exception {
+        StreamsBuilder builder = new StreamsBuilder();
+        new ActivityRollupTopology(objectMapper, schemaCodecs).build(builder);
+
+        Properties props = streamsProperties("activity-rollup-envelope-test");
+
+        Instant hour = Instant.parse("2026-10-01T10:00:00Z");
+
+        try (TopologyTestDriver driver = new TopologyTestDriver(builder.build(), props)) {
+            TestInputTopic<String, byte[]> raw = driver.createInputTopic(
+                    "governance.activity.raw", new StringSerializer(), new ByteArraySerializer());
+            TestOutputTopic<String, String> hourly = driver.createOutputTopic(
+                    ActivityRollupTopology.HOURLY_TOPIC, new StringDeserializer(), new StringDeserializer());
+
+            Instant end = hour.plusSeconds(600);
+            raw.pipeInput(null, SchemaRegistry.encodeEnvelope(List.of(
+                    event("svc-a", 3, end, List.of("x")),
+                    event("svc-b", 7, end, List.of("y"))), new long[2]), end);
+            ServiceActivityEvent later = event("svc-a", 1, hour.plusSeconds(2 * 3600), List.of());
+            raw.pipeInput("svc-a", objectMapper.writeValueAsBytes(later), later.getWindow().getEnd());
+
+            Map<String, Long> counts = hourly.readKeyValuesToList().stream().collect(Collectors.toMap(
+                    kv -> kv.key, kv -> readCount(kv.value)));
+            assertEquals(Map.of(
+                    ActivityRollupTopology.rollupKey("svc-a", hour.toEpochMilli()), 3L,
+                    ActivityRollupTopology.rollupKey("svc-b", hour.toEpochMilli()), 7L), counts);
+        }
+    }
+
+    @Test
+    void testReextractedEventWithTheSameIdIsNotSummedTwice() throws Exception {
+        StreamsBuilder builder = new StreamsBuilder();
+        new ActivityRollupTopology(objectMapper, schemaCodecs).build(builder);
+
+        Instant hour = Instant.parse("2026-10-01T10:00:00Z");
+
+        try (TopologyTestDriver driver = new TopologyTestDriver(builder.build(),
+                streamsProperties("activity-rollup-dedup-test"))) {
+            TestInputTopic<String, String> raw = driver.createInputTopic(
+                    "governance.activity.raw", new StringSerializer(), new StringSerializer());
+            TestOutputTopic<String, String> hourly = driver.createOutputTopic(
+                    ActivityRollupTopology.HOURLY_TOPIC, new StringDeserializer(), new StringDeserializer());
+
+            ServiceActivityEvent e = event("svc-a", 3, hour.plusSeconds(600), List.of("x"));
+            RecordHeaders headers = new RecordHeaders();
+            headers.add(SchemaRegistry.HEADER_EVENT_ID, "00000000000000a1".getBytes(StandardCharsets.US_ASCII));
+            // Publicação original e reextração da mesma janela
+            for (int i = 0; i < 2; i++) {
+                raw.pipeInput(new TestRecord<>("svc-a", objectMapper.writeValueAsString(e), headers,
+                        e.getWindow().getEnd()));
+            }
+            ServiceActivityEvent later = event("svc-a", 1, hour.plusSeconds(2 * 3600), List.of());
+            raw.pipeInput("svc-a", objectMapper.writeValueAsString(later), later.getWindow().getEnd());
+
+            List<KeyValue<String, String>> emitted = hourly.readKeyValuesToList();
+            assertEquals(1, emitted.size());
+            assertEquals(3L, readCount(emitted.get(0).value));
+        }
+    }
+
+    @Test
+    void testReemittedHourlyBucketReplacesItsValueInTheDailyRollup() throws Exception {
+        StreamsBuilder builder = new StreamsBuilder();
+        new ActivityRollupTopology(objectMapper, schemaCodecs).build(builder);
+
+        Instant day = Instant.parse("2026-10-01T00:00:00Z");
+
+        try (TopologyTestDriver driver = new TopologyTestDriver(builder.build(),
+                streamsProperties("activity-rollup-daily-test"))) {
+            TestInputTopic<String, String> hourly = driver.createInputTopic(
+                    ActivityRollupTopology.HOURLY_TOPIC, new StringSerializer(), new StringSerializer());
+            TestOutputTopic<String, String> daily = driver.createOutputTopic(
+                    ActivityRollupTopology.DAILY_TOPIC, new StringDeserializer(), new StringDeserializer());
+
+            Instant tenAm = day.plusSeconds(10 * 3600);
+            Instant elevenAm = day.plusSeconds(11 * 3600);
+            ServiceActivityEvent first = event("svc-a", 12, tenAm.plusSeconds(3000), List.of("x"));
+            ServiceActivityEvent second = event("svc-a", 5, elevenAm.plusSeconds(600), List.of("y"));
+            hourly.pipeInput(ActivityRollupTopology.rollupKey("svc-a", tenAm.toEpochMilli()),
+                    objectMapper.writeValueAsString(first), first.getWindow().getEnd());
+            hourly.pipeInput(ActivityRollupTopology.rollupKey("svc-a", elevenAm.toEpochMilli()),
+                    objectMapper.writeValueAsString(second), second.getWindow().getEnd());
+            // Mesmo bucket horário reemitido (reprocessamento)
+            hourly.pipeInput(ActivityRollupTopology.rollupKey("svc-a", tenAm.toEpochMilli()),
+                    objectMapper.writeValueAsString(first), first.getWindow().getEnd());
+
+            Map<String, String> latest = daily.readKeyValuesToMap();
+            assertEquals(Set.of(ActivityRollupTopology.rollupKey("svc-a", day.toEpochMilli())), latest.keySet());
+            ServiceActivityEvent rollup = objectMapper.readValue(latest.values().iterator().next(),
+                    ServiceActivityEvent.class);
+            assertEquals(17L, rollup.getActivityCount());
+            assertEquals(Set.of("x", "y"), Set.copyOf(rollup.getCallers()));
+        }
+    }
+
+    private long readCount(String json) {
+        try {
+            return objectMapper.readValue(json, ServiceActivityEvent.class).getActivityCount();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.codingbetter.normalization;
+
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceIdDictionaryTest {
+
+    @Test
+    void testInternIsStableAndDecodeIsSorted() {
+        ServiceIdDictionary dictionary = new ServiceIdDictionary();
+
+        int gateway = dictionary.intern("gtw-orders");
+        assertEquals(gateway, dictionary.intern("gtw-orders"));
+        assertEquals("gtw-orders", dictionary.lookup(gateway));
+
+        RoaringBitmap window1 = dictionary.encode(List.of("svc-c", "gtw-orders"));
+        RoaringBitmap window2 = dictionary.encode(List.of("svc-a", "svc-c"));
+        window1.or(window2);
+
+        assertEquals(List.of("gtw-orders", "svc-a", "svc-c"), dictionary.decode(window1));
+    }
+
+    @Test
+    void testGrowsBeyondInitialCapacity() {
+        ServiceIdDictionary dictionary = new ServiceIdDictionary();
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, dictionary.intern("svc-" + i));
+        }
+        assertEquals("svc-4999", dictionary.lookup(4999));
+        assertEquals(5000, dictionary.size());
+    }
+}
@@ -0,0 +1,141 @@
+package com.codingbetter.schemas;
+
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark dos codecs de schemas.v1: ObjectMapper genérico (antes: readValue/writeValueAsString
+ * no bean compartilhado, com o INDENT_OUTPUT que o EconomyReportGenerator ligava) contra os
+ * ObjectReader/ObjectWriter pré-compilados do SchemaCodecs e o binário compacto.
+ *
+ * Não roda no mvn test. Execução (ns/op e, pelo GCProfiler, bytes/op em gc.alloc.rate.norm):
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.codingbetter.schemas.SchemaCodecsBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchemaCodecsBenchmark {
+
+    private ObjectMapper legacyMapper;
+    private SchemaCodecs codecs;
+
+    private ServiceActivityEvent event;
+    private ServiceActivitySnapshot snapshot;
+    private String eventJson;
+    private byte[] eventBytes;
+    private byte[] eventBinary;
+    private String snapshotJson;
+    private byte[] snapshotBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        legacyMapper = objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT);
+        codecs = new SchemaCodecs(objectMapper);
+
+        Instant end = Instant.parse("2026-10-01T10:05:00Z");
+        event = new ServiceActivityEvent("svc-checkout", 1_234L, List.of("gtw-1", "svc-cart", "svc-payment"),
+                new ServiceActivityEvent.TimeWindow(end.minusSeconds(300), end),
+                ServiceActivityEvent.ConfidenceLevel.HIGH,
+                new ServiceActivityEvent.Metadata("production", "dynatrace"));
+        snapshot = new ServiceActivitySnapshot("svc-checkout", true, 98_765L, end,
+                List.of("gtw-1", "svc-cart", "svc-payment"), ServiceActivityEvent.ConfidenceLevel.HIGH,
+                ServiceActivitySnapshot.Classification.ACTIVE, LocalDate.parse("2026-10-02"));
+        snapshot.setActivityHorizons(List.of(
+                new ServiceActivitySnapshot.ActivityHorizon(7, 20_000L, 3),
+                new ServiceActivitySnapshot.ActivityHorizon(30, 98_765L, 3)));
+        snapshot.setDailyTrend(new ServiceActivitySnapshot.DailyTrend(3_000L, 2_500L, 0.2));
+
+        eventJson = objectMapper.writeValueAsString(event);
+        eventBytes = codecs.writeEvent(event);
+        eventBinary = SchemaRegistry.encodeBinary(event, objectMapper);
+        snapshotJson = objectMapper.writeValueAsString(snapshot);
+        snapshotBytes = codecs.writeSnapshot(snapshot);
+    }
+
+    @Benchmark
+    public String writeEventLegacy() throws Exception {
+        return legacyMapper.writeValueAsString(event);
+    }
+
+    @Benchmark
+    public byte[] writeEventCodec() throws Exception {
+        return codecs.writeEvent(event);
+    }
+
+    @Benchmark
+    public byte[] writeEventBinary() {
+        return SchemaRegistry.encodeBinary(event, legacyMapper);
+    }
+
+    @Benchmark
+    public ServiceActivityEvent readEventLegacy() throws Exception {
+        return legacyMapper.readValue(eventJson, ServiceActivityEvent.class);
+    }
+
+    @Benchmark
+    public ServiceActivityEvent readEventCodec() throws Exception {
+        return codecs.decodeEvent(eventBytes);
+    }
+
+    @Benchmark
+    public ServiceActivityEvent readEventBinary() throws Exception {
+        return codecs.decodeEvent(eventBinary);
+    }
+
+    @Benchmark
+    public String writeSnapshotLegacy() throws Exception {
+        return legacyMapper.writeValueAsString(snapshot);
+    }
+
+    @Benchmark
+    public byte[] writeSnapshotCodec() throws Exception {
+        return codecs.writeSnapshot(snapshot);
+    }
+
+    @Benchmark
+    public ServiceActivitySnapshot readSnapshotLegacy() throws Exception {
+        return legacyMapper.readValue(snapshotJson, ServiceActivitySnapshot.class);
+    }
+
+    @Benchmark
+    public ServiceActivitySnapshot readSnapshotCodec() throws Exception {
+        return codecs.decodeSnapshot(snapshotBytes);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SchemaCodecsBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
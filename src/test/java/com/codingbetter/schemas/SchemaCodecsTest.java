@@ -0,0 +1,65 @@
+package com.codingbetter.schemas;
+
+import com.codingbetter.finops.EconomyReportGenerator;
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaCodecsTest {
+
+    private static ServiceActivityEvent event() {
+        Instant end = Instant.parse("2026-10-01T10:05:00Z");
+        return new ServiceActivityEvent("svc-a", 42L, List.of("gtw-1"),
+                new ServiceActivityEvent.TimeWindow(end.minusSeconds(300), end),
+                ServiceActivityEvent.ConfidenceLevel.HIGH,
+                new ServiceActivityEvent.Metadata("production", "dynatrace"));
+    }
+
+    @Test
+    void testPayloadsStayCompactRegardlessOfSharedMapperFormatting() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        new EconomyReportGenerator(objectMapper);
+        assertFalse(objectMapper.isEnabled(SerializationFeature.INDENT_OUTPUT));
+
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        SchemaCodecs codecs = new SchemaCodecs(objectMapper);
+        byte[] payload = codecs.writeEvent(event());
+
+        assertFalse(new String(payload, StandardCharsets.UTF_8).contains("\n"));
+        assertEquals(objectMapper.copy().disable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(event()),
+                new String(payload, StandardCharsets.UTF_8));
+        assertEquals("svc-a", codecs.decodeEvent(payload).getServiceId());
+        assertEquals("svc-a", codecs.decode(SchemaRegistry.encodeBinary(event(), objectMapper),
+                ServiceActivityEvent.class).getServiceId());
+    }
+
+    @Test
+    void testDecodeRecordsSkipsTombstonesAndInvalidPayloads() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        SchemaCodecs codecs = new SchemaCodecs(objectMapper);
+        String topic = "governance.activity.raw";
+
+        List<ServiceActivityEvent> events = codecs.decodeRecords(List.of(
+                new ConsumerRecord<>(topic, 0, 0L, "svc-a", codecs.writeEvent(event())),
+                new ConsumerRecord<>(topic, 0, 1L, "svc-a", (byte[]) null),
+                new ConsumerRecord<>(topic, 0, 2L, "svc-a", "{inválido".getBytes(StandardCharsets.UTF_8)),
+                new ConsumerRecord<>(topic, 0, 3L, "svc-a", SchemaRegistry.encodeBinary(event(), objectMapper))),
+                ServiceActivityEvent.class);
+
+        assertEquals(2, events.size());
+        assertEquals(42L, events.get(1).getActivityCount());
+    }
+}
@@ -0,0 +1,140 @@
+package com.codingbetter.schemas;
+
+import com.codingbetter.schemas.v1.ServiceActivityEvent;
+import com.codingbetter.schemas.v1.ServiceActivitySnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaRegistryTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private static ServiceActivityEvent event() {
+        Instant end = Instant.parse("2026-10-01T10:05:00.123Z");
+        ServiceActivityEvent event = new ServiceActivityEvent("svc-a", 42L, List.of("gtw-1", "svc-b"),
+                new ServiceActivityEvent.TimeWindow(end.minusSeconds(300), end),
+                ServiceActivityEvent.ConfidenceLevel.MEDIUM,
+                new ServiceActivityEvent.Metadata("production", "dynatrace"));
+        event.setRepository(new ServiceActivityEvent.RepositoryInfo(
+                "svc-a", "org/svc-a", "ABC", "service", "svc-a", null));
+        return event;
+    }
+
+    @Test
+    void testEventBinaryRoundTripIsSmallerThanJson() throws Exception {
+        ServiceActivityEvent event = event();
+        byte[] binary = SchemaRegistry.encodeBinary(event, objectMapper);
+        byte[] json = objectMapper.writeValueAsBytes(event);
+
+        assertTrue(SchemaRegistry.isBinary(binary));
+        assertFalse(SchemaRegistry.isBinary(json));
+        assertTrue(binary.length < json.length / 2, binary.length + " vs " + json.length);
+
+        ServiceActivityEvent decoded = SchemaRegistry.decode(binary, ServiceActivityEvent.class, objectMapper);
+        assertEquals(objectMapper.writeValueAsString(event), objectMapper.writeValueAsString(decoded));
+        assertEquals(objectMapper.writeValueAsString(event),
+                objectMapper.writeValueAsString(SchemaRegistry.decode(json, ServiceActivityEvent.class, objectMapper)));
+    }
+
+    @Test
+    void testSnapshotBinaryRoundTripPreservesNullFields() throws Exception {
+        ServiceActivitySnapshot snapshot = new ServiceActivitySnapshot("svc-a", true, 1_234L,
+                Instant.parse("2026-10-01T10:05:00Z"), List.of("gtw-1"),
+                ServiceActivityEvent.ConfidenceLevel.HIGH,
+                ServiceActivitySnapshot.Classification.ACTIVE, LocalDate.parse("2026-10-02"));
+        snapshot.setActivityHorizons(List.of(new ServiceActivitySnapshot.ActivityHorizon(7, 1_000L, 1)));
+        snapshot.setDailyTrend(new ServiceActivitySnapshot.DailyTrend(100L, 0L, null));
+
+        byte[] binary = SchemaRegistry.encodeBinary(snapshot, objectMapper);
+        ServiceActivitySnapshot decoded = SchemaRegistry.decode(binary, ServiceActivitySnapshot.class, objectMapper);
+
+        assertEquals(objectMapper.writeValueAsString(snapshot), objectMapper.writeValueAsString(decoded));
+        assertNull(decoded.getFinOpsMetrics());
+        assertNull(decoded.getDailyTrend().getChangeRatio());
+    }
+
+    @Test
+    void testRejectsPayloadOfAnotherSchema() {
+        byte[] binary = SchemaRegistry.encodeBinary(event(), objectMapper);
+        assertThrows(IOException.class,
+                () -> SchemaRegistry.decode(binary, ServiceActivitySnapshot.class, objectMapper));
+    }
+
+    @Test
+    void testEventIdIsDeterministicPerServiceSourceAndAlignedWindow() {
+        ServiceActivityEvent event = event();
+        String id = SchemaRegistry.eventId(event, 5);
+
+        ServiceActivityEvent reExtracted = event();
+        reExtracted.setActivityCount(99L);
+        reExtracted.setWindow(new ServiceActivityEvent.TimeWindow(
+                event.getWindow().getStart().plusSeconds(30), event.getWindow().getEnd().plusSeconds(30)));
+        assertEquals(id, SchemaRegistry.eventId(reExtracted, 5));
+
+        ServiceActivityEvent otherSource = event();
+        otherSource.setMetadata(new ServiceActivityEvent.Metadata("production", "azure"));
+        assertNotEquals(id, SchemaRegistry.eventId(otherSource, 5));
+
+        ServiceActivityEvent nextWindow = event();
+        nextWindow.setWindow(new ServiceActivityEvent.TimeWindow(
+                event.getWindow().getEnd(), event.getWindow().getEnd().plusSeconds(300)));
+        assertNotEquals(id, SchemaRegistry.eventId(nextWindow, 5));
+
+        RecordHeaders headers = new RecordHeaders();
+        assertEquals(0, SchemaRegistry.eventIdOf(headers));
+        headers.add(SchemaRegistry.HEADER_EVENT_ID, id.getBytes(StandardCharsets.US_ASCII));
+        assertEquals(Long.parseUnsignedLong(id, 16), SchemaRegistry.eventIdOf(headers));
+    }
+
+    @Test
+    void testEnvelopeRoundTripIsSmallerThanIndividualRecords() throws Exception {
+        List<ServiceActivityEvent> events = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ServiceActivityEvent event = event();
+            event.setServiceId("svc-" + i);
+            event.setActivityCount((long) i);
+            events.add(event);
+        }
+        ServiceActivityEvent sparse = new ServiceActivityEvent();
+        sparse.setServiceId("svc-sparse");
+        sparse.setWindow(event().getWindow());
+        events.add(sparse);
+
+        long[] eventIds = events.stream()
+                .mapToLong(e -> SchemaRegistry.parseEventId(SchemaRegistry.eventId(e, 5)))
+                .toArray();
+        byte[] envelope = SchemaRegistry.encodeEnvelope(events, eventIds);
+
+        assertTrue(SchemaRegistry.isEnvelope(envelope));
+        assertFalse(SchemaRegistry.isBinary(envelope));
+        assertArrayEquals(eventIds, SchemaRegistry.envelopeEventIds(envelope));
+        assertEquals(events.stream().map(ServiceActivityEvent::getServiceId).toList(),
+                SchemaRegistry.envelopeServiceIds(envelope));
+        assertEquals(objectMapper.writeValueAsString(events),
+                objectMapper.writeValueAsString(SchemaRegistry.decodeEnvelope(envelope)));
+
+        long individual = events.stream().mapToLong(e -> SchemaRegistry.encodeBinary(e, objectMapper).length).sum();
+        assertTrue(envelope.length < individual / 2, envelope.length + " vs " + individual);
+
+        boolean[] keep = new boolean[events.size()];
+        keep[1] = true;
+        keep[50] = true;
+        byte[] retained = SchemaRegistry.retainEnvelope(envelope, keep);
+        assertEquals(List.of("svc-1", "svc-sparse"), SchemaRegistry.envelopeServiceIds(retained));
+        assertArrayEquals(new long[] {eventIds[1], eventIds[50]}, SchemaRegistry.envelopeEventIds(retained));
+    }
+}